@@ -0,0 +1,20 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+
+/**
+ * Lets the benchmarks and the load test replace the handlers' shared client, which the handler jar keeps to its own
+ * package.
+ */
+public final class BenchmarkClients {
+    private BenchmarkClients() {
+        // prevent instantiation
+    }
+
+    /**
+     * Makes every handler created from now on talk to the given client.
+     */
+    public static void install(final CodeGuruProfilerClient client) {
+        CodeGuruProfilerClientRegistry.overrideClient(client);
+    }
+}
@@ -0,0 +1,67 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.codeguruprofiler.model.ActionGroup;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.codeguruprofiler.profilinggroup.AgentPermissionHelper;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AgentPermissionHelperBenchmark {
+    private static final String PROFILING_GROUP_NAME = "AgentPermissionHelperBenchmark";
+
+    @Param({"10", "100", "500"})
+    public int principalCount;
+
+    private InMemoryCodeGuruProfilerClient service;
+    private AmazonWebServicesClientProxy proxy;
+
+    @Setup
+    public void setup() {
+        service = HandlerFixtures.installInMemoryService();
+        proxy = HandlerFixtures.proxy();
+
+        service.createProfilingGroup(CreateProfilingGroupRequest.builder().profilingGroupName(PROFILING_GROUP_NAME).build());
+        service.putPermission(PutPermissionRequest.builder()
+            .profilingGroupName(PROFILING_GROUP_NAME)
+            .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+            .principals(HandlerFixtures.principals(principalCount, "a"))
+            .build());
+    }
+
+    /**
+     * The policy has not changed since the last call, as on a warm container reading the same stack again.
+     */
+    @Benchmark
+    public List<String> sameRevision() {
+        return AgentPermissionHelper.getPrincipalsFromPolicy(proxy, service, HandlerFixtures.ACCOUNT_ID, HandlerFixtures.REGION, PROFILING_GROUP_NAME);
+    }
+
+    /**
+     * Every call sees a new revision of the policy, so the policy is parsed every time.
+     */
+    @Benchmark
+    public List<String> newRevision() {
+        service.changeRevision(PROFILING_GROUP_NAME);
+        return AgentPermissionHelper.getPrincipalsFromPolicy(proxy, service, HandlerFixtures.ACCOUNT_ID, HandlerFixtures.REGION, PROFILING_GROUP_NAME);
+    }
+}
@@ -0,0 +1,77 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.codeguruprofiler.profilinggroup.CallbackContext;
+import software.amazon.codeguruprofiler.profilinggroup.Priming;
+import software.amazon.codeguruprofiler.profilinggroup.ReadHandler;
+import software.amazon.codeguruprofiler.profilinggroup.ResourceModel;
+import software.amazon.codeguruprofiler.profilinggroup.loadtest.FaultInjection;
+import software.amazon.codeguruprofiler.profilinggroup.loadtest.LocalCodeGuruProfilerService;
+
+/**
+ * The first Read invocation of a fresh JVM, through the real SDK client and a local HTTP service, with and without
+ * priming during init. Every fork is one cold start, so the percentiles JMH reports over the forks are cold start
+ * percentiles. Init itself, priming included, is not measured: Lambda runs it before the first invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(30)
+public class ColdStartBenchmark {
+    private static final String PROFILING_GROUP_NAME = "ColdStartBenchmark";
+
+    @Param({"false", "true"})
+    public boolean primed;
+
+    private LocalCodeGuruProfilerService localService;
+    private ReadHandler readHandler;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final InMemoryCodeGuruProfilerClient service = new InMemoryCodeGuruProfilerClient();
+        service.createProfilingGroup(CreateProfilingGroupRequest.builder()
+            .profilingGroupName(PROFILING_GROUP_NAME)
+            .computePlatform("Default")
+            .build());
+        localService = LocalCodeGuruProfilerService.start(service, FaultInjection.NONE);
+        System.setProperty("codeguruprofiler.endpoint", localService.endpoint().toString());
+        System.setProperty("aws.region", "us-east-1");
+
+        // What the wrapper does during init: creating the handler builds the shared client.
+        readHandler = new ReadHandler();
+        if (primed) {
+            Priming.prime();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        localService.close();
+    }
+
+    @Benchmark
+    public ProgressEvent<ResourceModel, CallbackContext> firstRead() {
+        return readHandler.handleRequest(HandlerFixtures.proxy(),
+            HandlerFixtures.request(ResourceModel.builder().profilingGroupName(PROFILING_GROUP_NAME).build()),
+            null, HandlerFixtures.NO_OP_LOGGER);
+    }
+}
@@ -0,0 +1,110 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.codeguruprofiler.profilinggroup.CallbackContext;
+import software.amazon.codeguruprofiler.profilinggroup.CreateHandler;
+import software.amazon.codeguruprofiler.profilinggroup.DeleteHandler;
+import software.amazon.codeguruprofiler.profilinggroup.ListHandler;
+import software.amazon.codeguruprofiler.profilinggroup.ReadHandler;
+import software.amazon.codeguruprofiler.profilinggroup.ResourceModel;
+import software.amazon.codeguruprofiler.profilinggroup.UpdateHandler;
+
+/**
+ * Whole handler invocations against the in-memory service: what is left is the handlers' own CPU and allocation cost,
+ * along with the proxy's and the SDK model's.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+    private static final String PROFILING_GROUP_NAME = "HandlerBenchmark";
+    private static final int PRINCIPAL_COUNT = 10;
+    private static final int CHANNEL_COUNT = 2;
+    private static final int TAG_COUNT = 10;
+
+    // Profiling groups in the account, the list benchmark lists them all.
+    @Param({"10", "100"})
+    public int profilingGroupCount;
+
+    private AmazonWebServicesClientProxy proxy;
+    private CreateHandler createHandler;
+    private ReadHandler readHandler;
+    private UpdateHandler updateHandler;
+    private DeleteHandler deleteHandler;
+    private ListHandler listHandler;
+
+    private ResourceModel current;
+    private ResourceModel next;
+    private long createdProfilingGroups;
+
+    @Setup
+    public void setup() {
+        HandlerFixtures.installInMemoryService();
+        proxy = HandlerFixtures.proxy();
+        // Handlers pick up the shared client when they are constructed, so only after the service is installed.
+        createHandler = new CreateHandler();
+        readHandler = new ReadHandler();
+        updateHandler = new UpdateHandler();
+        deleteHandler = new DeleteHandler();
+        listHandler = new ListHandler();
+
+        current = HandlerFixtures.model(PROFILING_GROUP_NAME, PRINCIPAL_COUNT, CHANNEL_COUNT, TAG_COUNT, "a");
+        next = HandlerFixtures.model(PROFILING_GROUP_NAME, PRINCIPAL_COUNT, CHANNEL_COUNT, TAG_COUNT, "b");
+        createHandler.handleRequest(proxy, HandlerFixtures.request(current), null, HandlerFixtures.NO_OP_LOGGER);
+        for (int i = 1; i < profilingGroupCount; i++) {
+            createHandler.handleRequest(proxy,
+                HandlerFixtures.request(HandlerFixtures.model(PROFILING_GROUP_NAME + "-" + i, PRINCIPAL_COUNT, CHANNEL_COUNT, TAG_COUNT, "a")),
+                null, HandlerFixtures.NO_OP_LOGGER);
+        }
+    }
+
+    @Benchmark
+    public ProgressEvent<ResourceModel, CallbackContext> read() {
+        return readHandler.handleRequest(proxy,
+            HandlerFixtures.request(ResourceModel.builder().profilingGroupName(PROFILING_GROUP_NAME).build()), null, HandlerFixtures.NO_OP_LOGGER);
+    }
+
+    @Benchmark
+    public ProgressEvent<ResourceModel, CallbackContext> list() {
+        return listHandler.handleRequest(proxy, HandlerFixtures.request(ResourceModel.builder().build()), null, HandlerFixtures.NO_OP_LOGGER);
+    }
+
+    /**
+     * Alternates between two models that differ in half of their principals, channels and tags, so every update
+     * reconciles all three.
+     */
+    @Benchmark
+    public ProgressEvent<ResourceModel, CallbackContext> update() {
+        final ProgressEvent<ResourceModel, CallbackContext> event =
+            updateHandler.handleRequest(proxy, HandlerFixtures.request(next, current), null, HandlerFixtures.NO_OP_LOGGER);
+        final ResourceModel updated = next;
+        next = current;
+        current = updated;
+        return event;
+    }
+
+    @Benchmark
+    public ProgressEvent<ResourceModel, CallbackContext> createThenDelete() {
+        final ResourceModel model = HandlerFixtures.model(PROFILING_GROUP_NAME + "-Created-" + createdProfilingGroups++,
+            PRINCIPAL_COUNT, CHANNEL_COUNT, TAG_COUNT, "a");
+        createHandler.handleRequest(proxy, HandlerFixtures.request(model), null, HandlerFixtures.NO_OP_LOGGER);
+        return deleteHandler.handleRequest(proxy, HandlerFixtures.request(model), null, HandlerFixtures.NO_OP_LOGGER);
+    }
+}
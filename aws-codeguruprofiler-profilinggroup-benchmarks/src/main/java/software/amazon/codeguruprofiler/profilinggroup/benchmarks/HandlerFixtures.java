@@ -0,0 +1,98 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.Credentials;
+import software.amazon.cloudformation.proxy.Logger;
+import software.amazon.cloudformation.proxy.LoggerProxy;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.codeguruprofiler.profilinggroup.AgentPermissions;
+import software.amazon.codeguruprofiler.profilinggroup.BenchmarkClients;
+import software.amazon.codeguruprofiler.profilinggroup.Channel;
+import software.amazon.codeguruprofiler.profilinggroup.ResourceModel;
+import software.amazon.codeguruprofiler.profilinggroup.Tag;
+
+/**
+ * What the benchmarks and the load test need to call the handlers the way the CloudFormation wrapper does.
+ */
+public final class HandlerFixtures {
+    public static final String ACCOUNT_ID = "111111111111";
+    public static final String REGION = "us-east-1";
+
+    // Handlers log a line or two per invocation, formatting it is part of the cost but printing it is not.
+    public static final Logger NO_OP_LOGGER = line -> { };
+
+    private HandlerFixtures() {
+        // prevent instantiation
+    }
+
+    /**
+     * Makes every handler created from now on talk to the returned in-memory service.
+     */
+    public static InMemoryCodeGuruProfilerClient installInMemoryService() {
+        final InMemoryCodeGuruProfilerClient service = new InMemoryCodeGuruProfilerClient();
+        BenchmarkClients.install(service);
+        return service;
+    }
+
+    /**
+     * A real proxy, so the cost of injecting credentials into every request is measured too.
+     */
+    public static AmazonWebServicesClientProxy proxy() {
+        return new AmazonWebServicesClientProxy(new LoggerProxy(), new Credentials("accessKeyId", "secretAccessKey", "sessionToken"),
+            () -> Long.MAX_VALUE);
+    }
+
+    public static ResourceHandlerRequest<ResourceModel> request(final ResourceModel desired) {
+        return request(desired, null);
+    }
+
+    public static ResourceHandlerRequest<ResourceModel> request(final ResourceModel desired, final ResourceModel previous) {
+        return ResourceHandlerRequest.<ResourceModel>builder()
+            .desiredResourceState(desired)
+            .previousResourceState(previous)
+            .clientRequestToken("clientRequestToken")
+            .awsAccountId(ACCOUNT_ID)
+            .region(REGION)
+            .build();
+    }
+
+    public static ResourceModel model(final String profilingGroupName, final int principalCount, final int channelCount, final int tagCount,
+                                      final String variant) {
+        return ResourceModel.builder()
+            .profilingGroupName(profilingGroupName)
+            .arn(InMemoryCodeGuruProfilerClient.arnOf(profilingGroupName))
+            .computePlatform("Default")
+            .agentPermissions(AgentPermissions.builder().principals(principals(principalCount, variant)).build())
+            .anomalyDetectionNotificationConfiguration(channels(channelCount, variant))
+            .tags(tags(tagCount, variant))
+            .build();
+    }
+
+    public static List<String> principals(final int count, final String variant) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> "arn:aws:iam::111111111111:role/ProfilingAgent-" + (i % 2 == 0 ? variant : "") + i)
+            .collect(Collectors.toList());
+    }
+
+    // Half of the channels and tags differ between two variants, so alternating between them always has work to do.
+    public static List<Channel> channels(final int count, final String variant) {
+        final List<Channel> channels = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            channels.add(Channel.builder()
+                .channelUri("arn:aws:sns:us-east-1:111111111111:AnomalyTopic-" + (i % 2 == 0 ? variant : "") + i)
+                .build());
+        }
+        return channels;
+    }
+
+    public static List<Tag> tags(final int count, final String variant) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> Tag.builder().key("key-" + i).value(i % 2 == 0 ? "value-" + variant : "value").build())
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,284 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
+import software.amazon.awssdk.services.codeguruprofiler.model.ConflictException;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.NotificationConfiguration;
+import software.amazon.awssdk.services.codeguruprofiler.model.ProfilingGroupDescription;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.codeguruprofiler.model.TagResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.TagResourceResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.UntagResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.UntagResourceResponse;
+
+/**
+ * A CodeGuru Profiler that keeps its profiling groups in memory, for running the handlers without the network.
+ *
+ * Only the operations the handlers call are implemented, with just enough of the service's behaviour for them:
+ * profiling groups are keyed by name, policies get a new revisionId on every change and channels get an id when they
+ * are added. Every operation is thread safe, since Read and List call the service from several threads at once.
+ */
+public class InMemoryCodeGuruProfilerClient implements CodeGuruProfilerClient {
+    private static final String ARN_PREFIX = "arn:aws:codeguru-profiler:us-east-1:111111111111:profilingGroup/";
+
+    private final ConcurrentNavigableMap<String, ProfilingGroup> profilingGroups = new ConcurrentSkipListMap<>();
+    private final AtomicLong revisions = new AtomicLong();
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    @Override
+    public CreateProfilingGroupResponse createProfilingGroup(final CreateProfilingGroupRequest request) {
+        final ProfilingGroup created = new ProfilingGroup(request.profilingGroupName(), request.computePlatformAsString(), request.tags());
+        if (profilingGroups.putIfAbsent(request.profilingGroupName(), created) != null) {
+            throw ConflictException.builder().message("Profiling group " + request.profilingGroupName() + " already exists").build();
+        }
+        return CreateProfilingGroupResponse.builder().profilingGroup(created.describe()).build();
+    }
+
+    @Override
+    public DescribeProfilingGroupResponse describeProfilingGroup(final DescribeProfilingGroupRequest request) {
+        return DescribeProfilingGroupResponse.builder().profilingGroup(find(request.profilingGroupName()).describe()).build();
+    }
+
+    @Override
+    public DeleteProfilingGroupResponse deleteProfilingGroup(final DeleteProfilingGroupRequest request) {
+        if (profilingGroups.remove(request.profilingGroupName()) == null) {
+            throw notFound(request.profilingGroupName());
+        }
+        return DeleteProfilingGroupResponse.builder().build();
+    }
+
+    @Override
+    public ListProfilingGroupsResponse listProfilingGroups(final ListProfilingGroupsRequest request) {
+        final int maxResults = request.maxResults() == null ? 100 : request.maxResults();
+        final Map<String, ProfilingGroup> remaining = request.nextToken() == null
+            ? profilingGroups
+            : profilingGroups.tailMap(request.nextToken(), true);
+
+        final List<ProfilingGroupDescription> page = new ArrayList<>(maxResults);
+        String nextToken = null;
+        for (ProfilingGroup profilingGroup : remaining.values()) {
+            if (page.size() == maxResults) {
+                nextToken = profilingGroup.name;
+                break;
+            }
+            page.add(profilingGroup.describe());
+        }
+
+        final ListProfilingGroupsResponse.Builder response = ListProfilingGroupsResponse.builder()
+            .profilingGroupNames(page.stream().map(ProfilingGroupDescription::name).collect(Collectors.toList()))
+            .nextToken(nextToken);
+        if (Boolean.TRUE.equals(request.includeDescription())) {
+            response.profilingGroups(page);
+        }
+        return response.build();
+    }
+
+    @Override
+    public GetPolicyResponse getPolicy(final GetPolicyRequest request) {
+        final ProfilingGroup profilingGroup = find(request.profilingGroupName());
+        synchronized (profilingGroup) {
+            return GetPolicyResponse.builder().policy(profilingGroup.policy).revisionId(profilingGroup.revisionId).build();
+        }
+    }
+
+    @Override
+    public PutPermissionResponse putPermission(final PutPermissionRequest request) {
+        final ProfilingGroup profilingGroup = find(request.profilingGroupName());
+        synchronized (profilingGroup) {
+            checkRevision(profilingGroup, request.revisionId());
+            profilingGroup.setPolicy(policyGranting(profilingGroup.name, request.principals()), nextRevision());
+            return PutPermissionResponse.builder().policy(profilingGroup.policy).revisionId(profilingGroup.revisionId).build();
+        }
+    }
+
+    @Override
+    public RemovePermissionResponse removePermission(final RemovePermissionRequest request) {
+        final ProfilingGroup profilingGroup = find(request.profilingGroupName());
+        synchronized (profilingGroup) {
+            checkRevision(profilingGroup, request.revisionId());
+            profilingGroup.setPolicy(null, null);
+            return RemovePermissionResponse.builder().build();
+        }
+    }
+
+    @Override
+    public GetNotificationConfigurationResponse getNotificationConfiguration(final GetNotificationConfigurationRequest request) {
+        final ProfilingGroup profilingGroup = find(request.profilingGroupName());
+        synchronized (profilingGroup) {
+            return GetNotificationConfigurationResponse.builder().notificationConfiguration(profilingGroup.notificationConfiguration()).build();
+        }
+    }
+
+    @Override
+    public AddNotificationChannelsResponse addNotificationChannels(final AddNotificationChannelsRequest request) {
+        final ProfilingGroup profilingGroup = find(request.profilingGroupName());
+        synchronized (profilingGroup) {
+            for (Channel channel : request.channels()) {
+                final String id = channel.id() == null ? UUID.randomUUID().toString() : channel.id();
+                profilingGroup.channels.put(id, channel.toBuilder().id(id).build());
+            }
+            return AddNotificationChannelsResponse.builder().notificationConfiguration(profilingGroup.notificationConfiguration()).build();
+        }
+    }
+
+    @Override
+    public RemoveNotificationChannelResponse removeNotificationChannel(final RemoveNotificationChannelRequest request) {
+        final ProfilingGroup profilingGroup = find(request.profilingGroupName());
+        synchronized (profilingGroup) {
+            if (profilingGroup.channels.remove(request.channelId()) == null) {
+                throw ResourceNotFoundException.builder().message("Channel " + request.channelId() + " does not exist").build();
+            }
+            return RemoveNotificationChannelResponse.builder().notificationConfiguration(profilingGroup.notificationConfiguration()).build();
+        }
+    }
+
+    @Override
+    public ListTagsForResourceResponse listTagsForResource(final ListTagsForResourceRequest request) {
+        final ProfilingGroup profilingGroup = findByArn(request.resourceArn());
+        synchronized (profilingGroup) {
+            return ListTagsForResourceResponse.builder().tags(new LinkedHashMap<>(profilingGroup.tags)).build();
+        }
+    }
+
+    @Override
+    public TagResourceResponse tagResource(final TagResourceRequest request) {
+        final ProfilingGroup profilingGroup = findByArn(request.resourceArn());
+        synchronized (profilingGroup) {
+            profilingGroup.tags.putAll(request.tags());
+            return TagResourceResponse.builder().build();
+        }
+    }
+
+    @Override
+    public UntagResourceResponse untagResource(final UntagResourceRequest request) {
+        final ProfilingGroup profilingGroup = findByArn(request.resourceArn());
+        synchronized (profilingGroup) {
+            request.tagKeys().forEach(profilingGroup.tags::remove);
+            return UntagResourceResponse.builder().build();
+        }
+    }
+
+    /**
+     * Gives the policy of the profiling group a new revisionId, as a change made outside the handlers would.
+     */
+    public void changeRevision(final String profilingGroupName) {
+        final ProfilingGroup profilingGroup = find(profilingGroupName);
+        synchronized (profilingGroup) {
+            if (profilingGroup.policy != null) {
+                profilingGroup.setPolicy(profilingGroup.policy, nextRevision());
+            }
+        }
+    }
+
+    public static String arnOf(final String profilingGroupName) {
+        return ARN_PREFIX + profilingGroupName;
+    }
+
+    static String policyGranting(final String profilingGroupName, final List<String> principals) {
+        return "{\"Version\":\"2012-10-17\",\"Statement\":[{\"Sid\":\"agentPermissions-statement\",\"Effect\":\"Allow\","
+            + "\"Principal\":{\"AWS\":[" + principals.stream().map(p -> '"' + p + '"').collect(Collectors.joining(",")) + "]},"
+            + "\"Action\":[\"codeguru-profiler:ConfigureAgent\",\"codeguru-profiler:PostAgentProfile\"],"
+            + "\"Resource\":\"" + arnOf(profilingGroupName) + "\"}]}";
+    }
+
+    private String nextRevision() {
+        return Long.toString(revisions.incrementAndGet());
+    }
+
+    private ProfilingGroup find(final String profilingGroupName) {
+        final ProfilingGroup profilingGroup = profilingGroups.get(profilingGroupName);
+        if (profilingGroup == null) {
+            throw notFound(profilingGroupName);
+        }
+        return profilingGroup;
+    }
+
+    private ProfilingGroup findByArn(final String arn) {
+        return find(arn.substring(arn.lastIndexOf('/') + 1));
+    }
+
+    private static void checkRevision(final ProfilingGroup profilingGroup, final String revisionId) {
+        if (revisionId != null && !revisionId.equals(profilingGroup.revisionId)) {
+            throw ConflictException.builder().message("Revision " + revisionId + " is not the latest").build();
+        }
+    }
+
+    private static ResourceNotFoundException notFound(final String profilingGroupName) {
+        return ResourceNotFoundException.builder().message("Profiling group " + profilingGroupName + " does not exist").build();
+    }
+
+    private static final class ProfilingGroup {
+        private final String name;
+        private final String computePlatform;
+        private final Map<String, String> tags;
+        private final Map<String, Channel> channels = new LinkedHashMap<>();
+        private String policy;
+        private String revisionId;
+
+        private ProfilingGroup(final String name, final String computePlatform, final Map<String, String> tags) {
+            this.name = name;
+            this.computePlatform = computePlatform;
+            this.tags = new LinkedHashMap<>(tags == null ? Collections.emptyMap() : tags);
+        }
+
+        private void setPolicy(final String policy, final String revisionId) {
+            this.policy = policy;
+            this.revisionId = revisionId;
+        }
+
+        private synchronized ProfilingGroupDescription describe() {
+            return ProfilingGroupDescription.builder()
+                .name(name)
+                .arn(arnOf(name))
+                .computePlatform(computePlatform)
+                .tags(new LinkedHashMap<>(tags))
+                .build();
+        }
+
+        private NotificationConfiguration notificationConfiguration() {
+            return NotificationConfiguration.builder().channels(new ArrayList<>(channels.values())).build();
+        }
+    }
+}
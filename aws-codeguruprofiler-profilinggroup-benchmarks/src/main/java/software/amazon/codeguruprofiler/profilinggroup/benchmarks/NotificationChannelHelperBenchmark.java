@@ -0,0 +1,52 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
+import software.amazon.awssdk.services.codeguruprofiler.model.EventPublisher;
+import software.amazon.awssdk.services.codeguruprofiler.model.NotificationConfiguration;
+import software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationChannelHelperBenchmark {
+    @Param({"2", "20"})
+    public int channelCount;
+
+    private NotificationConfiguration notificationConfiguration;
+
+    @Setup
+    public void setup() {
+        notificationConfiguration = NotificationConfiguration.builder()
+            .channels(HandlerFixtures.channels(channelCount, "a").stream()
+                .map(channel -> Channel.builder()
+                    .id("channel-" + channel.getChannelUri().hashCode())
+                    .uri(channel.getChannelUri())
+                    .eventPublishers(EventPublisher.ANOMALY_DETECTION)
+                    .build())
+                .collect(Collectors.toList()))
+            .build();
+    }
+
+    @Benchmark
+    public List<software.amazon.codeguruprofiler.profilinggroup.Channel> convertNotificationConfigurationIntoChannelsList() {
+        return NotificationChannelHelper.convertNotificationConfigurationIntoChannelsList(notificationConfiguration);
+    }
+}
@@ -0,0 +1,100 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.codeguruprofiler.profilinggroup.PolicyPrincipalsParser;
+
+/**
+ * Compares the streaming policy parser with binding the whole policy to nested maps, which is how
+ * AgentPermissionHelper used to read principals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PolicyPrincipalsParserBenchmark {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Param({"10", "100", "500"})
+    public int principalCount;
+
+    @Param({"1", "4"})
+    public int statementCount;
+
+    private String policy;
+
+    @Setup
+    public void setup() {
+        policy = policyWith(principalCount, statementCount);
+    }
+
+    @Benchmark
+    public List<String> streamingParser() throws IOException {
+        return PolicyPrincipalsParser.parse(policy);
+    }
+
+    @Benchmark
+    public List<String> mapBinding() throws IOException {
+        return principalsFromMap(policy);
+    }
+
+    /**
+     * The former AgentPermissionHelper.principalsFrom, extended to every statement so both benchmarks do the same work.
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> principalsFromMap(final String policyInJson) throws IOException {
+        Map<String, List<Map<String, Map<String, Object>>>> policyMap = objectMapper.readValue(policyInJson, Map.class);
+        List<String> result = new ArrayList<>();
+        for (Map<String, Map<String, Object>> statement : policyMap.get("Statement")) {
+            Object principals = statement.get("Principal").get("AWS");
+            if (principals instanceof String) {
+                result.add((String) principals);
+            } else {
+                result.addAll((List<String>) principals);
+            }
+        }
+        return result;
+    }
+
+    static String policyWith(final int principalCount, final int statementCount) {
+        StringBuilder policy = new StringBuilder("{\"Version\":\"2012-10-17\",\"Statement\":[");
+        int principalsPerStatement = Math.max(1, principalCount / statementCount);
+        for (int statement = 0; statement < statementCount; statement++) {
+            if (statement > 0) {
+                policy.append(',');
+            }
+            policy.append("{\"Sid\":\"agentPermissions-statement-").append(statement).append("\",")
+                .append("\"Effect\":\"Allow\",")
+                .append("\"Principal\":{\"AWS\":[");
+            for (int i = 0; i < principalsPerStatement; i++) {
+                if (i > 0) {
+                    policy.append(',');
+                }
+                policy.append("\"arn:aws:iam::012345678901:role/ProfilingAgentRole-")
+                    .append(statement * principalsPerStatement + i).append('"');
+            }
+            policy.append("]},")
+                .append("\"Action\":[\"codeguru-profiler:ConfigureAgent\",\"codeguru-profiler:PostAgentProfile\"],")
+                .append("\"Resource\":\"arn:aws:codeguru-profiler:us-east-1:012345678901:profilingGroup/BenchmarkGroup\"}");
+        }
+        return policy.append("]}").toString();
+    }
+}
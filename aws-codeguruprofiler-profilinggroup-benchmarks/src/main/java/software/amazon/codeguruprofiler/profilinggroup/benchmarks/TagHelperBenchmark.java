@@ -0,0 +1,72 @@
+package software.amazon.codeguruprofiler.profilinggroup.benchmarks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.codeguruprofiler.profilinggroup.ResourceModel;
+import software.amazon.codeguruprofiler.profilinggroup.Tag;
+import software.amazon.codeguruprofiler.profilinggroup.TagHelper;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagHelperBenchmark {
+    private static final String PROFILING_GROUP_NAME = "TagHelperBenchmark";
+
+    @Param({"5", "50"})
+    public int tagCount;
+
+    private AmazonWebServicesClientProxy proxy;
+    private Map<String, String> tagMap;
+    private ResourceModel current;
+    private ResourceModel next;
+
+    @Setup
+    public void setup() {
+        final InMemoryCodeGuruProfilerClient service = HandlerFixtures.installInMemoryService();
+        proxy = HandlerFixtures.proxy();
+        current = HandlerFixtures.model(PROFILING_GROUP_NAME, 0, 0, tagCount, "a");
+        next = HandlerFixtures.model(PROFILING_GROUP_NAME, 0, 0, tagCount, "b");
+        tagMap = current.getTags().stream().collect(Collectors.toMap(Tag::getKey, Tag::getValue));
+
+        service.createProfilingGroup(CreateProfilingGroupRequest.builder()
+            .profilingGroupName(PROFILING_GROUP_NAME)
+            .tags(tagMap)
+            .build());
+    }
+
+    @Benchmark
+    public Set<Tag> convertTagMapIntoSet() {
+        return TagHelper.convertTagMapIntoSet(tagMap);
+    }
+
+    /**
+     * Diffs against the previous model and changes half of the tags, alternating between two tag sets.
+     */
+    @Benchmark
+    public ResourceModel updateTags() {
+        TagHelper.updateTags(proxy, next, current, HandlerFixtures.ACCOUNT_ID, next.getArn(), HandlerFixtures.NO_OP_LOGGER);
+        final ResourceModel updated = next;
+        next = current;
+        current = updated;
+        return updated;
+    }
+}
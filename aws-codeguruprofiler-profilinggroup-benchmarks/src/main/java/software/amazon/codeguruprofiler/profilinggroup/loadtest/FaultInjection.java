@@ -0,0 +1,117 @@
+package software.amazon.codeguruprofiler.profilinggroup.loadtest;
+
+import java.time.Duration;
+
+/**
+ * How badly the local service behaves: how slow it is, how much it throttles and how often it fails.
+ */
+public final class FaultInjection {
+    public static final FaultInjection NONE = builder().build();
+
+    private final Duration latency;
+    private final Duration latencyJitter;
+    private final double throttlingRate;
+    private final double failureRate;
+    private final double requestsPerSecond;
+
+    private FaultInjection(final Builder builder) {
+        this.latency = builder.latency;
+        this.latencyJitter = builder.latencyJitter;
+        this.throttlingRate = builder.throttlingRate;
+        this.failureRate = builder.failureRate;
+        this.requestsPerSecond = builder.requestsPerSecond;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the time every request takes at least.
+     */
+    public Duration getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the upper bound of the random time added to the latency of every request.
+     */
+    public Duration getLatencyJitter() {
+        return latencyJitter;
+    }
+
+    /**
+     * @return the share of requests, from 0 to 1, rejected with a ThrottlingException regardless of the request rate.
+     */
+    public double getThrottlingRate() {
+        return throttlingRate;
+    }
+
+    /**
+     * @return the share of requests, from 0 to 1, failed with an InternalServerException.
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * @return the rate above which the service throttles, like the account-level limits do, or 0 for no limit.
+     */
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("latency=%dms+[0,%dms) throttlingRate=%s failureRate=%s requestsPerSecond=%s",
+            latency.toMillis(), latencyJitter.toMillis(), throttlingRate, failureRate,
+            requestsPerSecond > 0 ? String.valueOf(requestsPerSecond) : "unlimited");
+    }
+
+    public static final class Builder {
+        private Duration latency = Duration.ZERO;
+        private Duration latencyJitter = Duration.ZERO;
+        private double throttlingRate;
+        private double failureRate;
+        private double requestsPerSecond;
+
+        private Builder() {
+        }
+
+        public Builder latency(final Duration latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        public Builder latencyJitter(final Duration latencyJitter) {
+            this.latencyJitter = latencyJitter;
+            return this;
+        }
+
+        public Builder throttlingRate(final double throttlingRate) {
+            this.throttlingRate = checkRate(throttlingRate);
+            return this;
+        }
+
+        public Builder failureRate(final double failureRate) {
+            this.failureRate = checkRate(failureRate);
+            return this;
+        }
+
+        public Builder requestsPerSecond(final double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        public FaultInjection build() {
+            return new FaultInjection(this);
+        }
+
+        private static double checkRate(final double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Rates go from 0 to 1, got " + rate);
+            }
+            return rate;
+        }
+    }
+}
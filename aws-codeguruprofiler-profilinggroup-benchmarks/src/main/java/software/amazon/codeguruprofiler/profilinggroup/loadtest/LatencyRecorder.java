@@ -0,0 +1,64 @@
+package software.amazon.codeguruprofiler.profilinggroup.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps every latency of one kind of handler invocation, along with how the invocations ended.
+ *
+ * Not thread safe: each load test thread records into its own recorders, which are merged once the run is over.
+ */
+final class LatencyRecorder {
+    private long[] latenciesNanos = new long[1024];
+    private int count;
+    private final Map<String, Long> outcomes = new TreeMap<>();
+
+    void record(final long latencyNanos, final String outcome) {
+        if (count == latenciesNanos.length) {
+            latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+        }
+        latenciesNanos[count++] = latencyNanos;
+        outcomes.merge(outcome, 1L, Long::sum);
+    }
+
+    void addAll(final LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            if (count == latenciesNanos.length) {
+                latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+            }
+            latenciesNanos[count++] = other.latenciesNanos[i];
+        }
+        other.outcomes.forEach((outcome, times) -> outcomes.merge(outcome, times, Long::sum));
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return a line with the count, throughput, latency percentiles and outcomes of the invocations.
+     */
+    String summary(final String name, final long elapsedNanos) {
+        if (count == 0) {
+            return String.format("%-8s no invocations", name);
+        }
+        final long[] sorted = Arrays.copyOf(latenciesNanos, count);
+        Arrays.sort(sorted);
+        return String.format("%-8s %8d calls %9.1f/s  p50 %8.2fms  p90 %8.2fms  p99 %8.2fms  p99.9 %8.2fms  max %8.2fms  %s",
+            name, count, count / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)),
+            millis(percentile(sorted, 0.50)), millis(percentile(sorted, 0.90)), millis(percentile(sorted, 0.99)),
+            millis(percentile(sorted, 0.999)), millis(sorted[sorted.length - 1]), outcomes);
+    }
+
+    // Nearest rank, so the reported figure is always a latency that was actually observed.
+    static long percentile(final long[] sorted, final double quantile) {
+        final int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
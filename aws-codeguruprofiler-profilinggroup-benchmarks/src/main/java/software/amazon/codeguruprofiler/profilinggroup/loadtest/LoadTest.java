@@ -0,0 +1,224 @@
+package software.amazon.codeguruprofiler.profilinggroup.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import software.amazon.awssdk.services.codeguruprofiler.model.ActionGroup;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.EventPublisher;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
+import software.amazon.codeguruprofiler.profilinggroup.CallbackContext;
+import software.amazon.codeguruprofiler.profilinggroup.CodeGuruProfilerClientRegistry;
+import software.amazon.codeguruprofiler.profilinggroup.ListHandler;
+import software.amazon.codeguruprofiler.profilinggroup.ReadHandler;
+import software.amazon.codeguruprofiler.profilinggroup.ResourceModel;
+import software.amazon.codeguruprofiler.profilinggroup.UpdateHandler;
+import software.amazon.codeguruprofiler.profilinggroup.benchmarks.HandlerFixtures;
+import software.amazon.codeguruprofiler.profilinggroup.benchmarks.InMemoryCodeGuruProfilerClient;
+
+/**
+ * Runs Read, Update and List invocations from many threads against a {@link LocalCodeGuruProfilerService}, through the
+ * real SDK client with its retries and rate limiting, and reports throughput and latency percentiles per handler.
+ *
+ * Options are given as --name=value, see the README of this module for the list.
+ */
+public final class LoadTest {
+    private static final String PROFILING_GROUP_PREFIX = "LoadTest-";
+    private static final int PRINCIPAL_COUNT = 5;
+    private static final int CHANNEL_COUNT = 2;
+    private static final int TAG_COUNT = 5;
+
+    enum Operation {
+        READ, UPDATE, LIST
+    }
+
+    private final Map<String, String> options;
+    private final int profilingGroupCount;
+    private final int threadCount;
+    private final Duration duration;
+    private final FaultInjection faults;
+    private final Map<Operation, Integer> mix;
+
+    private LoadTest(final Map<String, String> options) {
+        this.options = options;
+        this.profilingGroupCount = Integer.parseInt(option("groups", "2000"));
+        this.threadCount = Integer.parseInt(option("threads", "32"));
+        this.duration = Duration.ofSeconds(Long.parseLong(option("duration", "60")));
+        this.faults = FaultInjection.builder()
+            .latency(Duration.ofMillis(Long.parseLong(option("latency-ms", "20"))))
+            .latencyJitter(Duration.ofMillis(Long.parseLong(option("jitter-ms", "20"))))
+            .throttlingRate(Double.parseDouble(option("throttling-rate", "0")))
+            .failureRate(Double.parseDouble(option("failure-rate", "0")))
+            .requestsPerSecond(Double.parseDouble(option("requests-per-second", "0")))
+            .build();
+        this.mix = parseMix(option("mix", "read:70,update:25,list:5"));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options are given as --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTest(options).run();
+    }
+
+    private void run() throws Exception {
+        final InMemoryCodeGuruProfilerClient service = new InMemoryCodeGuruProfilerClient();
+        seed(service);
+
+        try (LocalCodeGuruProfilerService localService = LocalCodeGuruProfilerService.start(service, faults)) {
+            // Has to be set before the handlers are created, they build the shared client.
+            System.setProperty("codeguruprofiler.endpoint", localService.endpoint().toString());
+            System.setProperty("aws.region", "us-east-1");
+
+            System.out.printf("Load testing %d profiling groups from %d threads for %ds, mix %s, service at %s with %s%n",
+                profilingGroupCount, threadCount, duration.getSeconds(), mix, localService.endpoint(), faults);
+
+            final ReadHandler readHandler = new ReadHandler();
+            final UpdateHandler updateHandler = new UpdateHandler();
+            final ListHandler listHandler = new ListHandler();
+
+            final ExecutorService threads = Executors.newFixedThreadPool(threadCount);
+            final long start = System.nanoTime();
+            final long end = start + duration.toNanos();
+            final List<Future<Map<Operation, LatencyRecorder>>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                final long seed = i;
+                results.add(threads.submit(() -> drive(new Random(seed), end, readHandler, updateHandler, listHandler)));
+            }
+
+            final Map<Operation, LatencyRecorder> merged = new EnumMap<>(Operation.class);
+            for (Future<Map<Operation, LatencyRecorder>> result : results) {
+                result.get().forEach((operation, recorder) -> merged.computeIfAbsent(operation, o -> new LatencyRecorder()).addAll(recorder));
+            }
+            final long elapsed = System.nanoTime() - start;
+            threads.shutdown();
+
+            System.out.printf("%nHandler invocations over %.1fs:%n", elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+            final LatencyRecorder total = new LatencyRecorder();
+            for (Operation operation : Operation.values()) {
+                final LatencyRecorder recorder = merged.getOrDefault(operation, new LatencyRecorder());
+                System.out.println(recorder.summary(operation.name(), elapsed));
+                total.addAll(recorder);
+            }
+            System.out.println(total.summary("TOTAL", elapsed));
+
+            System.out.printf("%nService: %d requests, %d throttled, %d failed%n",
+                localService.getRequests(), localService.getThrottled(), localService.getFailed());
+            System.out.printf("Client-side rates (calls/s): %s%n", CodeGuruProfilerClientRegistry.getRequestRates());
+        }
+    }
+
+    private void seed(final InMemoryCodeGuruProfilerClient service) {
+        for (int i = 0; i < profilingGroupCount; i++) {
+            final ResourceModel model = HandlerFixtures.model(PROFILING_GROUP_PREFIX + i, PRINCIPAL_COUNT, CHANNEL_COUNT, TAG_COUNT, "a");
+            final Map<String, String> tags = new HashMap<>();
+            model.getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+            service.createProfilingGroup(CreateProfilingGroupRequest.builder()
+                .profilingGroupName(model.getProfilingGroupName())
+                .computePlatform(model.getComputePlatform())
+                .tags(tags)
+                .build());
+            service.putPermission(PutPermissionRequest.builder()
+                .profilingGroupName(model.getProfilingGroupName())
+                .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                .principals(model.getAgentPermissions().getPrincipals())
+                .build());
+            final List<Channel> channels = new ArrayList<>();
+            model.getAnomalyDetectionNotificationConfiguration().forEach(channel ->
+                channels.add(Channel.builder().uri(channel.getChannelUri()).eventPublishers(EventPublisher.ANOMALY_DETECTION).build()));
+            service.addNotificationChannels(AddNotificationChannelsRequest.builder()
+                .profilingGroupName(model.getProfilingGroupName())
+                .channels(channels)
+                .build());
+        }
+    }
+
+    private Map<Operation, LatencyRecorder> drive(final Random random, final long end, final ReadHandler readHandler,
+                                                  final UpdateHandler updateHandler, final ListHandler listHandler) {
+        final AmazonWebServicesClientProxy proxy = HandlerFixtures.proxy();
+        final Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        final int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+
+        while (System.nanoTime() < end) {
+            final Operation operation = pick(random.nextInt(totalWeight));
+            final String name = PROFILING_GROUP_PREFIX + random.nextInt(profilingGroupCount);
+
+            final long start = System.nanoTime();
+            String outcome;
+            try {
+                final ProgressEvent<ResourceModel, CallbackContext> event;
+                switch (operation) {
+                    case READ:
+                        event = readHandler.handleRequest(proxy, HandlerFixtures.request(ResourceModel.builder().profilingGroupName(name).build()),
+                            null, HandlerFixtures.NO_OP_LOGGER);
+                        break;
+                    case UPDATE:
+                        final String variant = random.nextBoolean() ? "a" : "b";
+                        event = updateHandler.handleRequest(proxy,
+                            HandlerFixtures.request(HandlerFixtures.model(name, PRINCIPAL_COUNT, CHANNEL_COUNT, TAG_COUNT, variant)),
+                            null, HandlerFixtures.NO_OP_LOGGER);
+                        break;
+                    default:
+                        final ResourceHandlerRequest<ResourceModel> request = HandlerFixtures.request(ResourceModel.builder().build());
+                        event = listHandler.handleRequest(proxy, request, null, HandlerFixtures.NO_OP_LOGGER);
+                        break;
+                }
+                outcome = event.getStatus() == OperationStatus.FAILED ? "FAILED:" + event.getErrorCode() : event.getStatus().name();
+            } catch (RuntimeException e) {
+                outcome = e.getClass().getSimpleName();
+            }
+            recorders.computeIfAbsent(operation, o -> new LatencyRecorder()).record(System.nanoTime() - start, outcome);
+        }
+        return recorders;
+    }
+
+    private Operation pick(final int roll) {
+        int remaining = roll;
+        for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+            remaining -= weight.getValue();
+            if (remaining < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException("Roll " + roll + " is out of the mix " + mix);
+    }
+
+    private String option(final String name, final String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    // "read:70,update:25,list:5" gives the relative weight of each handler.
+    private static Map<Operation, Integer> parseMix(final String mix) {
+        final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            final String[] parts = entry.split(":");
+            final int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix " + mix + " does not run any handler");
+        }
+        return weights;
+    }
+}
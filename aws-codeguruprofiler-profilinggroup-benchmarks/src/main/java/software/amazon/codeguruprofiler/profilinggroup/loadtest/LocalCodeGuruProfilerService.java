@@ -0,0 +1,459 @@
+package software.amazon.codeguruprofiler.profilinggroup.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
+import software.amazon.awssdk.services.codeguruprofiler.model.ConflictException;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.NotificationConfiguration;
+import software.amazon.awssdk.services.codeguruprofiler.model.ProfilingGroupDescription;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.codeguruprofiler.model.TagResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.UntagResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ValidationException;
+import software.amazon.codeguruprofiler.profilinggroup.benchmarks.InMemoryCodeGuruProfilerClient;
+
+/**
+ * Serves the CodeGuru Profiler operations the handlers use over HTTP on localhost, speaking the service's REST JSON
+ * protocol, so that the real SDK client can be pointed at it with the endpoint override.
+ *
+ * The state lives in an {@link InMemoryCodeGuruProfilerClient}; this class only translates HTTP to its requests and
+ * back, after applying the latency, throttling and failures of the {@link FaultInjection}. Request signatures are
+ * not checked.
+ */
+public final class LocalCodeGuruProfilerService implements AutoCloseable {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String PROFILING_GROUPS = "profilingGroups";
+    private static final String TAGS = "tags";
+
+    private final InMemoryCodeGuruProfilerClient service;
+    private final FaultInjection faults;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ServiceRateLimit rateLimit;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private LocalCodeGuruProfilerService(final InMemoryCodeGuruProfilerClient service, final FaultInjection faults) throws IOException {
+        this.service = service;
+        this.faults = faults;
+        this.rateLimit = faults.getRequestsPerSecond() > 0 ? new ServiceRateLimit(faults.getRequestsPerSecond()) : null;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-codeguru-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts serving on an ephemeral port of the loopback interface, see {@link #endpoint()}.
+     */
+    public static LocalCodeGuruProfilerService start(final InMemoryCodeGuruProfilerClient service, final FaultInjection faults) throws IOException {
+        final LocalCodeGuruProfilerService localService = new LocalCodeGuruProfilerService(service, faults);
+        localService.server.start();
+        return localService;
+    }
+
+    public URI endpoint() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            delay();
+            if (shouldThrottle()) {
+                throttled.increment();
+                sendError(exchange, 429, "ThrottlingException", "Rate exceeded");
+                return;
+            }
+            if (faults.getFailureRate() > 0 && ThreadLocalRandom.current().nextDouble() < faults.getFailureRate()) {
+                failed.increment();
+                sendError(exchange, 500, "InternalServerException", "Injected failure");
+                return;
+            }
+
+            final JsonNode response = dispatch(exchange.getRequestMethod(), pathOf(exchange), queryOf(exchange), bodyOf(exchange));
+            if (response == null) {
+                send(exchange, 204, null);
+            } else {
+                send(exchange, 200, objectMapper.writeValueAsBytes(response));
+            }
+        } catch (AwsServiceException e) {
+            sendError(exchange, statusOf(e), e.getClass().getSimpleName(), e.awsErrorDetails() == null ? e.getMessage() : e.awsErrorDetails().errorMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "InternalServerException", String.valueOf(e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JsonNode dispatch(final String method, final List<String> path, final Map<String, List<String>> query, final JsonNode body) {
+        if (path.size() >= 1 && PROFILING_GROUPS.equals(path.get(0))) {
+            if (path.size() == 1) {
+                return "POST".equals(method) ? createProfilingGroup(body) : listProfilingGroups(query);
+            }
+            final String name = path.get(1);
+            if (path.size() == 2) {
+                return "DELETE".equals(method) ? deleteProfilingGroup(name) : describeProfilingGroup(name);
+            }
+            if ("policy".equals(path.get(2))) {
+                if (path.size() == 3) {
+                    return getPolicy(name);
+                }
+                return "PUT".equals(method) ? putPermission(name, path.get(3), body) : removePermission(name, path.get(3), query);
+            }
+            if ("notificationConfiguration".equals(path.get(2))) {
+                if (path.size() == 4) {
+                    return removeNotificationChannel(name, path.get(3));
+                }
+                return "POST".equals(method) ? addNotificationChannels(name, body) : getNotificationConfiguration(name);
+            }
+        } else if (path.size() == 2 && TAGS.equals(path.get(0))) {
+            final String arn = path.get(1);
+            switch (method) {
+                case "POST":
+                    return tagResource(arn, body);
+                case "DELETE":
+                    return untagResource(arn, query);
+                default:
+                    return listTagsForResource(arn);
+            }
+        }
+        throw ValidationException.builder().message("Unsupported operation " + method + " /" + String.join("/", path)).build();
+    }
+
+    private JsonNode createProfilingGroup(final JsonNode body) {
+        final ProfilingGroupDescription created = service.createProfilingGroup(CreateProfilingGroupRequest.builder()
+            .profilingGroupName(body.path("profilingGroupName").asText())
+            .computePlatform(body.path("computePlatform").asText(null))
+            .tags(stringMapOf(body.path("tags")))
+            .build()).profilingGroup();
+        return toJson(created);
+    }
+
+    private JsonNode describeProfilingGroup(final String name) {
+        return toJson(service.describeProfilingGroup(DescribeProfilingGroupRequest.builder().profilingGroupName(name).build()).profilingGroup());
+    }
+
+    private JsonNode deleteProfilingGroup(final String name) {
+        service.deleteProfilingGroup(DeleteProfilingGroupRequest.builder().profilingGroupName(name).build());
+        return null;
+    }
+
+    private JsonNode listProfilingGroups(final Map<String, List<String>> query) {
+        final ListProfilingGroupsResponse response = service.listProfilingGroups(ListProfilingGroupsRequest.builder()
+            .includeDescription(Boolean.valueOf(first(query, "includeDescription")))
+            .maxResults(first(query, "maxResults") == null ? null : Integer.valueOf(first(query, "maxResults")))
+            .nextToken(first(query, "nextToken"))
+            .build());
+        final ObjectNode json = objectMapper.createObjectNode();
+        final ArrayNode names = json.putArray("profilingGroupNames");
+        response.profilingGroupNames().forEach(names::add);
+        final ArrayNode profilingGroups = json.putArray("profilingGroups");
+        response.profilingGroups().forEach(description -> profilingGroups.add(toJson(description)));
+        if (response.nextToken() != null) {
+            json.put("nextToken", response.nextToken());
+        }
+        return json;
+    }
+
+    private JsonNode getPolicy(final String name) {
+        final GetPolicyResponse response = service.getPolicy(GetPolicyRequest.builder().profilingGroupName(name).build());
+        return policyJson(response.policy(), response.revisionId());
+    }
+
+    private JsonNode putPermission(final String name, final String actionGroup, final JsonNode body) {
+        final List<String> principals = new ArrayList<>();
+        body.path("principals").forEach(principal -> principals.add(principal.asText()));
+        final PutPermissionResponse response = service.putPermission(PutPermissionRequest.builder()
+            .profilingGroupName(name)
+            .actionGroup(actionGroup)
+            .principals(principals)
+            .revisionId(body.path("revisionId").asText(null))
+            .build());
+        return policyJson(response.policy(), response.revisionId());
+    }
+
+    private JsonNode removePermission(final String name, final String actionGroup, final Map<String, List<String>> query) {
+        final RemovePermissionResponse response = service.removePermission(RemovePermissionRequest.builder()
+            .profilingGroupName(name)
+            .actionGroup(actionGroup)
+            .revisionId(first(query, "revisionId"))
+            .build());
+        return policyJson(response.policy(), response.revisionId());
+    }
+
+    private JsonNode getNotificationConfiguration(final String name) {
+        return notificationConfigurationJson(service.getNotificationConfiguration(
+            GetNotificationConfigurationRequest.builder().profilingGroupName(name).build()).notificationConfiguration());
+    }
+
+    private JsonNode addNotificationChannels(final String name, final JsonNode body) {
+        final List<Channel> channels = new ArrayList<>();
+        body.path("channels").forEach(channel -> {
+            final List<String> eventPublishers = new ArrayList<>();
+            channel.path("eventPublishers").forEach(eventPublisher -> eventPublishers.add(eventPublisher.asText()));
+            channels.add(Channel.builder()
+                .id(channel.path("id").asText(null))
+                .uri(channel.path("uri").asText())
+                .eventPublishersWithStrings(eventPublishers)
+                .build());
+        });
+        return notificationConfigurationJson(service.addNotificationChannels(
+            AddNotificationChannelsRequest.builder().profilingGroupName(name).channels(channels).build()).notificationConfiguration());
+    }
+
+    private JsonNode removeNotificationChannel(final String name, final String channelId) {
+        return notificationConfigurationJson(service.removeNotificationChannel(
+            RemoveNotificationChannelRequest.builder().profilingGroupName(name).channelId(channelId).build()).notificationConfiguration());
+    }
+
+    private JsonNode listTagsForResource(final String arn) {
+        final ObjectNode json = objectMapper.createObjectNode();
+        json.set("tags", objectMapper.valueToTree(service.listTagsForResource(ListTagsForResourceRequest.builder().resourceArn(arn).build()).tags()));
+        return json;
+    }
+
+    private JsonNode tagResource(final String arn, final JsonNode body) {
+        service.tagResource(TagResourceRequest.builder().resourceArn(arn).tags(stringMapOf(body.path("tags"))).build());
+        return null;
+    }
+
+    private JsonNode untagResource(final String arn, final Map<String, List<String>> query) {
+        service.untagResource(UntagResourceRequest.builder()
+            .resourceArn(arn)
+            .tagKeys(query.getOrDefault("tagKeys", Collections.emptyList()))
+            .build());
+        return null;
+    }
+
+    private static JsonNode toJson(final ProfilingGroupDescription description) {
+        final ObjectNode json = objectMapper.createObjectNode()
+            .put("name", description.name())
+            .put("arn", description.arn());
+        if (description.computePlatformAsString() != null) {
+            json.put("computePlatform", description.computePlatformAsString());
+        }
+        json.set("tags", objectMapper.valueToTree(description.tags()));
+        return json;
+    }
+
+    private static JsonNode policyJson(final String policy, final String revisionId) {
+        final ObjectNode json = objectMapper.createObjectNode();
+        if (policy != null) {
+            json.put("policy", policy);
+        }
+        if (revisionId != null) {
+            json.put("revisionId", revisionId);
+        }
+        return json;
+    }
+
+    private static JsonNode notificationConfigurationJson(final NotificationConfiguration configuration) {
+        final ObjectNode json = objectMapper.createObjectNode();
+        final ArrayNode channels = json.putObject("notificationConfiguration").putArray("channels");
+        for (Channel channel : configuration.channels()) {
+            final ObjectNode channelJson = channels.addObject().put("id", channel.id()).put("uri", channel.uri());
+            final ArrayNode eventPublishers = channelJson.putArray("eventPublishers");
+            channel.eventPublishersAsStrings().forEach(eventPublishers::add);
+        }
+        return json;
+    }
+
+    private static Map<String, String> stringMapOf(final JsonNode json) {
+        final Map<String, String> map = new HashMap<>();
+        final Iterator<Map.Entry<String, JsonNode>> fields = json.fields();
+        while (fields.hasNext()) {
+            final Map.Entry<String, JsonNode> field = fields.next();
+            map.put(field.getKey(), field.getValue().asText());
+        }
+        return map;
+    }
+
+    private void delay() {
+        long delayNanos = faults.getLatency().toNanos();
+        if (!faults.getLatencyJitter().isZero()) {
+            delayNanos += ThreadLocalRandom.current().nextLong(faults.getLatencyJitter().toNanos());
+        }
+        if (delayNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean shouldThrottle() {
+        if (rateLimit != null && !rateLimit.tryAcquire()) {
+            return true;
+        }
+        return faults.getThrottlingRate() > 0 && ThreadLocalRandom.current().nextDouble() < faults.getThrottlingRate();
+    }
+
+    private static int statusOf(final AwsServiceException exception) {
+        if (exception instanceof ResourceNotFoundException) {
+            return 404;
+        }
+        if (exception instanceof ConflictException) {
+            return 409;
+        }
+        if (exception instanceof ValidationException) {
+            return 400;
+        }
+        return 500;
+    }
+
+    private static void sendError(final HttpExchange exchange, final int status, final String errorType, final String message) throws IOException {
+        // The SDK reads the error code from this header, so the client throws the same exception the service would.
+        exchange.getResponseHeaders().set("x-amzn-ErrorType", errorType);
+        send(exchange, status, objectMapper.writeValueAsBytes(objectMapper.createObjectNode().put("message", message)));
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // Labels like the resource ARN are percent-encoded by the SDK, so the raw path is split before decoding.
+    private static List<String> pathOf(final HttpExchange exchange) {
+        final List<String> segments = new ArrayList<>();
+        for (String segment : exchange.getRequestURI().getRawPath().split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(decode(segment));
+            }
+        }
+        return segments;
+    }
+
+    private static Map<String, List<String>> queryOf(final HttpExchange exchange) {
+        final Map<String, List<String>> query = new HashMap<>();
+        final String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            final int separator = parameter.indexOf('=');
+            final String key = decode(separator < 0 ? parameter : parameter.substring(0, separator));
+            final String value = separator < 0 ? "" : decode(parameter.substring(separator + 1));
+            query.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return query;
+    }
+
+    private static JsonNode bodyOf(final HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            final JsonNode body = objectMapper.readTree(in);
+            return body == null || body.isMissingNode() ? objectMapper.createObjectNode() : body;
+        }
+    }
+
+    private static String first(final Map<String, List<String>> query, final String key) {
+        final List<String> values = query.get(key);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The service-side limit: a token bucket holding a second worth of requests, so bursts above the rate are throttled.
+     */
+    private static final class ServiceRateLimit {
+        private final double requestsPerSecond;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        private ServiceRateLimit(final double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.tokens = requestsPerSecond;
+        }
+
+        private synchronized boolean tryAcquire() {
+            final long now = System.nanoTime();
+            tokens = Math.min(requestsPerSecond, tokens + (now - lastRefillNanos) * requestsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package software.amazon.codeguruprofiler.profilinggroup.smoketest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
+import software.amazon.codeguruprofiler.profilinggroup.benchmarks.InMemoryCodeGuruProfilerClient;
+import software.amazon.codeguruprofiler.profilinggroup.loadtest.FaultInjection;
+import software.amazon.codeguruprofiler.profilinggroup.loadtest.LocalCodeGuruProfilerService;
+
+/**
+ * Runs the Create, Read, Update, List and Delete handlers once each in a function process, the way Lambda would, and
+ * checks that every one of them succeeds against a {@link LocalCodeGuruProfilerService}.
+ *
+ * The arguments are the command that starts the function, which gets the handler to run as its last argument and
+ * polls the local Runtime API for the events. For the shaded handler jar:
+ *
+ *     HandlerSmokeTest java -cp <handler jar>:<runtime interface client jar> com.amazonaws.services.lambda.runtime.api.client.AWSLambda
+ *
+ * The events are those of the handler's test entry point, also used by the SAM tests, so no CloudFormation endpoint
+ * or provider credentials are needed.
+ */
+public final class HandlerSmokeTest {
+    static final String FUNCTION_NAME = "HandlerSmokeTest";
+    private static final String HANDLER = "software.amazon.codeguruprofiler.profilinggroup.HandlerWrapper::testEntrypoint";
+    private static final String PROFILING_GROUP_NAME = "HandlerSmokeTest";
+    private static final int MAX_INVOCATIONS_PER_ACTION = 10;
+    private static final long RESPONSE_TIMEOUT_SECONDS = 60;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final InMemoryCodeGuruProfilerClient service;
+    private final LocalLambdaRuntimeApi runtimeApi;
+
+    private HandlerSmokeTest(final InMemoryCodeGuruProfilerClient service, final LocalLambdaRuntimeApi runtimeApi) {
+        this.service = service;
+        this.runtimeApi = runtimeApi;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Give the command that starts the function, its handler is appended to it");
+        }
+
+        final InMemoryCodeGuruProfilerClient service = new InMemoryCodeGuruProfilerClient();
+        Process function = null;
+        try (LocalCodeGuruProfilerService localService = LocalCodeGuruProfilerService.start(service, FaultInjection.NONE);
+             LocalLambdaRuntimeApi runtimeApi = LocalLambdaRuntimeApi.start()) {
+            function = start(args, localService, runtimeApi);
+            new HandlerSmokeTest(service, runtimeApi).run();
+            System.out.println("All handlers succeeded");
+        } finally {
+            if (function != null) {
+                function.destroy();
+                function.waitFor(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static Process start(final String[] command, final LocalCodeGuruProfilerService localService,
+                                 final LocalLambdaRuntimeApi runtimeApi) throws IOException {
+        final List<String> commandLine = new ArrayList<>(Arrays.asList(command));
+        commandLine.add(HANDLER);
+        final ProcessBuilder processBuilder = new ProcessBuilder(commandLine).inheritIO();
+        final Map<String, String> environment = processBuilder.environment();
+        environment.put("AWS_LAMBDA_RUNTIME_API", runtimeApi.address());
+        environment.put("AWS_LAMBDA_FUNCTION_NAME", FUNCTION_NAME);
+        environment.put("AWS_LAMBDA_FUNCTION_VERSION", "$LATEST");
+        environment.put("AWS_LAMBDA_FUNCTION_MEMORY_SIZE", "3008");
+        environment.put("AWS_LAMBDA_LOG_GROUP_NAME", "/aws/lambda/" + FUNCTION_NAME);
+        environment.put("AWS_LAMBDA_LOG_STREAM_NAME", "smoke-test");
+        environment.put("AWS_REGION", "us-east-1");
+        environment.put("_HANDLER", HANDLER);
+        environment.put("CODEGURU_PROFILER_ENDPOINT", localService.endpoint().toString());
+        return processBuilder.start();
+    }
+
+    private void run() throws Exception {
+        final ObjectNode created = model("a");
+        invoke("CREATE", created, null);
+        describe();
+
+        invoke("READ", key(), null);
+        invoke("UPDATE", model("b"), created);
+        invoke("LIST", objectMapper.createObjectNode(), null);
+        invoke("DELETE", key(), null);
+        try {
+            describe();
+            throw new IllegalStateException("The profiling group is still there after DELETE");
+        } catch (ResourceNotFoundException e) {
+            // Deleted, as expected.
+        }
+    }
+
+    // Re-invokes with the returned callback context while the handler hands control back, as CloudFormation would.
+    private void invoke(final String action, final ObjectNode desired, final ObjectNode previous) throws Exception {
+        JsonNode callbackContext = null;
+        for (int invocation = 1; invocation <= MAX_INVOCATIONS_PER_ACTION; invocation++) {
+            final long start = System.nanoTime();
+            final JsonNode response = objectMapper.readTree(runtimeApi.invoke(event(action, desired, previous, callbackContext))
+                .get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            final String status = response.path("status").asText();
+            System.out.printf("%-6s #%d %-11s %8.1fms%n", action, invocation, status,
+                (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1));
+
+            if ("SUCCESS".equals(status)) {
+                return;
+            }
+            if (!"IN_PROGRESS".equals(status)) {
+                throw new IllegalStateException(action + " did not succeed: " + response);
+            }
+            callbackContext = response.get("callbackContext");
+        }
+        throw new IllegalStateException(action + " was still in progress after " + MAX_INVOCATIONS_PER_ACTION + " invocations");
+    }
+
+    private void describe() {
+        service.describeProfilingGroup(DescribeProfilingGroupRequest.builder().profilingGroupName(PROFILING_GROUP_NAME).build());
+    }
+
+    private static String event(final String action, final ObjectNode desired, final ObjectNode previous, final JsonNode callbackContext)
+        throws IOException {
+        final ObjectNode event = objectMapper.createObjectNode();
+        event.putObject("credentials")
+            .put("accessKeyId", "accessKeyId")
+            .put("secretAccessKey", "secretAccessKey")
+            .put("sessionToken", "sessionToken");
+        event.put("action", action);
+        final ObjectNode request = event.putObject("request")
+            .put("clientRequestToken", "smoke-test-" + action.toLowerCase())
+            .put("logicalResourceIdentifier", "SmokeTestProfilingGroup");
+        request.set("desiredResourceState", desired);
+        if (previous != null) {
+            request.set("previousResourceState", previous);
+        }
+        event.set("callbackContext", callbackContext);
+        return objectMapper.writeValueAsString(event);
+    }
+
+    private static ObjectNode key() {
+        return objectMapper.createObjectNode().put("ProfilingGroupName", PROFILING_GROUP_NAME);
+    }
+
+    // Every property of the schema, so each handler goes through the permission, notification channel and tag paths.
+    private static ObjectNode model(final String variant) {
+        final ObjectNode model = key().put("ComputePlatform", "Default");
+        model.putObject("AgentPermissions").putArray("Principals")
+            .add("arn:aws:iam::111111111111:role/SmokeTest-" + variant);
+        model.putArray("AnomalyDetectionNotificationConfiguration").addObject()
+            .put("channelUri", "arn:aws:sns:us-east-1:111111111111:SmokeTest-" + variant);
+        model.putArray("Tags").addObject()
+            .put("Key", "variant")
+            .put("Value", variant);
+        return model;
+    }
+}
@@ -0,0 +1,157 @@
+package software.amazon.codeguruprofiler.profilinggroup.smoketest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The part of the Lambda Runtime API a custom runtime talks to, served on localhost: the function polls it for the
+ * next event and posts back the response or the error.
+ *
+ * Events are queued with {@link #invoke(String)}, which completes once the function has answered.
+ */
+final class LocalLambdaRuntimeApi implements AutoCloseable {
+    private static final String PREFIX = "/2018-06-01/runtime/";
+    private static final long INVOCATION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BlockingQueue<Invocation> pending = new LinkedBlockingQueue<>();
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final CompletableFuture<String> initError = new CompletableFuture<>();
+
+    private LocalLambdaRuntimeApi() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // The function holds a request open while it waits for the next event, so the server needs a thread to spare.
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-lambda-runtime-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PREFIX, this::handle);
+    }
+
+    static LocalLambdaRuntimeApi start() throws IOException {
+        final LocalLambdaRuntimeApi runtimeApi = new LocalLambdaRuntimeApi();
+        runtimeApi.server.start();
+        return runtimeApi;
+    }
+
+    /**
+     * @return the host and port to set AWS_LAMBDA_RUNTIME_API to.
+     */
+    String address() {
+        return server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the response of the function to the event; completed exceptionally when the function reports an error,
+     *     either for this event or while initializing.
+     */
+    CompletableFuture<String> invoke(final String event) {
+        final Invocation invocation = new Invocation(UUID.randomUUID().toString(), event);
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        inFlight.put(invocation.requestId, response);
+        initError.whenComplete((error, e) -> response.completeExceptionally(new IllegalStateException("Init failed: " + error)));
+        pending.add(invocation);
+        return response;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath().substring(PREFIX.length());
+        try {
+            if ("GET".equals(exchange.getRequestMethod()) && "invocation/next".equals(path)) {
+                next(exchange);
+            } else if ("POST".equals(exchange.getRequestMethod()) && "init/error".equals(path)) {
+                initError.complete(read(exchange));
+                send(exchange, 202, "{}");
+            } else if ("POST".equals(exchange.getRequestMethod()) && path.startsWith("invocation/")) {
+                answer(exchange, path.split("/"));
+            } else {
+                send(exchange, 404, "{\"errorMessage\":\"Unknown path " + path + "\"}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    private void next(final HttpExchange exchange) throws IOException, InterruptedException {
+        final Invocation invocation = pending.take();
+        exchange.getResponseHeaders().set("Lambda-Runtime-Aws-Request-Id", invocation.requestId);
+        exchange.getResponseHeaders().set("Lambda-Runtime-Deadline-Ms", String.valueOf(System.currentTimeMillis() + INVOCATION_TIMEOUT_MILLIS));
+        exchange.getResponseHeaders().set("Lambda-Runtime-Invoked-Function-Arn",
+            "arn:aws:lambda:us-east-1:111111111111:function:" + HandlerSmokeTest.FUNCTION_NAME);
+        exchange.getResponseHeaders().set("Lambda-Runtime-Trace-Id", "Root=1-00000000-000000000000000000000000;Sampled=0");
+        send(exchange, 200, invocation.event);
+    }
+
+    // invocation/{requestId}/response or invocation/{requestId}/error
+    private void answer(final HttpExchange exchange, final String[] segments) throws IOException {
+        final CompletableFuture<String> response = segments.length == 3 ? inFlight.remove(segments[1]) : null;
+        if (response == null) {
+            send(exchange, 400, "{\"errorMessage\":\"Unknown invocation\"}");
+            return;
+        }
+        final String body = read(exchange);
+        if ("response".equals(segments[2])) {
+            response.complete(body);
+        } else {
+            response.completeExceptionally(new IllegalStateException("Invocation failed: " + body));
+        }
+        send(exchange, 202, "{}");
+    }
+
+    private static String read(final HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static final class Invocation {
+        private final String requestId;
+        private final String event;
+
+        private Invocation(final String requestId, final String event) {
+            this.requestId = requestId;
+            this.event = event;
+        }
+    }
+}
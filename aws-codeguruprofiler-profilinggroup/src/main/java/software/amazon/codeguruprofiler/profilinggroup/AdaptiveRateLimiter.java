@@ -0,0 +1,234 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.services.codeguruprofiler.model.ThrottlingException;
+
+/**
+ * Paces CodeGuru Profiler calls with one token bucket per account and API operation, shared by every client in the
+ * container. The account is the one the call was scoped to by {@link CallScope}.
+ *
+ * Calls go out unpaced until the service first throttles the operation for the account. From then on the bucket
+ * adapts AIMD-style: a throttled attempt halves the rate, every successful attempt raises it by a small fixed step,
+ * and back at the maximum rate the calls go out unpaced again. The bucket is consulted before each attempt (retries
+ * included), so once the service starts throttling the container slows down instead of spending its retries on more
+ * rejections.
+ *
+ * A wait never outlasts the time the attempt or the call has left: when the next token is further away than that the
+ * attempt fails straight away with a {@link ThrottlingException}.
+ */
+class AdaptiveRateLimiter implements ExecutionInterceptor {
+    static final double MIN_RATE = 0.5;
+    static final double MAX_RATE = 50.0;
+    static final double ADDITIVE_INCREASE = 0.1;
+    static final double MULTIPLICATIVE_DECREASE = 0.5;
+    // Concurrent calls throttled by the same burst should only cut the rate once.
+    static final long DECREASE_COOL_DOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int THROTTLING_STATUS_CODE = 429;
+    private static final String UNKNOWN_OPERATION = "Unknown";
+    private static final ExecutionAttribute<Long> CALL_STARTED_NANOS = new ExecutionAttribute<>("CodeGuruProfilerCallStartedNanos");
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private final LongConsumer sleeper;
+
+    AdaptiveRateLimiter() {
+        this(System::nanoTime, AdaptiveRateLimiter::sleepNanos);
+    }
+
+    AdaptiveRateLimiter(final LongSupplier nanoClock, final LongConsumer sleeper) {
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+    }
+
+    @Override
+    public void beforeExecution(final Context.BeforeExecution context, final ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(CALL_STARTED_NANOS, nanoClock.getAsLong());
+    }
+
+    @Override
+    public void beforeTransmission(final Context.BeforeTransmission context, final ExecutionAttributes executionAttributes) {
+        acquire(bucketKey(executionAttributes), maxWaitNanos(context.request(), executionAttributes));
+    }
+
+    @Override
+    public void afterTransmission(final Context.AfterTransmission context, final ExecutionAttributes executionAttributes) {
+        if (context.httpResponse().statusCode() == THROTTLING_STATUS_CODE) {
+            onThrottled(bucketKey(executionAttributes));
+        } else if (context.httpResponse().isSuccessful()) {
+            onSuccess(bucketKey(executionAttributes));
+        }
+    }
+
+    void acquire(final String bucketKey, final long maxWaitNanos) {
+        final TokenBucket bucket = bucket(bucketKey);
+        final long waitNanos = bucket.reserve(maxWaitNanos);
+        if (waitNanos < 0) {
+            // Built without a status code so that the SDK does not retry it, the handlers map it like any throttling.
+            throw ThrottlingException.builder()
+                .message(String.format("%s is paced to %.2f calls per second, the next call would not start in the time left",
+                    bucketKey, bucket.rate()))
+                .build();
+        }
+        if (waitNanos > 0) {
+            sleeper.accept(waitNanos);
+        }
+    }
+
+    void onThrottled(final String bucketKey) {
+        bucket(bucketKey).decrease();
+    }
+
+    void onSuccess(final String bucketKey) {
+        bucket(bucketKey).increase();
+    }
+
+    /**
+     * @return the current rate, in calls per second, of every account and operation called so far in this container.
+     */
+    Map<String, Double> currentRates() {
+        final Map<String, Double> rates = new TreeMap<>();
+        buckets.forEach((key, bucket) -> rates.put(key, bucket.rate()));
+        return rates;
+    }
+
+    /**
+     * @return the current rate, in calls per second, of every operation called so far for the account, by operation.
+     */
+    Map<String, Double> currentRates(final String awsAccountId) {
+        final String prefix = bucketKey(awsAccountId, "");
+        final Map<String, Double> rates = new TreeMap<>();
+        buckets.forEach((key, bucket) -> {
+            // Without an account, only the buckets that are not scoped to one.
+            if (key.startsWith(prefix) && key.indexOf('/', prefix.length()) < 0) {
+                rates.put(key.substring(prefix.length()), bucket.rate());
+            }
+        });
+        return rates;
+    }
+
+    /**
+     * @return the key of the bucket of an operation called for an account, the operation alone when the account is unknown.
+     */
+    static String bucketKey(final String awsAccountId, final String operationName) {
+        final String operation = operationName == null ? UNKNOWN_OPERATION : operationName;
+        return awsAccountId == null ? operation : awsAccountId + "/" + operation;
+    }
+
+    private TokenBucket bucket(final String bucketKey) {
+        return buckets.computeIfAbsent(bucketKey, key -> new TokenBucket(nanoClock));
+    }
+
+    private static String bucketKey(final ExecutionAttributes executionAttributes) {
+        return bucketKey(CallScope.accountOf(executionAttributes), executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+    }
+
+    // The least of the attempt timeout and what is left of the call timeout, both as the request overrides them.
+    private long maxWaitNanos(final SdkRequest request, final ExecutionAttributes executionAttributes) {
+        if (!(request instanceof AwsRequest)) {
+            return Long.MAX_VALUE;
+        }
+        final Optional<AwsRequestOverrideConfiguration> overrideConfiguration = ((AwsRequest) request).overrideConfiguration();
+        long maxWaitNanos = overrideConfiguration.flatMap(AwsRequestOverrideConfiguration::apiCallAttemptTimeout)
+            .map(Duration::toNanos)
+            .orElse(Long.MAX_VALUE);
+        final Optional<Duration> callTimeout = overrideConfiguration.flatMap(AwsRequestOverrideConfiguration::apiCallTimeout);
+        final Long callStartedNanos = executionAttributes.getAttribute(CALL_STARTED_NANOS);
+        if (callTimeout.isPresent() && callStartedNanos != null) {
+            maxWaitNanos = Math.min(maxWaitNanos, callTimeout.get().toNanos() - (nanoClock.getAsLong() - callStartedNanos));
+        }
+        return Math.max(0, maxWaitNanos);
+    }
+
+    private static void sleepNanos(final long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static final class TokenBucket {
+        private final LongSupplier nanoClock;
+        // Until the first throttle, and again once the rate is back at its maximum.
+        private boolean unpaced = true;
+        private double rate = MAX_RATE;
+        // May go negative: a caller that finds the bucket empty reserves a future token and waits for it.
+        private double tokens = MAX_RATE;
+        private long lastRefillNanos;
+        private long lastDecreaseNanos;
+
+        TokenBucket(final LongSupplier nanoClock) {
+            this.nanoClock = nanoClock;
+            this.lastRefillNanos = nanoClock.getAsLong();
+            this.lastDecreaseNanos = lastRefillNanos - DECREASE_COOL_DOWN_NANOS;
+        }
+
+        /**
+         * Takes one token and returns how long, in nanoseconds, the caller has to wait for it to be available, or -1
+         * without taking it when that is not less than the given maximum.
+         */
+        synchronized long reserve(final long maxWaitNanos) {
+            if (unpaced) {
+                return 0;
+            }
+            refill();
+            final long waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+            if (waitNanos > 0 && waitNanos >= maxWaitNanos) {
+                return -1;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+
+        synchronized void increase() {
+            if (unpaced) {
+                return;
+            }
+            refill();
+            rate = Math.min(MAX_RATE, rate + ADDITIVE_INCREASE);
+            unpaced = rate >= MAX_RATE;
+        }
+
+        synchronized void decrease() {
+            refill();
+            final long now = lastRefillNanos;
+            if (now - lastDecreaseNanos < DECREASE_COOL_DOWN_NANOS) {
+                return;
+            }
+            lastDecreaseNanos = now;
+            unpaced = false;
+            rate = Math.max(MIN_RATE, rate * MULTIPLICATIVE_DECREASE);
+            // Drop the burst allowance along with the rate, otherwise the next calls go straight out again.
+            tokens = Math.min(tokens, 0);
+        }
+
+        synchronized double rate() {
+            return rate;
+        }
+
+        private void refill() {
+            final long now = nanoClock.getAsLong();
+            final double capacity = Math.max(1, rate);
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+        }
+    }
+}
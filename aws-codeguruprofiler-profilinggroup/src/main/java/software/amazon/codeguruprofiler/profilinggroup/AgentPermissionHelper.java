@@ -1,46 +1,93 @@
 package software.amazon.codeguruprofiler.profilinggroup;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
 import software.amazon.cloudformation.exceptions.CfnInternalFailureException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 
 import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
 
 public class AgentPermissionHelper {
-    private static final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientBuilder.create();
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // Read, List and Update on a warm container mostly see policies they have already parsed.
+    static final PolicyCache policyCache = new PolicyCache();
 
     @FunctionalInterface
     public interface GetPrincipalsFunction<Proxy, PgName, Principals> {
         Principals apply(Proxy s, PgName t);
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Makes the GetPrincipalsFunction of an invocation, given its deadline bound client and the account and region it is for.
+     */
+    @FunctionalInterface
+    interface PrincipalsReaderFactory {
+        GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> readerFor(CodeGuruProfilerClient profilerClient,
+                                                                                            String awsAccountId, String region);
+    }
+
     public static List<String> getPrincipalsFromPolicy(AmazonWebServicesClientProxy proxy, String pgName) {
+        return getPrincipalsFromPolicy(proxy, CodeGuruProfilerClientRegistry.getClient(), pgName);
+    }
+
+    public static List<String> getPrincipalsFromPolicy(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient, String pgName) {
+        return getPrincipalsFromPolicy(proxy, profilerClient, null, null, pgName);
+    }
+
+    /**
+     * Policies are only cached for the account and region they were read in, without them the policy is parsed every time.
+     */
+    public static List<String> getPrincipalsFromPolicy(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient,
+                                                       String awsAccountId, String region, String pgName) {
         GetPolicyRequest getPolicyRequest = GetPolicyRequest.builder().profilingGroupName(pgName).build();
         GetPolicyResponse getPolicyResponse = proxy.injectCredentialsAndInvokeV2(getPolicyRequest, profilerClient::getPolicy);
-        String policyInJson = getPolicyResponse.policy();
+        return principalsFrom(awsAccountId, region, pgName, getPolicyResponse);
+    }
+
+    /**
+     * @return a GetPrincipalsFunction that reads the policy through the given client, an invocation's deadline bound one say,
+     * for the profiling groups of the account in the region.
+     */
+    static GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> principalsReaderFor(CodeGuruProfilerClient profilerClient,
+                                                                                                         String awsAccountId, String region) {
+        return (proxy, pgName) -> getPrincipalsFromPolicy(proxy, profilerClient, awsAccountId, region, pgName);
+    }
+
+    /**
+     * @return the principals the agent permissions policy grants, or empty when the policy cannot be read.
+     */
+    static Optional<List<String>> tryPrincipalsFrom(String awsAccountId, String region, String pgName, GetPolicyResponse getPolicyResponse) {
+        try {
+            return Optional.ofNullable(principalsFrom(awsAccountId, region, pgName, getPolicyResponse));
+        } catch (CfnInternalFailureException e) {
+            return Optional.empty();
+        }
+    }
 
-        if (policyInJson == null || policyInJson.isEmpty()) return emptyList();
+    /**
+     * Drops the cached principals of the profiling group, to be called whenever its policy is changed.
+     */
+    static void invalidateCachedPolicy(String awsAccountId, String region, String pgName) {
+        policyCache.invalidate(awsAccountId, region, pgName);
+    }
+
+    private static List<String> principalsFrom(String awsAccountId, String region, String pgName, GetPolicyResponse getPolicyResponse) {
+        if (getPolicyResponse.policy() == null || getPolicyResponse.policy().isEmpty()) return emptyList();
+        if (awsAccountId == null || region == null) return parsePrincipals(getPolicyResponse.policy());
+
+        return policyCache.principals(awsAccountId, region, pgName, getPolicyResponse.revisionId(), getPolicyResponse.policy(),
+            AgentPermissionHelper::parsePrincipals);
+    }
 
+    private static List<String> parsePrincipals(String policyInJson) {
         try {
             // An example policy returned from the response can be found in [AgentPermissionHelperTest]
-            Map<String, List<Map<String, Map<String, Object>>>> policyMap = objectMapper.readValue(policyInJson, Map.class);
-            Object principals = policyMap.get("Statement").get(0).get("Principal").get("AWS");
-
-            if (principals instanceof String) {
-                return singletonList((String) principals);
-            } else {
-                return (List<String>) principals;
-            }
-        } catch (Exception e) {
+            return PolicyPrincipalsParser.parse(policyInJson);
+        } catch (IOException e) {
             throw new CfnInternalFailureException(e);
         }
     }
@@ -0,0 +1,183 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+/**
+ * Records, per API operation, how long calls take end to end, how many attempts they need, how often the service
+ * throttles them or rejects them on a conflicting change, and how long the client waits between attempts.
+ *
+ * Registered after the rate limiter, so the time between two attempts covers both the retry policy's backoff and the
+ * client-side pacing before the retry: everything that is spent on our side rather than in the service. Handlers
+ * drain the figures once per invocation, see {@link CodeGuruProfilerClientRegistry#publishApiCallMetrics}.
+ */
+class ApiCallMetrics implements ExecutionInterceptor {
+    private static final ExecutionAttribute<CallTiming> CALL_TIMING = new ExecutionAttribute<>("CodeGuruProfilerCallTiming");
+    private static final int THROTTLING_STATUS_CODE = 429;
+    private static final int CONFLICT_STATUS_CODE = 409;
+    private static final String UNKNOWN_OPERATION = "Unknown";
+
+    private final AtomicReference<ConcurrentMap<String, OperationMetrics>> operations = new AtomicReference<>(new ConcurrentHashMap<>());
+    private final LongSupplier nanoClock;
+
+    ApiCallMetrics() {
+        this(System::nanoTime);
+    }
+
+    ApiCallMetrics(final LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void beforeExecution(final Context.BeforeExecution context, final ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(CALL_TIMING, new CallTiming(nanoClock.getAsLong()));
+    }
+
+    @Override
+    public void beforeTransmission(final Context.BeforeTransmission context, final ExecutionAttributes executionAttributes) {
+        final CallTiming timing = executionAttributes.getAttribute(CALL_TIMING);
+        if (timing != null) {
+            timing.attemptStarted(nanoClock.getAsLong());
+        }
+    }
+
+    @Override
+    public void afterTransmission(final Context.AfterTransmission context, final ExecutionAttributes executionAttributes) {
+        final CallTiming timing = executionAttributes.getAttribute(CALL_TIMING);
+        if (timing != null) {
+            final int statusCode = context.httpResponse().statusCode();
+            timing.attemptEnded(nanoClock.getAsLong(), statusCode == THROTTLING_STATUS_CODE, statusCode == CONFLICT_STATUS_CODE);
+        }
+    }
+
+    @Override
+    public void afterExecution(final Context.AfterExecution context, final ExecutionAttributes executionAttributes) {
+        record(executionAttributes, false);
+    }
+
+    @Override
+    public void onExecutionFailure(final Context.FailedExecution context, final ExecutionAttributes executionAttributes) {
+        record(executionAttributes, true);
+    }
+
+    /**
+     * @return the figures recorded since the last drain, by operation name, and starts recording afresh.
+     */
+    Map<String, OperationMetrics> drain() {
+        return new TreeMap<>(operations.getAndSet(new ConcurrentHashMap<>()));
+    }
+
+    private void record(final ExecutionAttributes executionAttributes, final boolean failed) {
+        final CallTiming timing = executionAttributes.getAttribute(CALL_TIMING);
+        if (timing == null) {
+            return;
+        }
+        final String operationName = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        operations.get()
+            .computeIfAbsent(operationName == null ? UNKNOWN_OPERATION : operationName, name -> new OperationMetrics())
+            .record(nanoClock.getAsLong() - timing.startNanos, timing, failed);
+    }
+
+    /**
+     * Where one API call is at, attached to the call's execution attributes.
+     */
+    private static final class CallTiming {
+        private final long startNanos;
+        private int attempts;
+        private int throttles;
+        private int conflicts;
+        private long lastAttemptEndNanos = -1;
+        private long backoffNanos;
+
+        private CallTiming(final long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        // An attempt that failed before getting a response, on a connection error say, has no end: the wait after it is
+        // then counted in the latency but not in the backoff.
+        private synchronized void attemptStarted(final long nowNanos) {
+            if (attempts > 0 && lastAttemptEndNanos >= 0) {
+                backoffNanos += nowNanos - lastAttemptEndNanos;
+            }
+            attempts++;
+            lastAttemptEndNanos = -1;
+        }
+
+        private synchronized void attemptEnded(final long nowNanos, final boolean throttled, final boolean conflicted) {
+            lastAttemptEndNanos = nowNanos;
+            if (throttled) {
+                throttles++;
+            }
+            if (conflicted) {
+                conflicts++;
+            }
+        }
+    }
+
+    /**
+     * What the calls to one operation added up to.
+     */
+    static final class OperationMetrics {
+        private final List<Long> latenciesNanos = new ArrayList<>();
+        private long failures;
+        private long attempts;
+        private long throttles;
+        private long conflicts;
+        private long backoffNanos;
+
+        private synchronized void record(final long latencyNanos, final CallTiming timing, final boolean failed) {
+            latenciesNanos.add(latencyNanos);
+            if (failed) {
+                failures++;
+            }
+            synchronized (timing) {
+                attempts += timing.attempts;
+                throttles += timing.throttles;
+                conflicts += timing.conflicts;
+                backoffNanos += timing.backoffNanos;
+            }
+        }
+
+        synchronized long getCalls() {
+            return latenciesNanos.size();
+        }
+
+        synchronized List<Long> getLatenciesNanos() {
+            return Collections.unmodifiableList(new ArrayList<>(latenciesNanos));
+        }
+
+        synchronized long getFailures() {
+            return failures;
+        }
+
+        synchronized long getAttempts() {
+            return attempts;
+        }
+
+        synchronized long getThrottles() {
+            return throttles;
+        }
+
+        // A policy change that lost the race for the revision, see UpdatePlan.
+        synchronized long getConflicts() {
+            return conflicts;
+        }
+
+        synchronized long getBackoffNanos() {
+            return backoffNanos;
+        }
+    }
+}
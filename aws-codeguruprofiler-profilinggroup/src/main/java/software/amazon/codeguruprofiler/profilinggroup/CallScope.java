@@ -0,0 +1,117 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+
+/**
+ * The account a call is made for and, when the call site chose one, the retry profile of the call.
+ *
+ * The interceptors and retry policy of the shared client tell the accounts sharing a container, and the callers of the
+ * same operation, apart with the execution attributes of the call. The call site marks the request with them as
+ * headers of its override configuration (the SDK this handler builds against cannot put execution attributes on a
+ * request), and this interceptor, the first of the client, moves them to the execution attributes before the request
+ * is marshalled, so nothing of it is sent.
+ */
+final class CallScope implements ExecutionInterceptor {
+    static final ExecutionAttribute<String> AWS_ACCOUNT_ID = new ExecutionAttribute<>("CodeGuruProfilerAwsAccountId");
+    static final ExecutionAttribute<RetryProfile> RETRY_PROFILE = new ExecutionAttribute<>("CodeGuruProfilerRetryProfile");
+
+    static final String AWS_ACCOUNT_ID_HEADER = "x-codeguruprofiler-handler-account-id";
+    static final String RETRY_PROFILE_HEADER = "x-codeguruprofiler-handler-retry-profile";
+
+    @Override
+    public void beforeExecution(final Context.BeforeExecution context, final ExecutionAttributes executionAttributes) {
+        copyTo(context.request(), executionAttributes);
+    }
+
+    @Override
+    public SdkRequest modifyRequest(final Context.ModifyRequest context, final ExecutionAttributes executionAttributes) {
+        return unscoped(context.request());
+    }
+
+    /**
+     * @return the request marked with the account, keeping the retry profile it was marked with.
+     */
+    static <RequestT extends AwsRequest> RequestT scope(final RequestT request, final String accountId) {
+        return scope(request, accountId, null);
+    }
+
+    /**
+     * @return the request marked with the account and the retry profile to make the call with, whatever its operation.
+     * Null leaves what the request was marked with as is.
+     */
+    @SuppressWarnings("unchecked")
+    static <RequestT extends AwsRequest> RequestT scope(final RequestT request, final String accountId, final RetryProfile retryProfile) {
+        if (accountId == null && retryProfile == null) {
+            return request;
+        }
+        final AwsRequestOverrideConfiguration.Builder overrideConfiguration = request.overrideConfiguration()
+            .map(AwsRequestOverrideConfiguration::toBuilder)
+            .orElseGet(AwsRequestOverrideConfiguration::builder);
+        if (accountId != null) {
+            overrideConfiguration.putHeader(AWS_ACCOUNT_ID_HEADER, accountId);
+        }
+        if (retryProfile != null) {
+            overrideConfiguration.putHeader(RETRY_PROFILE_HEADER, retryProfile.name());
+        }
+        return (RequestT) request.toBuilder().overrideConfiguration(overrideConfiguration.build()).build();
+    }
+
+    /**
+     * @return the account the call was scoped to, null when it was not.
+     */
+    static String accountOf(final ExecutionAttributes executionAttributes) {
+        return executionAttributes == null ? null : executionAttributes.getAttribute(AWS_ACCOUNT_ID);
+    }
+
+    /**
+     * @return the retry profile the call site chose for the call, null when the call gets that of its operation.
+     */
+    static RetryProfile retryProfileOf(final ExecutionAttributes executionAttributes) {
+        return executionAttributes == null ? null : executionAttributes.getAttribute(RETRY_PROFILE);
+    }
+
+    // Puts what the request was marked with in the execution attributes of its call.
+    static void copyTo(final SdkRequest request, final ExecutionAttributes executionAttributes) {
+        header(request, AWS_ACCOUNT_ID_HEADER).ifPresent(accountId -> executionAttributes.putAttribute(AWS_ACCOUNT_ID, accountId));
+        header(request, RETRY_PROFILE_HEADER).ifPresent(profile -> executionAttributes.putAttribute(RETRY_PROFILE, RetryProfile.valueOf(profile)));
+    }
+
+    // The request without the headers it was marked with, the request as is when it has none.
+    static SdkRequest unscoped(final SdkRequest request) {
+        final Optional<AwsRequestOverrideConfiguration> overrideConfiguration = overrideConfigurationOf(request);
+        if (!overrideConfiguration.isPresent()
+            || (!overrideConfiguration.get().headers().containsKey(AWS_ACCOUNT_ID_HEADER)
+                && !overrideConfiguration.get().headers().containsKey(RETRY_PROFILE_HEADER))) {
+            return request;
+        }
+        final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(overrideConfiguration.get().headers());
+        headers.remove(AWS_ACCOUNT_ID_HEADER);
+        headers.remove(RETRY_PROFILE_HEADER);
+        return ((AwsRequest) request).toBuilder()
+            .overrideConfiguration(overrideConfiguration.get().toBuilder().headers(headers).build())
+            .build();
+    }
+
+    private static Optional<String> header(final SdkRequest request, final String name) {
+        return overrideConfigurationOf(request)
+            .map(overrideConfiguration -> overrideConfiguration.headers().get(name))
+            .filter(values -> !values.isEmpty())
+            .map(values -> values.get(0));
+    }
+
+    private static Optional<AwsRequestOverrideConfiguration> overrideConfigurationOf(final SdkRequest request) {
+        return request instanceof AwsRequest ? ((AwsRequest) request).overrideConfiguration() : Optional.empty();
+    }
+}
@@ -1,12 +1,32 @@
 package software.amazon.codeguruprofiler.profilinggroup;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 
 @Data
 @NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class CallbackContext {
+    // Number of invocations that ran out of time and handed control back to CloudFormation.
+    private int timedOutInvocations;
 
+    // Number of invocations that were throttled and handed control back to CloudFormation.
+    private int throttledInvocations;
+
+    // Create checkpoints: a re-invocation resumes at the first step not done yet.
+    private boolean profilingGroupCreated;
+    private boolean agentPermissionsPut;
+    private boolean notificationChannelsAdded;
+
+    // Set once Create gives up on a profiling group it made: it is deleted, on a later invocation if need be, and the
+    // creation then fails with the error code and message kept here.
+    private boolean compensationPending;
+    // Number of invocations whose delete ran out of time and handed control back to CloudFormation.
+    private int compensationInvocations;
+    private HandlerErrorCode compensationErrorCode;
+    private String compensationMessage;
 }
@@ -2,25 +2,41 @@ package software.amazon.codeguruprofiler.profilinggroup;
 
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
 import software.amazon.awssdk.core.retry.RetryPolicy;
 import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.core.retry.conditions.AndRetryCondition;
 import software.amazon.awssdk.core.retry.conditions.OrRetryCondition;
 import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+import software.amazon.awssdk.metrics.MetricPublisher;
 import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
 
+import java.net.URI;
 import java.time.Duration;
+import java.util.Optional;
 
 public class CodeGuruProfilerClientBuilder {
     // We can be a bit slower in CloudFormation for the sake of not failing the deployment.
     private static final Duration OVERALL_TIMEOUT = Duration.ofMinutes(3);
+    // The longest attempt timeout of any retry profile, each request then gets the one of its operation.
     private static final Duration ATTEMPT_TIMEOUT = Duration.ofSeconds(30);
-    // Note that we would timeout well before we do these many retries since we are bound by the overall request timeout.
-    private static final int MAX_ERROR_RETRY = 30;
+
+    // Shared by every client built here, so that together they cannot retry more than the container's budget.
+    private static final RetryBudget RETRY_BUDGET = new RetryBudget();
+    static final ExecutionInterceptor CALL_SCOPE = new CallScope();
+    static final ExecutionInterceptor ATTEMPT_TIMEOUTS = new RetryProfile.AttemptTimeouts();
+
+    // Points the clients at another endpoint than the public one, like a local service stub for load tests.
+    static final String ENDPOINT_OVERRIDE_PROPERTY = "codeguruprofiler.endpoint";
+    static final String ENDPOINT_OVERRIDE_ENVIRONMENT_VARIABLE = "CODEGURU_PROFILER_ENDPOINT";
 
     private static RetryPolicy getRetryPolicy() {
         return RetryPolicy.defaultRetryPolicy().toBuilder()
-                .numRetries(MAX_ERROR_RETRY)
-                .retryCondition(getRetryCondition())
+                .numRetries(RetryProfile.MAX_RETRIES)
+                .retryCondition(AndRetryCondition.create(getRetryCondition(), RetryProfile.retryLimit()))
+                .backoffStrategy(RetryProfile.backoffStrategy())
+                .throttlingBackoffStrategy(RetryProfile.throttlingBackoffStrategy())
+                .retryCapacityCondition(RETRY_BUDGET)
                 .build();
     }
 
@@ -42,12 +58,47 @@ public class CodeGuruProfilerClientBuilder {
                    .retryPolicy(getRetryPolicy())
                    .apiCallTimeout(OVERALL_TIMEOUT)
                    .apiCallAttemptTimeout(ATTEMPT_TIMEOUT)
+                   // First, so that every other interceptor finds the scope of the call in its execution attributes.
+                   .addExecutionInterceptor(CALL_SCOPE)
+                   .addExecutionInterceptor(ATTEMPT_TIMEOUTS)
                    .build();
     }
 
-    public static CodeGuruProfilerClient create() {
-        return CodeGuruProfilerClient.builder()
-                .overrideConfiguration(getClientConfiguration())
-                .build();
+    // Interceptors run in the order they are added: the API call metrics come after the rate limiter, so that the
+    // pacing before a retry counts as time spent between attempts.
+    static ClientOverrideConfiguration getClientConfiguration(final MetricPublisher metricPublisher, final ExecutionInterceptor rateLimiter,
+                                                              final ExecutionInterceptor apiCallMetrics) {
+        return getClientConfiguration().toBuilder()
+                   .addMetricPublisher(metricPublisher)
+                   .addExecutionInterceptor(rateLimiter)
+                   .addExecutionInterceptor(apiCallMetrics)
+                   .build();
+    }
+
+    /**
+     * @return the endpoint set with the codeguruprofiler.endpoint system property, or else with the
+     *     CODEGURU_PROFILER_ENDPOINT environment variable.
+     */
+    static Optional<URI> getEndpointOverride() {
+        return getEndpointOverride(System.getProperty(ENDPOINT_OVERRIDE_PROPERTY), System.getenv(ENDPOINT_OVERRIDE_ENVIRONMENT_VARIABLE));
+    }
+
+    static Optional<URI> getEndpointOverride(final String property, final String environmentVariable) {
+        if (property != null && !property.isEmpty()) {
+            return Optional.of(URI.create(property));
+        }
+        if (environmentVariable != null && !environmentVariable.isEmpty()) {
+            return Optional.of(URI.create(environmentVariable));
+        }
+        return Optional.empty();
+    }
+
+    // Prefer CodeGuruProfilerClientRegistry.getClient(), which shares a single client across the container.
+    static CodeGuruProfilerClient create(final MetricPublisher metricPublisher, final ExecutionInterceptor rateLimiter,
+                                         final ExecutionInterceptor apiCallMetrics) {
+        software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClientBuilder builder = CodeGuruProfilerClient.builder()
+                .overrideConfiguration(getClientConfiguration(metricPublisher, rateLimiter, apiCallMetrics));
+        getEndpointOverride().ifPresent(builder::endpointOverride);
+        return builder.build();
     }
 }
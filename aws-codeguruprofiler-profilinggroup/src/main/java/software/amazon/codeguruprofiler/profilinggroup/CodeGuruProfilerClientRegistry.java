@@ -0,0 +1,83 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.util.Map;
+
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.cloudformation.proxy.Logger;
+
+/**
+ * Container-scoped home of the CodeGuru Profiler client.
+ *
+ * Every handler and helper running in the same Lambda container shares the client built here, so the HTTP
+ * connection pool, TLS sessions and endpoint resolution are paid for once per container instead of once per
+ * handler. The client is built lazily on first use.
+ */
+public final class CodeGuruProfilerClientRegistry {
+    private static final ConnectionPoolMetricPublisher connectionPoolMetrics = new ConnectionPoolMetricPublisher();
+    private static final AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter();
+    private static final ApiCallMetrics apiCallMetrics = new ApiCallMetrics();
+
+    private static volatile CodeGuruProfilerClient client;
+
+    // The CloudFormation wrapper creates every handler during the Lambda init phase, and the handlers get their client
+    // from here, so this is the first chance to prime the container before it serves an invocation.
+    static {
+        if (Priming.isEnabled()) {
+            Priming.prime();
+        }
+    }
+
+    private CodeGuruProfilerClientRegistry() {
+        // prevent instantiation
+    }
+
+    public static CodeGuruProfilerClient getClient() {
+        CodeGuruProfilerClient result = client;
+        if (result == null) {
+            synchronized (CodeGuruProfilerClientRegistry.class) {
+                result = client;
+                if (result == null) {
+                    result = CodeGuruProfilerClientBuilder.create(connectionPoolMetrics, rateLimiter, apiCallMetrics);
+                    client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the shared client, so tests, benchmarks and load tests can run the handlers against a stubbed service.
+     * Handlers pick the client up when they are constructed, so override it before creating them.
+     */
+    static void overrideClient(final CodeGuruProfilerClient override) {
+        synchronized (CodeGuruProfilerClientRegistry.class) {
+            client = override;
+        }
+    }
+
+    /**
+     * @return the current client-side rate, in calls per second, of each account and CodeGuru Profiler operation called
+     * so far, keyed like "123456789012/GetPolicy".
+     */
+    public static Map<String, Double> getRequestRates() {
+        return rateLimiter.currentRates();
+    }
+
+    /**
+     * Logs the API call metrics recorded since the last time, as CloudWatch Embedded Metric Format lines, along with
+     * the client-side rate of each operation for the account the invocation is for and, when the invocation made any
+     * call, the connection pool figures of the shared client.
+     *
+     * Handlers call this once at the end of every invocation. A container runs one invocation at a time, so the lines
+     * describe the calls of that invocation alone.
+     */
+    public static void publishApiCallMetrics(final Logger logger, final String handler, final String awsAccountId) {
+        final Map<String, ApiCallMetrics.OperationMetrics> operations = apiCallMetrics.drain();
+        final long timestampMillis = System.currentTimeMillis();
+        EmbeddedMetricFormat.format(handler, awsAccountId, operations, rateLimiter.currentRates(awsAccountId), timestampMillis)
+            .forEach(logger::log);
+        if (!operations.isEmpty()) {
+            logger.log(EmbeddedMetricFormat.formatConnectionPool(handler, connectionPoolMetrics.statistics(), timestampMillis));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking service calls on a container-scoped pool of daemon threads.
+ *
+ * The pool itself is unbounded; callers cap how many calls they run at once so that a single invocation cannot
+ * flood the service.
+ */
+public class ConcurrencyHelper {
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    private ConcurrencyHelper() {
+        // prevent instantiation
+    }
+
+    /**
+     * Applies the function to every item with at most maxConcurrency calls in flight, the calling thread included.
+     * Results keep the order of the items. The first failure stops the remaining items from being started and is
+     * rethrown once the calls already in flight have finished.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> List<R> mapInOrder(final List<T> items, final int maxConcurrency, final Function<T, R> function) {
+        final int workers = Math.max(1, Math.min(maxConcurrency, items.size()));
+        final Object[] results = new Object[items.size()];
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        final Runnable worker = () -> {
+            int index;
+            while (failure.get() == null && (index = nextIndex.getAndIncrement()) < results.length) {
+                try {
+                    results[index] = function.apply(items.get(index));
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+
+        final List<CompletableFuture<Void>> helpers = new ArrayList<>(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            helpers.add(CompletableFuture.runAsync(worker, executor));
+        }
+        worker.run();
+        helpers.forEach(CompletableFuture::join);
+
+        rethrow(failure.get());
+        return (List<R>) (List<?>) Arrays.asList(results);
+    }
+
+    /**
+     * Starts the call on the shared pool. Use {@link #join(CompletableFuture)} to get its result.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(final Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, executor);
+    }
+
+    /**
+     * Waits for the call and rethrows whatever it threw, unwrapped, so that callers can keep mapping service
+     * exceptions the same way they do for calls made on their own thread.
+     */
+    public static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            rethrow(e.getCause());
+            throw e;
+        }
+    }
+
+    private static void rethrow(final Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(runnable, "codeguru-profiler-handler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+/**
+ * Keeps the most recent connection pool figures the SDK HTTP client reports for each API call attempt.
+ */
+class ConnectionPoolMetricPublisher implements MetricPublisher {
+    private final AtomicLong apiCalls = new AtomicLong();
+    private final AtomicInteger maxConcurrency = new AtomicInteger();
+    private final AtomicInteger availableConcurrency = new AtomicInteger();
+    private final AtomicInteger leasedConcurrency = new AtomicInteger();
+    private final AtomicInteger pendingConcurrencyAcquires = new AtomicInteger();
+
+    @Override
+    public void publish(final MetricCollection metricCollection) {
+        apiCalls.incrementAndGet();
+        record(metricCollection);
+    }
+
+    private void record(final MetricCollection collection) {
+        recordLatest(collection, HttpMetric.MAX_CONCURRENCY, maxConcurrency);
+        recordLatest(collection, HttpMetric.AVAILABLE_CONCURRENCY, availableConcurrency);
+        recordLatest(collection, HttpMetric.LEASED_CONCURRENCY, leasedConcurrency);
+        recordLatest(collection, HttpMetric.PENDING_CONCURRENCY_ACQUIRES, pendingConcurrencyAcquires);
+        collection.children().forEach(this::record);
+    }
+
+    private static void recordLatest(final MetricCollection collection, final SdkMetric<Integer> metric, final AtomicInteger target) {
+        List<Integer> values = collection.metricValues(metric);
+        if (!values.isEmpty()) {
+            target.set(values.get(values.size() - 1));
+        }
+    }
+
+    ConnectionPoolStatistics statistics() {
+        return ConnectionPoolStatistics.builder()
+                   .apiCalls(apiCalls.get())
+                   .maxConcurrency(maxConcurrency.get())
+                   .availableConcurrency(availableConcurrency.get())
+                   .leasedConcurrency(leasedConcurrency.get())
+                   .pendingConcurrencyAcquires(pendingConcurrencyAcquires.get())
+                   .build();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the figures live as long as the container
+    }
+}
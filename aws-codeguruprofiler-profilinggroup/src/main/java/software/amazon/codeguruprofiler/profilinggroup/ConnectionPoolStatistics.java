@@ -0,0 +1,14 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class ConnectionPoolStatistics {
+    long apiCalls;
+    int maxConcurrency;
+    int availableConcurrency;
+    int leasedConcurrency;
+    int pendingConcurrencyAcquires;
+}
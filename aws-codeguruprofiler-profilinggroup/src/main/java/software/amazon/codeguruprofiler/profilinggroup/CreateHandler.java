@@ -6,18 +6,25 @@ import static software.amazon.awssdk.services.codeguruprofiler.model.ActionGroup
 import static software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper.addChannelNotifications;
 import static software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper.anomalyDetectionNotificationConfiguration;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
 import software.amazon.awssdk.services.codeguruprofiler.model.CodeGuruProfilerException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ConflictException;
 import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupResponse;
 import software.amazon.awssdk.services.codeguruprofiler.model.InternalServerException;
 import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ServiceQuotaExceededException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ThrottlingException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ValidationException;
@@ -27,13 +34,29 @@ import software.amazon.cloudformation.exceptions.CfnServiceInternalErrorExceptio
 import software.amazon.cloudformation.exceptions.CfnServiceLimitExceededException;
 import software.amazon.cloudformation.exceptions.CfnThrottlingException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
 public class CreateHandler extends BaseHandler<CallbackContext> {
+    // After this many invocations handing back to CloudFormation we give up and roll back as before.
+    static final int MAX_HANDED_BACK_INVOCATIONS = 5;
+    // Give a throttled service a moment before CloudFormation calls us again.
+    private static final int HANDED_BACK_CALLBACK_DELAY_SECONDS = 5;
 
-    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientBuilder.create();
+    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientRegistry.getClient();
+
+    private final Duration invocationBudget;
+
+    public CreateHandler() {
+        this(Deadline.DEFAULT_INVOCATION_BUDGET);
+    }
+
+    public CreateHandler(Duration invocationBudget) {
+        super();
+        this.invocationBudget = invocationBudget;
+    }
 
     @Override
     public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
@@ -41,6 +64,18 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
         final ResourceHandlerRequest<ResourceModel> request,
         final CallbackContext callbackContext,
         final Logger logger) {
+        try {
+            return handle(proxy, request, callbackContext, logger);
+        } finally {
+            CodeGuruProfilerClientRegistry.publishApiCallMetrics(logger, "Create", request.getAwsAccountId());
+        }
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> handle(
+        final AmazonWebServicesClientProxy proxy,
+        final ResourceHandlerRequest<ResourceModel> request,
+        final CallbackContext callbackContext,
+        final Logger logger) {
 
         final String awsAccountId = request.getAwsAccountId();
         final ResourceModel model = request.getDesiredResourceState();
@@ -48,80 +83,236 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
         final Map<String, String> tags = tagsFromModel(model);
         final String computePlatform = model.getComputePlatform();
 
-        final CreateProfilingGroupRequest createProfilingGroupRequest =
-            getCreateProfilingGroupRequest(
-                pgName,
-                computePlatform,
-                request.getClientRequestToken(),
-                tags
-            );
+        final CallbackContext context = callbackContext == null ? new CallbackContext() : callbackContext;
+        final Deadline deadline = Deadline.after(invocationBudget);
+        final CodeGuruProfilerClient boundClient = new DeadlineBoundClient(profilerClient, deadline, awsAccountId);
 
-        safelyInvokeApi(() -> {
-            proxy.injectCredentialsAndInvokeV2(createProfilingGroupRequest, profilerClient::createProfilingGroup);
-        });
+        if (context.isCompensationPending()) {
+            return compensateAndFail(proxy, logger, model, context, boundClient, deadline, awsAccountId);
+        }
 
-        if (tags.isEmpty()) {
-            logger.log(format("%s [%s] for accountId [%s] has been successfully created!", ResourceModel.TYPE_NAME, pgName, awsAccountId));
-        } else {
-            logger.log(format("%s [%s] for accountId [%s] with tags [%s] has been successfully created!", ResourceModel.TYPE_NAME, pgName, awsAccountId, tags));
+        try {
+            if (!context.isProfilingGroupCreated()) {
+                final CreateProfilingGroupRequest createProfilingGroupRequest =
+                    getCreateProfilingGroupRequest(
+                        pgName,
+                        computePlatform,
+                        request.getClientRequestToken(),
+                        tags
+                    );
+
+                safelyInvokeApi(() -> proxy.injectCredentialsAndInvokeV2(createProfilingGroupRequest, boundClient::createProfilingGroup));
+                context.setProfilingGroupCreated(true);
+
+                if (tags.isEmpty()) {
+                    logger.log(format("%s [%s] for accountId [%s] has been successfully created!", ResourceModel.TYPE_NAME, pgName, awsAccountId));
+                } else {
+                    logger.log(format("%s [%s] for accountId [%s] with tags [%s] has been successfully created!", ResourceModel.TYPE_NAME, pgName, awsAccountId, tags));
+                }
+            }
+
+            // Both steps only need the profiling group to exist, so the notification channels are added in the
+            // background while the agent permissions are put on this thread.
+            Optional<List<Channel>> anomalyDetectionNotificationConfiguration = anomalyDetectionNotificationConfiguration(model);
+            final boolean addChannels = anomalyDetectionNotificationConfiguration.isPresent() && !context.isNotificationChannelsAdded();
+            final CompletableFuture<Void> channelsFuture = addChannels
+                ? ConcurrencyHelper.supplyAsync(() -> {
+                    deadline.check();
+                    addChannelNotifications(pgName, anomalyDetectionNotificationConfiguration.get(), proxy, boundClient);
+                    return null;
+                })
+                : CompletableFuture.completedFuture(null);
+
+            final List<RuntimeException> failures = new ArrayList<>(2);
+
+            Optional<List<String>> principals = principalsForAgentPermissionsFrom(model);
+            if (principals.isPresent() && !context.isAgentPermissionsPut()) {
+                try {
+                    deadline.check();
+                    putAgentPermissions(proxy, boundClient, awsAccountId, request.getRegion(), pgName, principals.get());
+                    context.setAgentPermissionsPut(true);
+                    logger.log(format("%s [%s] for accountId [%s] has been successfully updated with agent permissions!",
+                        ResourceModel.TYPE_NAME, pgName, awsAccountId));
+                } catch (RuntimeException e) {
+                    logger.log(format("%s [%s] for accountId [%s] has failed when updating the agent permissions!",
+                        ResourceModel.TYPE_NAME, pgName, awsAccountId));
+                    failures.add(e);
+                }
+            }
+
+            if (addChannels) {
+                try {
+                    ConcurrencyHelper.join(channelsFuture);
+                    context.setNotificationChannelsAdded(true);
+                    logger.log(format("%s [%s] for accountId [%s] has successfully added a Notification Channel!",
+                        ResourceModel.TYPE_NAME, pgName, awsAccountId));
+                } catch (RuntimeException e) {
+                    logger.log(format("%s [%s] for accountId [%s] has failed when adding Channel Notification!",
+                        ResourceModel.TYPE_NAME, pgName, awsAccountId));
+                    failures.add(e);
+                }
+            }
+
+            if (!failures.isEmpty()) {
+                handleFailuresAfterCreation(proxy, logger, context, boundClient, pgName, awsAccountId, failures);
+            }
+        } catch (DeadlineExceededException | ApiCallTimeoutException e) {
+            if (context.isCompensationPending()) {
+                // The roll back ran out of time, not a step.
+                return handBackCompensation(logger, model, context, e);
+            }
+            // Every step is idempotent (creation carries the client token), so running out of time is never a reason to roll back.
+            context.setTimedOutInvocations(context.getTimedOutInvocations() + 1);
+            if (context.getTimedOutInvocations() > MAX_HANDED_BACK_INVOCATIONS) {
+                return giveUpAfterTimeouts(proxy, logger, model, context, boundClient, deadline, awsAccountId, e);
+            }
+            return handBack(logger, model, context, e);
+        } catch (ThrottlingException e) {
+            // Only steps after the creation get here: handleFailuresAfterCreation rethrows throttling as long as there are
+            // hand backs left instead of deleting the profiling group.
+            context.setThrottledInvocations(context.getThrottledInvocations() + 1);
+            return handBack(logger, model, context, e);
         }
 
-        Optional<List<String>> principals = principalsForAgentPermissionsFrom(model);
-        if (principals.isPresent()) {
-            putAgentPermissions(proxy, logger, pgName, principals.get(), awsAccountId);
-            logger.log(format("%s [%s] for accountId [%s] has been successfully updated with agent permissions!",
-                ResourceModel.TYPE_NAME, pgName, awsAccountId));
+        return ProgressEvent.defaultSuccessHandler(model);
+    }
+
+    private static ProgressEvent<ResourceModel, CallbackContext> handBack(final Logger logger, final ResourceModel model,
+                                                                          final CallbackContext context, final RuntimeException reason) {
+        logger.log(format("%s [%s] handing back to CloudFormation to resume creation later (created: %s, agent permissions: %s, notification channels: %s): %s",
+            ResourceModel.TYPE_NAME, model.getProfilingGroupName(), context.isProfilingGroupCreated(), context.isAgentPermissionsPut(),
+            context.isNotificationChannelsAdded(), reason.getMessage()));
+        return ProgressEvent.defaultInProgressHandler(context, HANDED_BACK_CALLBACK_DELAY_SECONDS, model);
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> giveUpAfterTimeouts(final AmazonWebServicesClientProxy proxy, final Logger logger,
+                                                                              final ResourceModel model, final CallbackContext context,
+                                                                              final CodeGuruProfilerClient boundClient, final Deadline deadline,
+                                                                              final String awsAccountId, final RuntimeException timeout) {
+        final String pgName = model.getProfilingGroupName();
+        final String message = format("%s [%s] could not be created within %d invocations: %s",
+            ResourceModel.TYPE_NAME, pgName, MAX_HANDED_BACK_INVOCATIONS, timeout.getMessage());
+        if (!context.isProfilingGroupCreated()) {
+            return ProgressEvent.failed(model, context, HandlerErrorCode.GeneralServiceException, message);
         }
+        logger.log(format("%s [%s] for accountId [%s] could not be completed in time, trying to delete the profiling group!",
+            ResourceModel.TYPE_NAME, pgName, awsAccountId));
+        startCompensation(context, HandlerErrorCode.GeneralServiceException, message);
+        return compensateAndFail(proxy, logger, model, context, boundClient, deadline, awsAccountId);
+    }
 
-        Optional<List<Channel>> anomalyDetectionNotificationConfiguration = anomalyDetectionNotificationConfiguration(model);
-        if (anomalyDetectionNotificationConfiguration.isPresent()) {
-            putChannelNotifications(proxy, logger, pgName, awsAccountId, anomalyDetectionNotificationConfiguration.get());
-            logger.log(format("%s [%s] for accountId [%s] has successfully added a Notification Channel!",
-                    ResourceModel.TYPE_NAME, pgName, awsAccountId));
+    /**
+     * Deletes the profiling group this creation made, then fails with the failure that made the creation give up.
+     *
+     * The delete is bound by the invocation deadline like any other call, the creation usually gives up because that
+     * deadline has passed. When the delete does not finish in time the creation hands back to CloudFormation with the
+     * compensation pending, and the delete is made again on the next callback.
+     */
+    private ProgressEvent<ResourceModel, CallbackContext> compensateAndFail(final AmazonWebServicesClientProxy proxy, final Logger logger,
+                                                                            final ResourceModel model, final CallbackContext context,
+                                                                            final CodeGuruProfilerClient boundClient, final Deadline deadline,
+                                                                            final String awsAccountId) {
+        final String pgName = model.getProfilingGroupName();
+        try {
+            deadline.check();
+            compensate(proxy, boundClient, pgName, awsAccountId);
+            logger.log(format("%s [%s] for accountId [%s] has succeeded when deleting the profiling group!",
+                ResourceModel.TYPE_NAME, pgName, awsAccountId));
+        } catch (DeadlineExceededException | ApiCallTimeoutException e) {
+            return handBackCompensation(logger, model, context, e);
+        } catch (ResourceNotFoundException e) {
+            // A delete that timed out on an earlier invocation went through after all.
+            logger.log(format("%s [%s] for accountId [%s] has already been deleted!", ResourceModel.TYPE_NAME, pgName, awsAccountId));
+        } catch (CodeGuruProfilerException deleteException) {
+            logger.log(format("%s [%s] for accountId [%s] has failed when deleting the profiling group!",
+                ResourceModel.TYPE_NAME, pgName, awsAccountId));
         }
+        return ProgressEvent.failed(model, context, context.getCompensationErrorCode(), context.getCompensationMessage());
+    }
 
-        return ProgressEvent.defaultSuccessHandler(model);
+    private static ProgressEvent<ResourceModel, CallbackContext> handBackCompensation(final Logger logger, final ResourceModel model,
+                                                                                      final CallbackContext context, final RuntimeException reason) {
+        context.setCompensationInvocations(context.getCompensationInvocations() + 1);
+        if (context.getCompensationInvocations() > MAX_HANDED_BACK_INVOCATIONS) {
+            logger.log(format("%s [%s] could not be deleted within %d invocations, leaving it behind: %s",
+                ResourceModel.TYPE_NAME, model.getProfilingGroupName(), MAX_HANDED_BACK_INVOCATIONS, reason.getMessage()));
+            return ProgressEvent.failed(model, context, context.getCompensationErrorCode(), context.getCompensationMessage());
+        }
+        logger.log(format("%s [%s] handing back to CloudFormation to delete the profiling group later: %s",
+            ResourceModel.TYPE_NAME, model.getProfilingGroupName(), reason.getMessage()));
+        return ProgressEvent.defaultInProgressHandler(context, HANDED_BACK_CALLBACK_DELAY_SECONDS, model);
     }
 
-    private void putChannelNotifications(final AmazonWebServicesClientProxy proxy, final Logger logger,
-                                         final String pgName, final String awsAccountId, List<Channel> anomalyDetectionNotificationConfiguration) {
-        safelyInvokeApi(() -> {
-            try {
-                addChannelNotifications(pgName, anomalyDetectionNotificationConfiguration, proxy, profilerClient);
-            } catch (CodeGuruProfilerException addChannelNotificationException) {
-                logger.log(format("%s [%s] for accountId [%s] has failed when adding Channel Notification, trying to delete the profiling group!",
-                        ResourceModel.TYPE_NAME, pgName, awsAccountId));
-                deleteProfilingGroup(proxy, logger, pgName, awsAccountId, addChannelNotificationException);
-                throw addChannelNotificationException;
-            }
-        });
+    // Checkpointed before the delete, so that a delete running out of time is made again on the next callback.
+    private static void startCompensation(final CallbackContext context, final HandlerErrorCode errorCode, final String message) {
+        context.setCompensationPending(true);
+        context.setCompensationErrorCode(errorCode);
+        context.setCompensationMessage(message);
     }
 
-    private void putAgentPermissions(final AmazonWebServicesClientProxy proxy, final Logger logger,
-                                     final String pgName, final List<String> principals, final String awsAccountId) {
+    private static void putAgentPermissions(final AmazonWebServicesClientProxy proxy, final CodeGuruProfilerClient boundClient,
+                                            final String awsAccountId, final String region, final String pgName,
+                                            final List<String> principals) {
         PutPermissionRequest putPermissionRequest = PutPermissionRequest.builder()
             .profilingGroupName(pgName)
             .actionGroup(AGENT_PERMISSIONS)
             .principals(principals)
             .build();
 
-        safelyInvokeApi(() -> {
-            try {
-                proxy.injectCredentialsAndInvokeV2(putPermissionRequest, profilerClient::putPermission);
-            } catch (CodeGuruProfilerException putPermissionException) {
-                logger.log(format("%s [%s] for accountId [%s] has failed when updating the agent permissions, trying to delete the profiling group!",
+        try {
+            proxy.injectCredentialsAndInvokeV2(putPermissionRequest, boundClient::putPermission);
+        } finally {
+            AgentPermissionHelper.invalidateCachedPolicy(awsAccountId, region, pgName);
+        }
+    }
+
+    /**
+     * Decides what to do once one or both steps after the creation failed, always by throwing.
+     *
+     * A service failure that cannot be retried on a later invocation rolls the creation back, once, with the other
+     * failure kept as suppressed. Throttling, while there are hand backs left, and running out of time are rethrown
+     * as is for handleRequest to hand back to CloudFormation with the steps that did finish checkpointed.
+     */
+    private void handleFailuresAfterCreation(final AmazonWebServicesClientProxy proxy, final Logger logger, final CallbackContext context,
+                                             final CodeGuruProfilerClient boundClient, final String pgName, final String awsAccountId,
+                                             final List<RuntimeException> failures) {
+        final Optional<RuntimeException> fatal = failures.stream()
+            .filter(failure -> failure instanceof CodeGuruProfilerException && !isResumable(failure, context))
+            .findFirst();
+
+        if (fatal.isPresent()) {
+            final CodeGuruProfilerException exception = (CodeGuruProfilerException) fatal.get();
+            failures.stream().filter(failure -> failure != exception).forEach(exception::addSuppressed);
+            startCompensation(context, errorCodeOf(exception), exception.getMessage());
+            safelyInvokeApi(() -> {
+                logger.log(format("%s [%s] for accountId [%s] has failed after creation, trying to delete the profiling group!",
                     ResourceModel.TYPE_NAME, pgName, awsAccountId));
-                deleteProfilingGroup(proxy, logger, pgName, awsAccountId, putPermissionException);
-                throw putPermissionException;
-            }
-        });
+                deleteProfilingGroup(proxy, boundClient, logger, pgName, awsAccountId, exception);
+                throw exception;
+            });
+        }
+
+        // Anything unexpected wins over the failures we know how to resume from.
+        final RuntimeException first = failures.stream()
+            .filter(failure -> !isResumable(failure, context))
+            .findFirst()
+            .orElse(failures.get(0));
+        failures.stream().filter(failure -> failure != first).forEach(first::addSuppressed);
+        throw first;
     }
 
-    private void deleteProfilingGroup(AmazonWebServicesClientProxy proxy, Logger logger,
+    private static boolean isResumable(final RuntimeException failure, final CallbackContext context) {
+        if (failure instanceof ThrottlingException) {
+            return context.getThrottledInvocations() < MAX_HANDED_BACK_INVOCATIONS;
+        }
+        return failure instanceof DeadlineExceededException || failure instanceof ApiCallTimeoutException;
+    }
+
+    // Running out of time is left to handleRequest, which hands back with the compensation pending.
+    private void deleteProfilingGroup(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient boundClient, Logger logger,
                                       String pgName, String awsAccountId, CodeGuruProfilerException exception) {
-        DeleteProfilingGroupRequest deletePgRequest = DeleteProfilingGroupRequest.builder().profilingGroupName(pgName).build();
         try {
-            proxy.injectCredentialsAndInvokeV2(deletePgRequest, profilerClient::deleteProfilingGroup);
+            compensate(proxy, boundClient, pgName, awsAccountId);
             logger.log(format("%s [%s] for accountId [%s] has succeeded when deleting the profiling group!",
                 ResourceModel.TYPE_NAME, pgName, awsAccountId));
         } catch (CodeGuruProfilerException deleteException) {
@@ -132,9 +323,33 @@ public class CreateHandler extends BaseHandler<CallbackContext> {
         }
     }
 
-    private static void safelyInvokeApi(final Runnable lambda) {
+    // Deletes the profiling group this creation made, with the patience of a compensation rather than that of a delete,
+    // within the time left to the invocation.
+    private static DeleteProfilingGroupResponse compensate(final AmazonWebServicesClientProxy proxy, final CodeGuruProfilerClient boundClient,
+                                                           final String pgName, final String awsAccountId) {
+        return proxy.injectCredentialsAndInvokeV2(DeleteProfilingGroupRequest.builder().profilingGroupName(pgName).build(),
+            request -> boundClient.deleteProfilingGroup(CallScope.scope(request, awsAccountId, RetryProfile.COMPENSATION)));
+    }
+
+    // The error code safelyInvokeApi translates the failure into, for a creation that fails once its compensation is done.
+    private static HandlerErrorCode errorCodeOf(final CodeGuruProfilerException exception) {
+        if (exception instanceof ConflictException) {
+            return HandlerErrorCode.AlreadyExists;
+        } else if (exception instanceof InternalServerException) {
+            return HandlerErrorCode.ServiceInternalError;
+        } else if (exception instanceof ServiceQuotaExceededException) {
+            return HandlerErrorCode.ServiceLimitExceeded;
+        } else if (exception instanceof ThrottlingException) {
+            return HandlerErrorCode.Throttling;
+        } else if (exception instanceof ValidationException) {
+            return HandlerErrorCode.InvalidRequest;
+        }
+        return HandlerErrorCode.GeneralServiceException;
+    }
+
+    private static <T> T safelyInvokeApi(final Supplier<T> lambda) {
         try {
-            lambda.run();
+            return lambda.get();
         } catch (ConflictException e) {
             throw new CfnAlreadyExistsException(e);
         } catch (InternalServerException e) {
@@ -0,0 +1,71 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+
+/**
+ * Time left to a single handler invocation.
+ *
+ * Each API call made under a deadline gets the remaining time as its overall timeout, retries included, so a slow
+ * retry storm ends with a {@link DeadlineExceededException} or an SDK ApiCallTimeoutException while there is still
+ * time to hand control back to CloudFormation, instead of with a Lambda timeout.
+ *
+ * The handlers are not told how long their invocation may run: the proxy the wrapper hands them keeps the remaining
+ * time of the Lambda context to itself. So the budget assumes the 60 seconds CloudFormation gives a handler
+ * invocation, and is measured from the handler's entry rather than from the start of the invocation. What the wrapper
+ * does around the handler, like reading the request before it and publishing its metrics after it, has to fit in the
+ * margin along with building the progress event. Should the timeout of the handlers change, so must
+ * INVOCATION_TIMEOUT.
+ */
+class Deadline {
+    // The timeout CloudFormation invokes the handlers with.
+    static final Duration INVOCATION_TIMEOUT = Duration.ofSeconds(60);
+    // Kept for what happens in the invocation outside of the handler's API calls.
+    static final Duration INVOCATION_MARGIN = Duration.ofSeconds(10);
+    static final Duration DEFAULT_INVOCATION_BUDGET = INVOCATION_TIMEOUT.minus(INVOCATION_MARGIN);
+    // Below this there is no point starting a call, it would most likely time out.
+    static final Duration MINIMUM_CALL_BUDGET = Duration.ofSeconds(1);
+
+    private final LongSupplier nanoClock;
+    private final long expiresAtNanos;
+
+    Deadline(final Duration budget, final LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.expiresAtNanos = nanoClock.getAsLong() + budget.toNanos();
+    }
+
+    static Deadline after(final Duration budget) {
+        return new Deadline(budget, System::nanoTime);
+    }
+
+    Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - nanoClock.getAsLong()));
+    }
+
+    boolean isExpired() {
+        return remaining().compareTo(MINIMUM_CALL_BUDGET) < 0;
+    }
+
+    void check() {
+        if (isExpired()) {
+            throw new DeadlineExceededException(remaining());
+        }
+    }
+
+    /**
+     * @return the request with the remaining time as its API call timeout, keeping any override the proxy set.
+     */
+    @SuppressWarnings("unchecked")
+    <RequestT extends AwsRequest> RequestT apply(final RequestT request) {
+        check();
+        AwsRequestOverrideConfiguration overrideConfiguration = request.overrideConfiguration()
+            .map(AwsRequestOverrideConfiguration::toBuilder)
+            .orElseGet(AwsRequestOverrideConfiguration::builder)
+            .apiCallTimeout(remaining())
+            .build();
+        return (RequestT) request.toBuilder().overrideConfiguration(overrideConfiguration).build();
+    }
+}
@@ -0,0 +1,131 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListTagsForResourceResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.TagResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.TagResourceResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.UntagResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.UntagResourceResponse;
+
+/**
+ * Gives every call made through the shared client the time left to the invocation as its overall timeout, and marks
+ * it with the account the invocation is for so that the {@link AdaptiveRateLimiter} paces each account on its own.
+ *
+ * Only the operations this provider uses are bound, the others keep the SDK default of being unsupported.
+ */
+class DeadlineBoundClient implements CodeGuruProfilerClient {
+    private final CodeGuruProfilerClient delegate;
+    private final Deadline deadline;
+    private final String awsAccountId;
+
+    DeadlineBoundClient(final CodeGuruProfilerClient delegate, final Deadline deadline) {
+        this(delegate, deadline, null);
+    }
+
+    DeadlineBoundClient(final CodeGuruProfilerClient delegate, final Deadline deadline, final String awsAccountId) {
+        this.delegate = delegate;
+        this.deadline = deadline;
+        this.awsAccountId = awsAccountId;
+    }
+
+    @Override
+    public String serviceName() {
+        return delegate.serviceName();
+    }
+
+    @Override
+    public void close() {
+        // The delegate is shared by the container, it is not ours to close.
+    }
+
+    @Override
+    public CreateProfilingGroupResponse createProfilingGroup(final CreateProfilingGroupRequest request) {
+        return delegate.createProfilingGroup(bind(request));
+    }
+
+    @Override
+    public DescribeProfilingGroupResponse describeProfilingGroup(final DescribeProfilingGroupRequest request) {
+        return delegate.describeProfilingGroup(bind(request));
+    }
+
+    @Override
+    public DeleteProfilingGroupResponse deleteProfilingGroup(final DeleteProfilingGroupRequest request) {
+        return delegate.deleteProfilingGroup(bind(request));
+    }
+
+    @Override
+    public ListProfilingGroupsResponse listProfilingGroups(final ListProfilingGroupsRequest request) {
+        return delegate.listProfilingGroups(bind(request));
+    }
+
+    @Override
+    public GetPolicyResponse getPolicy(final GetPolicyRequest request) {
+        return delegate.getPolicy(bind(request));
+    }
+
+    @Override
+    public PutPermissionResponse putPermission(final PutPermissionRequest request) {
+        return delegate.putPermission(bind(request));
+    }
+
+    @Override
+    public RemovePermissionResponse removePermission(final RemovePermissionRequest request) {
+        return delegate.removePermission(bind(request));
+    }
+
+    @Override
+    public GetNotificationConfigurationResponse getNotificationConfiguration(final GetNotificationConfigurationRequest request) {
+        return delegate.getNotificationConfiguration(bind(request));
+    }
+
+    @Override
+    public AddNotificationChannelsResponse addNotificationChannels(final AddNotificationChannelsRequest request) {
+        return delegate.addNotificationChannels(bind(request));
+    }
+
+    @Override
+    public RemoveNotificationChannelResponse removeNotificationChannel(final RemoveNotificationChannelRequest request) {
+        return delegate.removeNotificationChannel(bind(request));
+    }
+
+    @Override
+    public ListTagsForResourceResponse listTagsForResource(final ListTagsForResourceRequest request) {
+        return delegate.listTagsForResource(bind(request));
+    }
+
+    @Override
+    public TagResourceResponse tagResource(final TagResourceRequest request) {
+        return delegate.tagResource(bind(request));
+    }
+
+    @Override
+    public UntagResourceResponse untagResource(final UntagResourceRequest request) {
+        return delegate.untagResource(bind(request));
+    }
+
+    private <RequestT extends AwsRequest> RequestT bind(final RequestT request) {
+        return deadline.apply(CallScope.scope(request, awsAccountId));
+    }
+}
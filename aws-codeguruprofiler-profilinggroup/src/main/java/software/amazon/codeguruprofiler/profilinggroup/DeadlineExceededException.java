@@ -0,0 +1,14 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an invocation does not have enough time left to make another API call.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(final Duration remaining) {
+        super(String.format("Only %d ms left in this invocation, not enough to make another call.", remaining.toMillis()));
+    }
+}
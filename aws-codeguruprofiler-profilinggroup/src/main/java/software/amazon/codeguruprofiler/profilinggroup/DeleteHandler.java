@@ -1,5 +1,8 @@
 package software.amazon.codeguruprofiler.profilinggroup;
 
+import java.time.Duration;
+
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
 import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.InternalServerException;
@@ -18,7 +21,18 @@ import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
 public class DeleteHandler extends BaseHandler<CallbackContext> {
 
-    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientBuilder.create();
+    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientRegistry.getClient();
+
+    private final Duration invocationBudget;
+
+    public DeleteHandler() {
+        this(Deadline.DEFAULT_INVOCATION_BUDGET);
+    }
+
+    DeleteHandler(Duration invocationBudget) {
+        super();
+        this.invocationBudget = invocationBudget;
+    }
 
     @Override
     public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
@@ -26,23 +40,40 @@ public class DeleteHandler extends BaseHandler<CallbackContext> {
         final ResourceHandlerRequest<ResourceModel> request,
         final CallbackContext callbackContext,
         final Logger logger) {
+        try {
+            return handle(proxy, request, callbackContext, logger);
+        } finally {
+            CodeGuruProfilerClientRegistry.publishApiCallMetrics(logger, "Delete", request.getAwsAccountId());
+        }
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> handle(
+        final AmazonWebServicesClientProxy proxy,
+        final ResourceHandlerRequest<ResourceModel> request,
+        final CallbackContext callbackContext,
+        final Logger logger) {
 
         final ResourceModel model = request.getDesiredResourceState();
         final String awsAccountId = request.getAwsAccountId();
         final String profilingGroupName = model.getProfilingGroupName();
+        final CodeGuruProfilerClient boundClient = new DeadlineBoundClient(profilerClient, Deadline.after(invocationBudget), awsAccountId);
 
         try {
             DeleteProfilingGroupRequest deleteProfilingGroupRequest = DeleteProfilingGroupRequest.builder()
                     .profilingGroupName(profilingGroupName)
                     .build();
 
-            proxy.injectCredentialsAndInvokeV2(deleteProfilingGroupRequest, profilerClient::deleteProfilingGroup);
+            proxy.injectCredentialsAndInvokeV2(deleteProfilingGroupRequest, boundClient::deleteProfilingGroup);
+            AgentPermissionHelper.invalidateCachedPolicy(awsAccountId, request.getRegion(), profilingGroupName);
 
             logger.log(String.format("%s [%s] for accountId [%s] has been successfully deleted!", ResourceModel.TYPE_NAME, profilingGroupName, awsAccountId));
 
             return ProgressEvent.defaultSuccessHandler(null);
         } catch (ResourceNotFoundException e) {
             return ProgressEvent.defaultFailureHandler(e, HandlerErrorCode.NotFound);
+        } catch (DeadlineExceededException | ApiCallTimeoutException e) {
+            // Deleting again is harmless, CloudFormation retries the delete as a whole.
+            throw new CfnServiceInternalErrorException(e);
         } catch (InternalServerException e) {
             throw new CfnServiceInternalErrorException(e);
         } catch (ThrottlingException e) {
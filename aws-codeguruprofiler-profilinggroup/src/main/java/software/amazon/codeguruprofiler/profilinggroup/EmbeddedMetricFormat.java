@@ -0,0 +1,141 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Formats API call metrics as CloudWatch Embedded Metric Format log lines, which CloudWatch Logs turns into metrics
+ * without any call to CloudWatch from the handler.
+ *
+ * One line per operation, with the Handler and Operation dimensions. EMF takes at most 100 values per metric and
+ * line, so the latencies of a busy operation (List hydrating a full page) spill over extra lines that only carry
+ * latencies.
+ *
+ * The client-side rate the operation is paced at for the account ({@link AdaptiveRateLimiter}) goes on the first line
+ * once the service has throttled it. The account is a property of the line rather than a dimension, to keep the
+ * number of metrics down while the lines of one account can still be found in the logs.
+ *
+ * The connection pool of the shared client gets a line of its own, with the Handler dimension alone.
+ */
+final class EmbeddedMetricFormat {
+    static final String NAMESPACE = "CloudFormation/AWS-CodeGuruProfiler-ProfilingGroup";
+    static final int MAX_VALUES_PER_METRIC = 100;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String MILLISECONDS = "Milliseconds";
+    private static final String COUNT = "Count";
+    private static final String COUNT_PER_SECOND = "Count/Second";
+
+    private EmbeddedMetricFormat() {
+        // prevent instantiation
+    }
+
+    /**
+     * @param requestRates the client-side rate of each operation for the account, in calls per second, by operation.
+     */
+    static List<String> format(final String handler, final String awsAccountId, final Map<String, ApiCallMetrics.OperationMetrics> operations,
+                               final Map<String, Double> requestRates, final long timestampMillis) {
+        final List<String> lines = new ArrayList<>();
+        operations.forEach((operation, metrics) -> {
+            final List<Long> latencies = metrics.getLatenciesNanos();
+            for (int from = 0; from == 0 || from < latencies.size(); from += MAX_VALUES_PER_METRIC) {
+                final ObjectNode line = line(handler, awsAccountId, operation, timestampMillis);
+                final ArrayNode definitions = definitions(line);
+
+                final ArrayNode latencyValues = line.putArray("Latency");
+                latencies.subList(from, Math.min(latencies.size(), from + MAX_VALUES_PER_METRIC))
+                    .forEach(latency -> latencyValues.add(toMillis(latency)));
+                define(definitions, "Latency", MILLISECONDS);
+
+                if (from == 0) {
+                    put(line, definitions, "Calls", metrics.getCalls(), COUNT);
+                    put(line, definitions, "Failures", metrics.getFailures(), COUNT);
+                    put(line, definitions, "Attempts", metrics.getAttempts(), COUNT);
+                    put(line, definitions, "Throttles", metrics.getThrottles(), COUNT);
+                    put(line, definitions, "Conflicts", metrics.getConflicts(), COUNT);
+                    line.put("BackoffTime", toMillis(metrics.getBackoffNanos()));
+                    define(definitions, "BackoffTime", MILLISECONDS);
+                    final Double requestRate = requestRates.get(operation);
+                    if (requestRate != null) {
+                        line.put("RequestRate", requestRate);
+                        define(definitions, "RequestRate", COUNT_PER_SECOND);
+                    }
+                }
+                lines.add(write(line));
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * @return the line of the connection pool figures the shared client's HTTP layer last reported.
+     */
+    static String formatConnectionPool(final String handler, final ConnectionPoolStatistics statistics, final long timestampMillis) {
+        final ObjectNode line = line(timestampMillis, "Handler");
+        final ArrayNode definitions = definitions(line);
+        line.put("Handler", handler);
+        put(line, definitions, "MaxConcurrency", statistics.getMaxConcurrency(), COUNT);
+        put(line, definitions, "AvailableConcurrency", statistics.getAvailableConcurrency(), COUNT);
+        put(line, definitions, "LeasedConcurrency", statistics.getLeasedConcurrency(), COUNT);
+        put(line, definitions, "PendingConcurrencyAcquires", statistics.getPendingConcurrencyAcquires(), COUNT);
+        return write(line);
+    }
+
+    private static ObjectNode line(final String handler, final String awsAccountId, final String operation, final long timestampMillis) {
+        final ObjectNode line = line(timestampMillis, "Handler", "Operation");
+        line.put("Handler", handler);
+        line.put("Operation", operation);
+        if (awsAccountId != null) {
+            line.put("AwsAccountId", awsAccountId);
+        }
+        return line;
+    }
+
+    private static ObjectNode line(final long timestampMillis, final String... dimensions) {
+        final ObjectNode line = objectMapper.createObjectNode();
+        final ObjectNode directive = line.putObject("_aws")
+            .put("Timestamp", timestampMillis)
+            .putArray("CloudWatchMetrics")
+            .addObject()
+            .put("Namespace", NAMESPACE);
+        final ArrayNode dimensionSet = directive.putArray("Dimensions").addArray();
+        for (String dimension : dimensions) {
+            dimensionSet.add(dimension);
+        }
+        directive.putArray("Metrics");
+        return line;
+    }
+
+    private static ArrayNode definitions(final ObjectNode line) {
+        return (ArrayNode) line.get("_aws").get("CloudWatchMetrics").get(0).get("Metrics");
+    }
+
+    private static void put(final ObjectNode line, final ArrayNode definitions, final String name, final long value, final String unit) {
+        line.put(name, value);
+        define(definitions, name, unit);
+    }
+
+    private static void define(final ArrayNode definitions, final String name, final String unit) {
+        definitions.addObject().put("Name", name).put("Unit", unit);
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static String write(final ObjectNode line) {
+        try {
+            return objectMapper.writeValueAsString(line);
+        } catch (JsonProcessingException e) {
+            // Only a tree of strings and numbers is written here.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package software.amazon.codeguruprofiler.profilinggroup;
 
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
 import software.amazon.awssdk.services.codeguruprofiler.model.InternalServerException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsResponse;
 import software.amazon.awssdk.services.codeguruprofiler.model.NotificationConfiguration;
+import software.amazon.awssdk.services.codeguruprofiler.model.ProfilingGroupDescription;
 import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ThrottlingException;
 import software.amazon.cloudformation.exceptions.CfnServiceInternalErrorException;
@@ -15,29 +17,56 @@ import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.codeguruprofiler.profilinggroup.AgentPermissionHelper.GetPrincipalsFunction;
-import software.amazon.codeguruprofiler.profilinggroup.ResourceModel.ResourceModelBuilder;
+import software.amazon.codeguruprofiler.profilinggroup.AgentPermissionHelper.PrincipalsReaderFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper.convertNotificationConfigurationIntoChannelsList;
 import static software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper.getNotificationChannel;
 import static software.amazon.codeguruprofiler.profilinggroup.TagHelper.convertTagMapIntoSet;
 
 public class ListHandler extends BaseHandler<CallbackContext> {
+    // Each profiling group costs two calls to hydrate, so this keeps at most 20 calls in flight per invocation.
+    static final int DEFAULT_HYDRATION_CONCURRENCY = 10;
+    // The SDK has already retried a throttled call by the time we see it, so we only back off a few more times.
+    private static final int MAX_HYDRATION_ATTEMPTS = 3;
+    private static final long HYDRATION_BACKOFF_BASE_MILLIS = 100;
 
-    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientBuilder.create();
+    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientRegistry.getClient();
 
-    private final GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipalsFunction;
+    // Given the invocation's deadline bound client, account and region.
+    private final PrincipalsReaderFactory getPrincipalsFunctions;
+
+    private final int hydrationConcurrency;
+
+    private final Duration invocationBudget;
 
     public ListHandler() {
-        super();
-        getPrincipalsFunction = AgentPermissionHelper::getPrincipalsFromPolicy;
+        this(AgentPermissionHelper::principalsReaderFor, DEFAULT_HYDRATION_CONCURRENCY, Deadline.DEFAULT_INVOCATION_BUDGET);
     }
 
     public ListHandler(GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipals) {
+        this(getPrincipals, DEFAULT_HYDRATION_CONCURRENCY);
+    }
+
+    public ListHandler(GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipals, int hydrationConcurrency) {
+        this((client, awsAccountId, region) -> getPrincipals, hydrationConcurrency, Deadline.DEFAULT_INVOCATION_BUDGET);
+    }
+
+    ListHandler(GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipals, Duration invocationBudget) {
+        this((client, awsAccountId, region) -> getPrincipals, DEFAULT_HYDRATION_CONCURRENCY, invocationBudget);
+    }
+
+    private ListHandler(PrincipalsReaderFactory getPrincipalsFunctions, int hydrationConcurrency, Duration invocationBudget) {
         super();
-        getPrincipalsFunction = getPrincipals;
+        this.getPrincipalsFunctions = getPrincipalsFunctions;
+        this.hydrationConcurrency = hydrationConcurrency;
+        this.invocationBudget = invocationBudget;
     }
 
     @Override
@@ -46,38 +75,27 @@ public class ListHandler extends BaseHandler<CallbackContext> {
         final ResourceHandlerRequest<ResourceModel> request,
         final CallbackContext callbackContext,
         final Logger logger) {
+        try {
+            return handle(proxy, request, callbackContext, logger);
+        } finally {
+            CodeGuruProfilerClientRegistry.publishApiCallMetrics(logger, "List", request.getAwsAccountId());
+        }
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> handle(
+        final AmazonWebServicesClientProxy proxy,
+        final ResourceHandlerRequest<ResourceModel> request,
+        final CallbackContext callbackContext,
+        final Logger logger) {
 
-        final List<ResourceModel> models = new ArrayList<>();
         final String awsAccountId = request.getAwsAccountId();
+        final Deadline deadline = Deadline.after(invocationBudget);
+        // Every hydration call goes through it, so a slow page ends with the deadline rather than with a Lambda timeout.
+        final CodeGuruProfilerClient boundClient = new DeadlineBoundClient(profilerClient, deadline, awsAccountId);
 
         try {
-            ListProfilingGroupsRequest listProfilingGroupsRequest = ListProfilingGroupsRequest.builder()
-                    .includeDescription(true)
-                    .maxResults(100)
-                    .nextToken(request.getNextToken())
-                    .build();
-
-            ListProfilingGroupsResponse response = proxy.injectCredentialsAndInvokeV2(listProfilingGroupsRequest, profilerClient::listProfilingGroups);
-
-            response.profilingGroups().forEach(pg -> {
-                try {
-                    NotificationConfiguration notificationConfiguration = getNotificationChannel(pg.name(), proxy, profilerClient).notificationConfiguration();
-                    models.add(
-                        ResourceModel.builder()
-                            .profilingGroupName(pg.name())
-                            .computePlatform(pg.computePlatformAsString())
-                            .tags(new ArrayList<>(convertTagMapIntoSet(pg.tags())))
-                            .anomalyDetectionNotificationConfiguration(convertNotificationConfigurationIntoChannelsList(notificationConfiguration))
-                            .arn(pg.arn())
-                            .agentPermissions(AgentPermissions.builder().principals(getPrincipalsFunction.apply(proxy, pg.name())).build())
-                            .build()
-                    );
-                } catch (ResourceNotFoundException e) {
-                    // It's possible for a profiling group to have been deleted since we made the listProfilingGroups
-                    // request. In that case, don't include it in the response.
-                    logger.log(String.format("Profiling group \"%s\" no longer exists, it must have been deleted since we listed it.", pg.name()));
-                }
-            });
+            ListProfilingGroupsResponse response = listProfilingGroups(proxy, boundClient, request.getNextToken());
+            List<ResourceModel> models = hydrateAll(proxy, boundClient, awsAccountId, request.getRegion(), response.profilingGroups(), logger);
 
             logger.log(String.format("%d \"%s\" for accountId [%s] has been successfully listed for token %s!", models.size(), ResourceModel.TYPE_NAME, awsAccountId, request.getNextToken()));
 
@@ -87,10 +105,76 @@ public class ListHandler extends BaseHandler<CallbackContext> {
                     .status(OperationStatus.SUCCESS)
                     .build();
 
+        } catch (DeadlineExceededException | ApiCallTimeoutException e) {
+            // Nothing to resume, CloudFormation lists the page again as a whole.
+            throw new CfnServiceInternalErrorException(e);
         } catch (InternalServerException e) {
             throw new CfnServiceInternalErrorException(e);
         } catch (ThrottlingException e) {
             throw new CfnThrottlingException(e);
         }
     }
+
+    private ListProfilingGroupsResponse listProfilingGroups(final AmazonWebServicesClientProxy proxy, final CodeGuruProfilerClient client,
+                                                            final String nextToken) {
+        ListProfilingGroupsRequest listProfilingGroupsRequest = ListProfilingGroupsRequest.builder()
+                .includeDescription(true)
+                .maxResults(100)
+                .nextToken(nextToken)
+                .build();
+
+        return proxy.injectCredentialsAndInvokeV2(listProfilingGroupsRequest, client::listProfilingGroups);
+    }
+
+    private List<ResourceModel> hydrateAll(final AmazonWebServicesClientProxy proxy, final CodeGuruProfilerClient client, final String awsAccountId,
+                                           final String region, final List<ProfilingGroupDescription> profilingGroups, final Logger logger) {
+        final GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipalsFunction = getPrincipalsFunctions.readerFor(client, awsAccountId, region);
+        final List<ResourceModel> models = new ArrayList<>();
+        ConcurrencyHelper.mapInOrder(profilingGroups, hydrationConcurrency, pg -> hydrate(proxy, client, getPrincipalsFunction, pg, logger))
+            .forEach(model -> model.ifPresent(models::add));
+        return models;
+    }
+
+    private Optional<ResourceModel> hydrate(final AmazonWebServicesClientProxy proxy, final CodeGuruProfilerClient client,
+                                            final GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipalsFunction,
+                                            final ProfilingGroupDescription pg, final Logger logger) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                NotificationConfiguration notificationConfiguration = getNotificationChannel(pg.name(), proxy, client).notificationConfiguration();
+                List<String> principals = getPrincipalsFunction.apply(proxy, pg.name());
+                return Optional.of(
+                    ResourceModel.builder()
+                        .profilingGroupName(pg.name())
+                        .computePlatform(pg.computePlatformAsString())
+                        .tags(new ArrayList<>(convertTagMapIntoSet(pg.tags())))
+                        .anomalyDetectionNotificationConfiguration(convertNotificationConfigurationIntoChannelsList(notificationConfiguration))
+                        .arn(pg.arn())
+                        .agentPermissions(AgentPermissions.builder().principals(principals).build())
+                        .build()
+                );
+            } catch (ResourceNotFoundException e) {
+                // It's possible for a profiling group to have been deleted since we made the listProfilingGroups
+                // request. In that case, don't include it in the response.
+                logger.log(String.format("Profiling group \"%s\" no longer exists, it must have been deleted since we listed it.", pg.name()));
+                return Optional.empty();
+            } catch (ThrottlingException e) {
+                if (attempt >= MAX_HYDRATION_ATTEMPTS) {
+                    throw e;
+                }
+                logger.log(String.format("Throttled while describing profiling group \"%s\", backing off before attempt %d.", pg.name(), attempt + 1));
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    // Full jitter, so that the workers of one invocation do not come back to the service at the same time.
+    private static void backOff(final int attempt, final ThrottlingException cause) {
+        long ceiling = HYDRATION_BACKOFF_BASE_MILLIS << attempt;
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
 }
@@ -1,6 +1,5 @@
 package software.amazon.codeguruprofiler.profilinggroup;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -17,6 +16,9 @@ import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotification
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 
 public class NotificationChannelHelper {
+    // A profiling group has at most a handful of channels, this only guards against flooding the service.
+    private static final int MAX_REMOVAL_CONCURRENCY = 5;
+
     private NotificationChannelHelper() {
         // prevent instantiation
     }
@@ -31,17 +33,14 @@ public class NotificationChannelHelper {
         ).collect(Collectors.toList()), proxy, profilerClient);
     }
 
-    private static void addConvertedChannelNotifications(String pgName, List<Channel> channels, AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient) {
+    // Adds all the channels with a single AddNotificationChannels call, however many there are.
+    public static void addConvertedChannelNotifications(String pgName, List<Channel> channels, AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient) {
         AddNotificationChannelsRequest addNotificationChannelsRequest = AddNotificationChannelsRequest.builder()
                 .profilingGroupName(pgName).channels(channels).build();
 
         proxy.injectCredentialsAndInvokeV2(addNotificationChannelsRequest, profilerClient::addNotificationChannels);
     }
 
-    public static void addChannelNotification(String pgName, Channel channel, AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient) {
-        addConvertedChannelNotifications(pgName, Collections.singletonList(channel), proxy, profilerClient);
-    }
-
     public static void deleteNotificationChannel(final String pgName, final String channelId, final AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient) {
         RemoveNotificationChannelRequest removeNotificationChannelRequest = RemoveNotificationChannelRequest.builder()
                 .channelId(channelId)
@@ -50,6 +49,15 @@ public class NotificationChannelHelper {
         proxy.injectCredentialsAndInvokeV2(removeNotificationChannelRequest, profilerClient::removeNotificationChannel);
     }
 
+    // There is no batch removal API, so the removals run side by side instead.
+    public static void deleteNotificationChannels(final String pgName, final List<String> channelIds, final AmazonWebServicesClientProxy proxy,
+                                                  CodeGuruProfilerClient profilerClient) {
+        ConcurrencyHelper.mapInOrder(channelIds, MAX_REMOVAL_CONCURRENCY, channelId -> {
+            deleteNotificationChannel(pgName, channelId, proxy, profilerClient);
+            return channelId;
+        });
+    }
+
     public static GetNotificationConfigurationResponse getNotificationChannel(final String pgName, final AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient) {
         GetNotificationConfigurationRequest getNotificationConfigurationRequest =
             GetNotificationConfigurationRequest.builder().profilingGroupName(pgName).build();
@@ -65,13 +73,6 @@ public class NotificationChannelHelper {
             .collect(Collectors.toList());
     }
 
-    // Since we don't have a PUT operation, this emulates a channel update, when the updated channel contains a new Id
-    public static void updateChannelId(final String pgName, final String channelId, final Channel requestedChannel, final AmazonWebServicesClientProxy proxy,
-                                     CodeGuruProfilerClient profilerClient) {
-        deleteNotificationChannel(pgName, channelId, proxy, profilerClient);
-        addChannelNotification(pgName, requestedChannel, proxy, profilerClient);
-    }
-
     public static Optional<List<software.amazon.codeguruprofiler.profilinggroup.Channel>> anomalyDetectionNotificationConfiguration(final ResourceModel model) {
         return model.getAnomalyDetectionNotificationConfiguration() == null || model.getAnomalyDetectionNotificationConfiguration().isEmpty() ?
                 Optional.empty() : Optional.of(model.getAnomalyDetectionNotificationConfiguration());
@@ -0,0 +1,112 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Container-scoped cache of the principals parsed out of profiling group policies.
+ *
+ * Entries are keyed by account, region and profiling group name, and hold the policy revisionId, so a policy changed
+ * behind our back is parsed again as soon as GetPolicy returns a new revision. The policy document is compared as well: it is far cheaper than
+ * parsing, and keeps the cache correct even if a revisionId were reused. Entries expire after a short time to live,
+ * the least recently used ones are evicted past the maximum size, and PutPermission or RemovePermission made by this
+ * provider invalidate the profiling group right away.
+ */
+final class PolicyCache {
+    static final int DEFAULT_MAXIMUM_SIZE = 256;
+    static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(1);
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoClock;
+    // One entry per profiling group: only the latest revision is worth keeping.
+    private final LinkedHashMap<String, CachedPrincipals> entries;
+
+    PolicyCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TIME_TO_LIVE, System::nanoTime);
+    }
+
+    PolicyCache(final int maximumSize, final Duration timeToLive, final LongSupplier nanoClock) {
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<String, CachedPrincipals>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedPrincipals> eldest) {
+                return size() > PolicyCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * @return the principals of the policy, parsed with the given parser unless the same revision is cached.
+     *     Policies without a revisionId are always parsed and never cached.
+     */
+    List<String> principals(final String awsAccountId, final String region, final String profilingGroupName,
+                            final String revisionId, final String policy, final Function<String, List<String>> parser) {
+        if (revisionId == null) {
+            return parser.apply(policy);
+        }
+
+        final String key = keyOf(awsAccountId, region, profilingGroupName);
+        final CachedPrincipals cached = lookup(key, revisionId, policy);
+        if (cached != null) {
+            return cached.principals;
+        }
+
+        // Parsed outside the lock, two invocations racing on the same revision just both parse it.
+        final List<String> principals = parser.apply(policy);
+        synchronized (this) {
+            entries.put(key, new CachedPrincipals(revisionId, policy, principals, nanoClock.getAsLong() + timeToLiveNanos));
+        }
+        return principals;
+    }
+
+    synchronized void invalidate(final String awsAccountId, final String region, final String profilingGroupName) {
+        entries.remove(keyOf(awsAccountId, region, profilingGroupName));
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized CachedPrincipals lookup(final String key, final String revisionId, final String policy) {
+        final CachedPrincipals entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - entry.expiresAtNanos >= 0) {
+            entries.remove(key);
+            return null;
+        }
+        if (!entry.revisionId.equals(revisionId) || !Objects.equals(entry.policy, policy)) {
+            return null;
+        }
+        return entry;
+    }
+
+    private static String keyOf(final String awsAccountId, final String region, final String profilingGroupName) {
+        return awsAccountId + '\n' + region + '\n' + profilingGroupName;
+    }
+
+    private static final class CachedPrincipals {
+        private final String revisionId;
+        private final String policy;
+        private final List<String> principals;
+        private final long expiresAtNanos;
+
+        private CachedPrincipals(final String revisionId, final String policy, final List<String> principals, final long expiresAtNanos) {
+            this.revisionId = revisionId;
+            this.policy = policy;
+            this.principals = principals;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Reads the AWS principals out of a profiling group policy with Jackson's streaming API.
+ *
+ * Unlike binding the policy to nested maps, only the principal strings are materialized: everything else is
+ * skipped token by token. Principals of every statement are returned, in order of first appearance and without
+ * duplicates. They are interned, since the same role ARNs show up in the policies of many profiling groups.
+ */
+public final class PolicyPrincipalsParser {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final Interner<String> principalInterner = Interners.newWeakInterner();
+
+    private PolicyPrincipalsParser() {
+        // prevent instantiation
+    }
+
+    /**
+     * @return the principals granted by the policy, empty when the policy is null or empty.
+     * @throws IOException when the policy is not valid JSON or does not have the shape of an IAM policy.
+     */
+    public static List<String> parse(final String policyInJson) throws IOException {
+        if (policyInJson == null || policyInJson.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Set<String> principals = new LinkedHashSet<>();
+        try (JsonParser parser = jsonFactory.createParser(policyInJson)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("Statement".equals(field)) {
+                    readStatements(parser, value, principals);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(principals));
+    }
+
+    // "Statement" is either a single statement object or an array of them.
+    private static void readStatements(final JsonParser parser, final JsonToken value, final Set<String> principals) throws IOException {
+        if (value == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                readStatement(parser, parser.getCurrentToken(), principals);
+            }
+        } else {
+            readStatement(parser, value, principals);
+        }
+    }
+
+    private static void readStatement(final JsonParser parser, final JsonToken value, final Set<String> principals) throws IOException {
+        expect(parser, value, JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken fieldValue = parser.nextToken();
+            if ("Principal".equals(field) && fieldValue == JsonToken.START_OBJECT) {
+                readPrincipal(parser, principals);
+            } else {
+                // Including "Principal": "*", which does not name any AWS principal.
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readPrincipal(final JsonParser parser, final Set<String> principals) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if (!"AWS".equals(field)) {
+                parser.skipChildren();
+            } else if (value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    expect(parser, parser.getCurrentToken(), JsonToken.VALUE_STRING);
+                    principals.add(principalInterner.intern(parser.getText()));
+                }
+            } else {
+                expect(parser, value, JsonToken.VALUE_STRING);
+                principals.add(principalInterner.intern(parser.getText()));
+            }
+        }
+    }
+
+    private static void expect(final JsonParser parser, final JsonToken actual, final JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, String.format("Expected %s in policy but found %s", expected, actual));
+        }
+    }
+}
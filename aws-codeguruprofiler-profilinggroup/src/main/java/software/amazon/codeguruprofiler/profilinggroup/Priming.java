@@ -0,0 +1,207 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.HttpExecuteResponse;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsRequest;
+import software.amazon.cloudformation.exceptions.CfnAlreadyExistsException;
+import software.amazon.cloudformation.exceptions.CfnInternalFailureException;
+import software.amazon.cloudformation.exceptions.CfnInvalidRequestException;
+import software.amazon.cloudformation.exceptions.CfnNotFoundException;
+import software.amazon.cloudformation.exceptions.CfnServiceInternalErrorException;
+import software.amazon.cloudformation.exceptions.CfnServiceLimitExceededException;
+import software.amazon.cloudformation.exceptions.CfnThrottlingException;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
+import software.amazon.cloudformation.proxy.OperationStatus;
+import software.amazon.cloudformation.proxy.ProgressEvent;
+
+/**
+ * Pays the one-off costs of the first invocation during the Lambda init phase instead: class loading and
+ * initialization, the JSON parser's setup, and building the shared client, which resolves its region and endpoint.
+ *
+ * Nothing is sent over the network. The calls of the handlers are made once through a client of their own whose HTTP
+ * layer answers every request in process, with the not found error of the service. That is enough to go through
+ * signing, marshalling and error unmarshalling once, without the init phase waiting on the network or the service
+ * seeing made-up credentials. Connections are left to the first invocation.
+ *
+ * Priming runs when the handler classes are loaded in a Lambda container, see {@link #isEnabled()}. It is also the
+ * method to call from a checkpoint hook, should the function move to a runtime with snapshots.
+ */
+public final class Priming {
+    // Turns priming off when set to false, to measure cold starts without it say.
+    static final String PRIMING_ENVIRONMENT_VARIABLE = "CODEGURU_PROFILER_PRIMING";
+    private static final String LAMBDA_FUNCTION_NAME_ENVIRONMENT_VARIABLE = "AWS_LAMBDA_FUNCTION_NAME";
+
+    static final String PRIMING_PROFILING_GROUP_NAME = "CloudFormationHandlerPriming";
+    private static final String SAMPLE_POLICY = "{\"Version\":\"2012-10-17\",\"Statement\":[{\"Sid\":\"priming\",\"Effect\":\"Allow\","
+        + "\"Principal\":{\"AWS\":[\"arn:aws:iam::111111111111:role/Priming\"]},\"Action\":[\"codeguru-profiler:PostAgentProfile\"],"
+        + "\"Resource\":\"arn:aws:codeguru-profiler:us-east-1:111111111111:profilingGroup/priming\"}]}";
+
+    // Classes every invocation ends up loading, on top of the ones the priming calls load.
+    private static final Class<?>[] HOT_CLASSES = {
+        ProgressEvent.class,
+        OperationStatus.class,
+        HandlerErrorCode.class,
+        CfnAlreadyExistsException.class,
+        CfnInternalFailureException.class,
+        CfnInvalidRequestException.class,
+        CfnNotFoundException.class,
+        CfnServiceInternalErrorException.class,
+        CfnServiceLimitExceededException.class,
+        CfnThrottlingException.class,
+        AgentPermissionHelper.class,
+        NotificationChannelHelper.class,
+        TagHelper.class,
+        UpdatePlan.class,
+        ConcurrencyHelper.class,
+        Deadline.class,
+        EmbeddedMetricFormat.class
+    };
+
+    private Priming() {
+        // prevent instantiation
+    }
+
+    /**
+     * @return whether the code runs in a Lambda container where priming has not been turned off.
+     */
+    static boolean isEnabled() {
+        return isEnabled(System.getenv(LAMBDA_FUNCTION_NAME_ENVIRONMENT_VARIABLE), System.getenv(PRIMING_ENVIRONMENT_VARIABLE));
+    }
+
+    static boolean isEnabled(final String lambdaFunctionName, final String primingSetting) {
+        return lambdaFunctionName != null && !lambdaFunctionName.isEmpty() && !"false".equalsIgnoreCase(primingSetting);
+    }
+
+    /**
+     * Primes the container and builds the shared client of {@link CodeGuruProfilerClientRegistry}. Never throws: a
+     * failed priming step only leaves its cost to the first invocation.
+     */
+    public static void prime() {
+        loadHotClasses();
+        warmPolicyParser();
+        try {
+            CodeGuruProfilerClientRegistry.getClient();
+        } catch (RuntimeException e) {
+            // Building the client can fail on a misconfigured container, the first invocation will report it.
+        }
+        try (CodeGuruProfilerClient localClient = localClient()) {
+            prime(localClient);
+        } catch (RuntimeException e) {
+            // Only what the first invocation would load anyway is left unprimed.
+        }
+    }
+
+    /**
+     * Makes the calls of the Read handler, which Update and Delete start with too, and the one of the List handler.
+     */
+    static void prime(final CodeGuruProfilerClient client) {
+        call(() -> client.describeProfilingGroup(DescribeProfilingGroupRequest.builder()
+            .profilingGroupName(PRIMING_PROFILING_GROUP_NAME)
+            .build()));
+        call(() -> client.getNotificationConfiguration(GetNotificationConfigurationRequest.builder()
+            .profilingGroupName(PRIMING_PROFILING_GROUP_NAME)
+            .build()));
+        call(() -> client.getPolicy(GetPolicyRequest.builder()
+            .profilingGroupName(PRIMING_PROFILING_GROUP_NAME)
+            .build()));
+        call(() -> client.listProfilingGroups(ListProfilingGroupsRequest.builder()
+            .maxResults(1)
+            .build()));
+    }
+
+    /**
+     * @return a client configured like the shared one, minus its metrics and rate limiting, that never leaves the process.
+     */
+    static CodeGuruProfilerClient localClient() {
+        return CodeGuruProfilerClient.builder()
+            .httpClient(new NotFoundHttpClient())
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("priming", "priming")))
+            .overrideConfiguration(CodeGuruProfilerClientBuilder.getClientConfiguration())
+            .build();
+    }
+
+    private static void loadHotClasses() {
+        for (Class<?> hotClass : HOT_CLASSES) {
+            try {
+                Class.forName(hotClass.getName(), true, hotClass.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Loaded through its class literal already, initializing it is a bonus.
+            }
+        }
+    }
+
+    private static void warmPolicyParser() {
+        try {
+            PolicyPrincipalsParser.parse(SAMPLE_POLICY);
+        } catch (IOException e) {
+            // The sample policy is valid.
+        }
+    }
+
+    // The priming calls are expected to fail, they are only made for what it takes to get the answer.
+    private static void call(final Runnable primingCall) {
+        try {
+            primingCall.run();
+        } catch (SdkException e) {
+            // Not found, as answered.
+        }
+    }
+
+    /**
+     * Answers every request with the error the service returns for a profiling group that does not exist.
+     */
+    static final class NotFoundHttpClient implements SdkHttpClient {
+        private static final int NOT_FOUND_STATUS_CODE = 404;
+        private static final byte[] NOT_FOUND_BODY = ("{\"message\":\"Profiling group " + PRIMING_PROFILING_GROUP_NAME + " does not exist\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+        @Override
+        public ExecutableHttpRequest prepareRequest(final HttpExecuteRequest request) {
+            return new ExecutableHttpRequest() {
+                @Override
+                public HttpExecuteResponse call() {
+                    return HttpExecuteResponse.builder()
+                        .response(SdkHttpResponse.builder()
+                            .statusCode(NOT_FOUND_STATUS_CODE)
+                            .putHeader("x-amzn-ErrorType", "ResourceNotFoundException")
+                            .putHeader("Content-Type", "application/json")
+                            .build())
+                        .responseBody(AbortableInputStream.create(new ByteArrayInputStream(NOT_FOUND_BODY)))
+                        .build();
+                }
+
+                @Override
+                public void abort() {
+                    // Answered at once, nothing to abort.
+                }
+            };
+        }
+
+        @Override
+        public String clientName() {
+            return "Priming";
+        }
+
+        @Override
+        public void close() {
+            // Holds nothing.
+        }
+    }
+}
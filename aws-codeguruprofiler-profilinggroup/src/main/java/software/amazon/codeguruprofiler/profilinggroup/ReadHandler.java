@@ -1,5 +1,6 @@
 package software.amazon.codeguruprofiler.profilinggroup;
 
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
 import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupResponse;
@@ -17,28 +18,41 @@ import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.codeguruprofiler.profilinggroup.AgentPermissionHelper.GetPrincipalsFunction;
+import software.amazon.codeguruprofiler.profilinggroup.AgentPermissionHelper.PrincipalsReaderFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper.convertNotificationConfigurationIntoChannelsList;
 import static software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper.getNotificationChannel;
 import static software.amazon.codeguruprofiler.profilinggroup.TagHelper.convertTagMapIntoSet;
 
 public class ReadHandler extends BaseHandler<CallbackContext> {
+    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientRegistry.getClient();
 
-    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientBuilder.create();
+    // Given the invocation's deadline bound client, account and region.
+    private final PrincipalsReaderFactory getPrincipalsFunctions;
 
-    private final GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipalsFunction;
+    private final Duration invocationBudget;
 
     public ReadHandler() {
-        super();
-        getPrincipalsFunction = AgentPermissionHelper::getPrincipalsFromPolicy;
+        this(AgentPermissionHelper::principalsReaderFor, Deadline.DEFAULT_INVOCATION_BUDGET);
     }
 
     public ReadHandler(GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipals) {
+        this(getPrincipals, Deadline.DEFAULT_INVOCATION_BUDGET);
+    }
+
+    ReadHandler(GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipals, Duration invocationBudget) {
+        this((client, awsAccountId, region) -> getPrincipals, invocationBudget);
+    }
+
+    private ReadHandler(PrincipalsReaderFactory getPrincipalsFunctions, Duration invocationBudget) {
         super();
-        getPrincipalsFunction = getPrincipals;
+        this.getPrincipalsFunctions = getPrincipalsFunctions;
+        this.invocationBudget = invocationBudget;
     }
 
     @Override
@@ -47,31 +61,57 @@ public class ReadHandler extends BaseHandler<CallbackContext> {
         final ResourceHandlerRequest<ResourceModel> request,
         final CallbackContext callbackContext,
         final Logger logger) {
+        try {
+            return handle(proxy, request, callbackContext, logger);
+        } finally {
+            CodeGuruProfilerClientRegistry.publishApiCallMetrics(logger, "Read", request.getAwsAccountId());
+        }
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> handle(
+        final AmazonWebServicesClientProxy proxy,
+        final ResourceHandlerRequest<ResourceModel> request,
+        final CallbackContext callbackContext,
+        final Logger logger) {
 
         final ResourceModel model = request.getDesiredResourceState();
         final String awsAccountId = request.getAwsAccountId();
 
+        final CodeGuruProfilerClient boundClient = new DeadlineBoundClient(profilerClient, Deadline.after(invocationBudget), awsAccountId);
+        final GetPrincipalsFunction<AmazonWebServicesClientProxy, String, List<String>> getPrincipalsFunction =
+            getPrincipalsFunctions.readerFor(boundClient, awsAccountId, request.getRegion());
+
         try {
             String pgName = model.getProfilingGroupName();
             DescribeProfilingGroupRequest describeProfilingGroupRequest = DescribeProfilingGroupRequest.builder()
                     .profilingGroupName(pgName)
                     .build();
 
-            DescribeProfilingGroupResponse response = proxy.injectCredentialsAndInvokeV2(describeProfilingGroupRequest, profilerClient::describeProfilingGroup);
+            // None of the three reads depends on another, so the notification configuration and the policy are
+            // fetched in the background while the profiling group is described on this thread.
+            CompletableFuture<NotificationConfiguration> notificationConfigurationFuture = ConcurrencyHelper.supplyAsync(
+                () -> getNotificationChannel(pgName, proxy, boundClient).notificationConfiguration());
+            CompletableFuture<List<String>> principalsFuture = ConcurrencyHelper.supplyAsync(
+                () -> getPrincipalsFunction.apply(proxy, pgName));
+
+            DescribeProfilingGroupResponse response = proxy.injectCredentialsAndInvokeV2(describeProfilingGroupRequest, boundClient::describeProfilingGroup);
             model.setProfilingGroupName(response.profilingGroup().name()); // This is not needed but making sure the response is the same as the request!
             model.setArn(response.profilingGroup().arn());
             model.setComputePlatform(response.profilingGroup().computePlatformAsString());
             model.setTags(new ArrayList<>(convertTagMapIntoSet(response.profilingGroup().tags())));
 
-            NotificationConfiguration notificationConfiguration = getNotificationChannel(pgName, proxy, profilerClient).notificationConfiguration();
+            NotificationConfiguration notificationConfiguration = ConcurrencyHelper.join(notificationConfigurationFuture);
             model.setAnomalyDetectionNotificationConfiguration(convertNotificationConfigurationIntoChannelsList(notificationConfiguration));
 
-            model.setAgentPermissions(AgentPermissions.builder().principals(getPrincipalsFunction.apply(proxy, pgName)).build());
+            model.setAgentPermissions(AgentPermissions.builder().principals(ConcurrencyHelper.join(principalsFuture)).build());
 
             logger.log(String.format("%s [%s] for accountId [%s] has been successfully read!", ResourceModel.TYPE_NAME, model.getProfilingGroupName(), awsAccountId));
 
             return ProgressEvent.defaultSuccessHandler(model);
 
+        } catch (DeadlineExceededException | ApiCallTimeoutException e) {
+            // Nothing to resume, CloudFormation retries the read as a whole.
+            throw new CfnServiceInternalErrorException(e);
         } catch (ResourceNotFoundException e) {
             throw new CfnNotFoundException(e);
         } catch (InternalServerException e) {
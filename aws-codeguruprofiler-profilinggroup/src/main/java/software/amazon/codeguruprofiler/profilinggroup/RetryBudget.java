@@ -0,0 +1,52 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+import software.amazon.awssdk.core.retry.conditions.TokenBucketExceptionCostFunction;
+import software.amazon.awssdk.core.retry.conditions.TokenBucketRetryCondition;
+
+/**
+ * Retries the whole container may still make, shared by every client and operation so that retries cannot multiply
+ * the load on a service that is already failing.
+ *
+ * A token bucket: each retry takes tokens, throttled ones more, and each call that succeeds puts one back. Once the
+ * bucket is empty calls fail on their first error until enough calls succeed again. The clean up of a failed
+ * creation still gets its retries from an empty bucket, its tokens are only spent when there are some.
+ */
+final class RetryBudget implements RetryCondition {
+    static final int DEFAULT_CAPACITY = 100;
+    static final int RETRY_COST = 5;
+    static final int THROTTLED_RETRY_COST = 10;
+
+    private final TokenBucketRetryCondition tokenBucket;
+
+    RetryBudget() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    RetryBudget(final int capacity) {
+        this.tokenBucket = TokenBucketRetryCondition.builder()
+                               .tokenBucketSize(capacity)
+                               .exceptionCostFunction(TokenBucketExceptionCostFunction.builder()
+                                   .throttlingExceptionCost(THROTTLED_RETRY_COST)
+                                   .defaultExceptionCost(RETRY_COST)
+                                   .build())
+                               .build();
+    }
+
+    @Override
+    public boolean shouldRetry(final RetryPolicyContext context) {
+        final boolean withinBudget = tokenBucket.shouldRetry(context);
+        return withinBudget || RetryProfile.of(context) == RetryProfile.COMPENSATION;
+    }
+
+    @Override
+    public void requestSucceeded(final RetryPolicyContext context) {
+        tokenBucket.requestSucceeded(context);
+    }
+
+    @Override
+    public void requestWillNotBeRetried(final RetryPolicyContext context) {
+        tokenBucket.requestWillNotBeRetried(context);
+    }
+}
@@ -0,0 +1,157 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.core.retry.backoff.BackoffStrategy;
+import software.amazon.awssdk.core.retry.backoff.EqualJitterBackoffStrategy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+
+/**
+ * How patiently the shared client retries a CodeGuru Profiler operation, by class of operation.
+ *
+ * Reads fail fast: CloudFormation and the handlers retry them at a higher level, and a read that hangs on holds up
+ * the mutation waiting on it. Mutations keep their patience, more so those that are safe to repeat. A call site can
+ * choose the profile of its call instead, see {@link CallScope}: the delete that cleans up after a
+ * failed creation gets the most patience, since giving up on it leaks a profiling group. Every retry also draws from
+ * the container's {@link RetryBudget}.
+ */
+enum RetryProfile {
+    READ(3, Duration.ofSeconds(5),
+        backoff(Duration.ofMillis(25), Duration.ofSeconds(1)),
+        throttlingBackoff(Duration.ofMillis(100), Duration.ofSeconds(2))),
+    IDEMPOTENT_WRITE(10, Duration.ofSeconds(15),
+        backoff(Duration.ofMillis(100), Duration.ofSeconds(20)),
+        throttlingBackoff(Duration.ofMillis(500), Duration.ofSeconds(20))),
+    // A long attempt timeout, so that a creation which reached the service is rarely timed out and sent again.
+    NON_IDEMPOTENT_WRITE(5, Duration.ofSeconds(30),
+        backoff(Duration.ofMillis(100), Duration.ofSeconds(20)),
+        throttlingBackoff(Duration.ofMillis(500), Duration.ofSeconds(20))),
+    // Only ever chosen by a call site. Note that we would timeout well before we do these many retries since we are bound
+    // by the overall request timeout.
+    COMPENSATION(30, Duration.ofSeconds(30),
+        backoff(Duration.ofMillis(100), Duration.ofSeconds(20)),
+        throttlingBackoff(Duration.ofMillis(500), Duration.ofSeconds(20)));
+
+    // What the client's retry policy allows, each profile then stops at its own limit.
+    static final int MAX_RETRIES = 30;
+
+    private static final Map<String, RetryProfile> OPERATIONS = new HashMap<>();
+
+    static {
+        OPERATIONS.put("DescribeProfilingGroup", READ);
+        OPERATIONS.put("ListProfilingGroups", READ);
+        OPERATIONS.put("GetPolicy", READ);
+        OPERATIONS.put("GetNotificationConfiguration", READ);
+        OPERATIONS.put("ListTagsForResource", READ);
+        OPERATIONS.put("PutPermission", IDEMPOTENT_WRITE);
+        OPERATIONS.put("RemovePermission", IDEMPOTENT_WRITE);
+        OPERATIONS.put("TagResource", IDEMPOTENT_WRITE);
+        OPERATIONS.put("UntagResource", IDEMPOTENT_WRITE);
+        OPERATIONS.put("RemoveNotificationChannel", IDEMPOTENT_WRITE);
+        // The service assigns the channel ids, so adding a channel twice is not the same as adding it once.
+        OPERATIONS.put("AddNotificationChannels", NON_IDEMPOTENT_WRITE);
+        OPERATIONS.put("CreateProfilingGroup", NON_IDEMPOTENT_WRITE);
+        // The clean up of a failed creation makes its deletes as compensations.
+        OPERATIONS.put("DeleteProfilingGroup", IDEMPOTENT_WRITE);
+    }
+
+    private final int maxRetries;
+    private final Duration attemptTimeout;
+    private final BackoffStrategy backoffStrategy;
+    private final BackoffStrategy throttlingBackoffStrategy;
+
+    RetryProfile(final int maxRetries, final Duration attemptTimeout, final BackoffStrategy backoffStrategy,
+                 final BackoffStrategy throttlingBackoffStrategy) {
+        this.maxRetries = maxRetries;
+        this.attemptTimeout = attemptTimeout;
+        this.backoffStrategy = backoffStrategy;
+        this.throttlingBackoffStrategy = throttlingBackoffStrategy;
+    }
+
+    int maxRetries() {
+        return maxRetries;
+    }
+
+    Duration attemptTimeout() {
+        return attemptTimeout;
+    }
+
+    /**
+     * @return the profile of the operation, operations this provider does not know of are retried as idempotent writes.
+     */
+    static RetryProfile forOperation(final String operationName) {
+        return operationName == null ? IDEMPOTENT_WRITE : OPERATIONS.getOrDefault(operationName, IDEMPOTENT_WRITE);
+    }
+
+    /**
+     * @return the profile the call site chose for the call, or else that of its operation.
+     */
+    static RetryProfile of(final ExecutionAttributes executionAttributes) {
+        final RetryProfile chosen = CallScope.retryProfileOf(executionAttributes);
+        if (chosen != null) {
+            return chosen;
+        }
+        return forOperation(executionAttributes == null ? null : executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME));
+    }
+
+    static RetryProfile of(final RetryPolicyContext context) {
+        return of(context.executionAttributes());
+    }
+
+    /**
+     * Stops retrying once the operation used up the retries of its profile.
+     */
+    static RetryCondition retryLimit() {
+        return context -> context.retriesAttempted() < of(context).maxRetries;
+    }
+
+    static BackoffStrategy backoffStrategy() {
+        return context -> of(context).backoffStrategy.computeDelayBeforeNextRetry(context);
+    }
+
+    static BackoffStrategy throttlingBackoffStrategy() {
+        return context -> of(context).throttlingBackoffStrategy.computeDelayBeforeNextRetry(context);
+    }
+
+    private static BackoffStrategy backoff(final Duration baseDelay, final Duration maxBackoffTime) {
+        return FullJitterBackoffStrategy.builder().baseDelay(baseDelay).maxBackoffTime(maxBackoffTime).build();
+    }
+
+    private static BackoffStrategy throttlingBackoff(final Duration baseDelay, final Duration maxBackoffTime) {
+        return EqualJitterBackoffStrategy.builder().baseDelay(baseDelay).maxBackoffTime(maxBackoffTime).build();
+    }
+
+    /**
+     * Gives each call the attempt timeout of its profile, unless the request already has one.
+     */
+    static final class AttemptTimeouts implements ExecutionInterceptor {
+        @Override
+        public SdkRequest modifyRequest(final Context.ModifyRequest context, final ExecutionAttributes executionAttributes) {
+            final SdkRequest request = context.request();
+            if (!(request instanceof AwsRequest)) {
+                return request;
+            }
+            final AwsRequest awsRequest = (AwsRequest) request;
+            if (awsRequest.overrideConfiguration().flatMap(AwsRequestOverrideConfiguration::apiCallAttemptTimeout).isPresent()) {
+                return request;
+            }
+            final AwsRequestOverrideConfiguration overrideConfiguration = awsRequest.overrideConfiguration()
+                .map(AwsRequestOverrideConfiguration::toBuilder)
+                .orElseGet(AwsRequestOverrideConfiguration::builder)
+                .apiCallAttemptTimeout(of(executionAttributes).attemptTimeout)
+                .build();
+            return awsRequest.toBuilder().overrideConfiguration(overrideConfiguration).build();
+        }
+    }
+}
@@ -11,6 +11,7 @@ import software.amazon.awssdk.services.codeguruprofiler.model.UntagResourceRespo
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
 import software.amazon.cloudformation.proxy.Logger;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -20,8 +21,6 @@ import java.util.stream.Collectors;
 import static java.util.Collections.emptySet;
 
 public class TagHelper {
-    private static final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientBuilder.create();
-
     public static Set<Tag> convertTagMapIntoSet(Map<String, String> tags) {
         return tags.entrySet()
                    .stream()
@@ -36,9 +35,37 @@ public class TagHelper {
                                   String awsAccountId,
                                   String resourceArn,
                                   Logger logger) {
-        Set<Tag> existingTags = convertTagMapIntoSet(listTagsForResource(proxy, resourceArn).tags());
+        updateTags(proxy, desiredModel, null, awsAccountId, resourceArn, logger);
+    }
+
+    public static void updateTags(AmazonWebServicesClientProxy proxy,
+                                  ResourceModel desiredModel,
+                                  ResourceModel previousModel,
+                                  String awsAccountId,
+                                  String resourceArn,
+                                  Logger logger) {
+        updateTags(proxy, CodeGuruProfilerClientRegistry.getClient(), desiredModel, previousModel, awsAccountId, resourceArn, logger);
+    }
+
+    /**
+     * Brings the tags of the resource to the ones of the desired model.
+     *
+     * The tags of the previous model, which CloudFormation passes along with every update, are taken as the current
+     * tags. Only when there is no previous model are the tags listed from the service; callers that suspect drift
+     * should pass null to force that. The calls go through the given client, so a handler can bound them by its deadline.
+     */
+    public static void updateTags(AmazonWebServicesClientProxy proxy,
+                                  CodeGuruProfilerClient profilerClient,
+                                  ResourceModel desiredModel,
+                                  ResourceModel previousModel,
+                                  String awsAccountId,
+                                  String resourceArn,
+                                  Logger logger) {
+        Map<String, String> existingTags = previousModel == null
+            ? listTagsForResource(proxy, profilerClient, resourceArn).tags()
+            : tagMapFrom(tagsFromModel(previousModel));
 
-        Set<Tag> desiredTags = tagsFromModel(desiredModel);
+        Map<String, String> desiredTags = tagMapFrom(tagsFromModel(desiredModel));
 
         if (existingTags.equals(desiredTags)) {
             logger.log(
@@ -61,9 +88,11 @@ public class TagHelper {
             )
         );
 
-        final Set<Tag> tagsToRemove = new HashSet<>(existingTags);
-        tagsToRemove.removeIf(desiredTags::contains);
-        desiredTags.removeIf(existingTags::contains);
+        // Key level changes: TagResource overwrites the value of an existing key, so only keys that are gone get untagged.
+        final Map<String, String> tagsToRemove = new HashMap<>(existingTags);
+        tagsToRemove.keySet().removeIf(desiredTags::containsKey);
+        final Map<String, String> tagsToAdd = new HashMap<>(desiredTags);
+        tagsToAdd.entrySet().removeIf(tag -> tag.getValue().equals(existingTags.get(tag.getKey())));
 
         if (!tagsToRemove.isEmpty()) {
             logger.log(
@@ -73,7 +102,7 @@ public class TagHelper {
                     tagsToRemove
                 )
             );
-            untagResource(proxy, resourceArn, tagsToRemove.stream().map(Tag::getKey).collect(Collectors.toSet()));
+            untagResource(proxy, profilerClient, resourceArn, new HashSet<>(tagsToRemove.keySet()));
             logger.log(
                 String.format("Successfully untagged tags from [%s] for accountId [%s]",
                     resourceArn,
@@ -82,16 +111,16 @@ public class TagHelper {
             );
         }
 
-        if (!desiredTags.isEmpty()) {
+        if (!tagsToAdd.isEmpty()) {
             logger.log(
                 String.format("Adding new tags to [%s] for accountId [%s]: %s",
                     resourceArn,
                     awsAccountId,
-                    desiredTags
+                    tagsToAdd
                 )
             );
             try {
-                tagResource(proxy, resourceArn, desiredTags.stream().collect(Collectors.toMap(Tag::getKey, Tag::getValue)));
+                tagResource(proxy, profilerClient, resourceArn, tagsToAdd);
             } catch(CodeGuruProfilerException e) {
                 logger.log(
                     String.format("Failed to add new tags to [%s] for accountId [%s]",
@@ -105,10 +134,10 @@ public class TagHelper {
                         String.format("Adding back old tags to [%s] for accountId [%s]: %s",
                             resourceArn,
                             awsAccountId,
-                            desiredTags
+                            tagsToRemove
                         )
                     );
-                    tagResource(proxy, resourceArn, tagsToRemove.stream().collect(Collectors.toMap(Tag::getKey, Tag::getValue)));
+                    tagResource(proxy, profilerClient, resourceArn, tagsToRemove);
                     logger.log(
                         String.format("Successfully added back old tags to [%s] for accountId [%s]",
                             resourceArn,
@@ -127,27 +156,31 @@ public class TagHelper {
         }
     }
 
-    private static UntagResourceResponse untagResource(AmazonWebServicesClientProxy proxy, String resourceArn, Set<String> tagKeys) {
+    private static UntagResourceResponse untagResource(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient, String resourceArn, Set<String> tagKeys) {
         return proxy.injectCredentialsAndInvokeV2(
             UntagResourceRequest.builder().resourceArn(resourceArn).tagKeys(tagKeys).build(),
             profilerClient::untagResource
         );
     }
 
-    private static ListTagsForResourceResponse listTagsForResource(AmazonWebServicesClientProxy proxy, String resourceArn) {
+    private static ListTagsForResourceResponse listTagsForResource(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient, String resourceArn) {
         return proxy.injectCredentialsAndInvokeV2(
             ListTagsForResourceRequest.builder().resourceArn(resourceArn).build(),
             profilerClient::listTagsForResource
         );
     }
 
-    private static TagResourceResponse tagResource(AmazonWebServicesClientProxy proxy, String resourceArn, Map<String, String> tags) {
+    private static TagResourceResponse tagResource(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient, String resourceArn, Map<String, String> tags) {
         return proxy.injectCredentialsAndInvokeV2(
             TagResourceRequest.builder().resourceArn(resourceArn).tags(tags).build(),
             profilerClient::tagResource
         );
     }
 
+    private static Map<String, String> tagMapFrom(final Set<Tag> tags) {
+        return tags.stream().collect(Collectors.toMap(Tag::getKey, Tag::getValue, (first, second) -> second));
+    }
+
     private static Set<Tag> tagsFromModel(final ResourceModel model) {
         List<Tag> tags = model.getTags();
         if (tags == null) {
@@ -1,16 +1,20 @@
 package software.amazon.codeguruprofiler.profilinggroup;
 
 import static software.amazon.codeguruprofiler.profilinggroup.NotificationChannelHelper.anomalyDetectionNotificationConfiguration;
+import static software.amazon.codeguruprofiler.profilinggroup.TagHelper.convertTagMapIntoSet;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import software.amazon.awssdk.arns.Arn;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
-import software.amazon.awssdk.services.codeguruprofiler.model.ActionGroup;
 import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
 import software.amazon.awssdk.services.codeguruprofiler.model.ConflictException;
 import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
@@ -20,8 +24,7 @@ import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationCon
 import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
 import software.amazon.awssdk.services.codeguruprofiler.model.InternalServerException;
-import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
-import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ProfilingGroupDescription;
 import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ThrottlingException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ValidationException;
@@ -38,27 +41,57 @@ import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
 public class UpdateHandler extends BaseHandler<CallbackContext> {
-    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientBuilder.create();
+    // After this many invocations running out of time we stop handing control back and fail the update.
+    static final int MAX_TIMED_OUT_INVOCATIONS = 5;
+    // Give a throttled service a moment before CloudFormation calls us again.
+    private static final int TIMED_OUT_CALLBACK_DELAY_SECONDS = 5;
 
-    private final UpdateTagsFunction<AmazonWebServicesClientProxy, ResourceModel, String, String, Logger> updateTagFunction;
+    private final CodeGuruProfilerClient profilerClient = CodeGuruProfilerClientRegistry.getClient();
+
+    // Given the invocation's deadline bound client.
+    private final Function<CodeGuruProfilerClient, UpdateTagsFunction<AmazonWebServicesClientProxy, ResourceModel, String, String, Logger>> updateTagFunctions;
+
+    private final Duration invocationBudget;
 
     public UpdateHandler() {
-        super();
-        updateTagFunction = TagHelper::updateTags;
+        this(Deadline.DEFAULT_INVOCATION_BUDGET, client -> (proxy, desired, previous, awsAccountId, resourceArn, logger) ->
+            TagHelper.updateTags(proxy, client, desired, previous, awsAccountId, resourceArn, logger));
     }
 
     public UpdateHandler(UpdateTagsFunction<AmazonWebServicesClientProxy, ResourceModel, String, String, Logger> updateTag) {
+        this(updateTag, Deadline.DEFAULT_INVOCATION_BUDGET);
+    }
+
+    public UpdateHandler(UpdateTagsFunction<AmazonWebServicesClientProxy, ResourceModel, String, String, Logger> updateTag, Duration invocationBudget) {
+        this(invocationBudget, client -> updateTag);
+    }
+
+    private UpdateHandler(Duration invocationBudget,
+                          Function<CodeGuruProfilerClient, UpdateTagsFunction<AmazonWebServicesClientProxy, ResourceModel, String, String, Logger>> updateTagFunctions) {
         super();
-        updateTagFunction = updateTag;
+        this.updateTagFunctions = updateTagFunctions;
+        this.invocationBudget = invocationBudget;
     }
 
     @FunctionalInterface
     public interface UpdateTagsFunction<Proxy, Model, AccountId, ResourceArn, Logger> {
-        void apply(Proxy s, Model t, AccountId u, ResourceArn v, Logger w);
+        void apply(Proxy s, Model desired, Model previous, AccountId u, ResourceArn v, Logger w);
     }
 
     @Override
     public ProgressEvent<ResourceModel, CallbackContext> handleRequest(
+        AmazonWebServicesClientProxy proxy,
+        ResourceHandlerRequest<ResourceModel> request,
+        CallbackContext callbackContext,
+        Logger logger) {
+        try {
+            return handle(proxy, request, callbackContext, logger);
+        } finally {
+            CodeGuruProfilerClientRegistry.publishApiCallMetrics(logger, "Update", request.getAwsAccountId());
+        }
+    }
+
+    private ProgressEvent<ResourceModel, CallbackContext> handle(
         AmazonWebServicesClientProxy proxy,
         ResourceHandlerRequest<ResourceModel> request,
         CallbackContext callbackContext,
@@ -67,52 +100,71 @@ public class UpdateHandler extends BaseHandler<CallbackContext> {
 
         final String awsAccountId = request.getAwsAccountId();
         final String profilingGroupName = model.getProfilingGroupName();
-        final String profilingGroupArn = getResourceArnFrom(request);
 
         Optional<List<String>> principals = principalsForAgentPermissionsFrom(model);
 
+        final Deadline deadline = Deadline.after(invocationBudget);
+        final CodeGuruProfilerClient boundClient = new DeadlineBoundClient(profilerClient, deadline, awsAccountId);
+
         try {
-            if (!profilingGroupExists(proxy, profilingGroupName)) {
+            deadline.check();
+            Optional<List<Channel>> requestedChannels = anomalyDetectionNotificationConfiguration(model)
+                .map(channels -> channels.stream().map(channel -> {
+                    Channel.Builder uri = Channel.builder()
+                            .uri(channel.getChannelUri())
+                            .eventPublishers(EventPublisher.ANOMALY_DETECTION);
+                    // since ChannelId is an optional param, check here to avoid NPE
+                    if (channel.getChannelId() != null) {
+                        uri.id(channel.getChannelId());
+                    }
+
+                    return uri.build();
+                }).collect(Collectors.toList()));
+
+            // None of the reads depends on another, so the policy and, when channels are requested, the notification
+            // configuration are fetched in the background while the profiling group is described on this thread.
+            final CompletableFuture<GetPolicyResponse> policyFuture = ConcurrencyHelper.supplyAsync(() -> {
+                deadline.check();
+                return getExistingPolicy(proxy, boundClient, profilingGroupName);
+            });
+            final CompletableFuture<List<Channel>> currentChannelsFuture = requestedChannels.isPresent()
+                ? ConcurrencyHelper.supplyAsync(() -> {
+                    deadline.check();
+                    return getExistingNotificationConfiguration(proxy, boundClient, profilingGroupName).notificationConfiguration().channels();
+                })
+                : CompletableFuture.completedFuture(Collections.emptyList());
+
+            final ProfilingGroupDescription profilingGroup;
+            try {
+                profilingGroup = proxy.injectCredentialsAndInvokeV2(
+                    DescribeProfilingGroupRequest.builder().profilingGroupName(profilingGroupName).build(),
+                    boundClient::describeProfilingGroup
+                ).profilingGroup();
+            } catch (ResourceNotFoundException e) {
                 return ProgressEvent.failed(null, null, HandlerErrorCode.NotFound, "Profiling group: " + profilingGroupName + " does not exist.");
             }
+            final String profilingGroupArn = profilingGroup != null && profilingGroup.arn() != null ? profilingGroup.arn() : getResourceArnFrom(request);
 
-            updateTagFunction.apply(proxy, model, awsAccountId, profilingGroupArn, logger);
-
-            GetPolicyResponse getPolicyResponse = getExistingPolicy(proxy, profilingGroupName);
-
-            if (principals.isPresent()) {
-                putAgentPermissions(proxy, profilingGroupName, principals.get(), getPolicyResponse.revisionId());
-                logger.log(
-                    String.format("Policy for [%s] for accountId [%s] has been successfully updated! actionGroup: %s, principals: %s",
-                        profilingGroupName,
-                        awsAccountId,
-                        ActionGroup.AGENT_PERMISSIONS,
-                        principals.get())
-                );
-            } else if (getPolicyResponse.policy() != null) {
-                removeAgentPermission(proxy, profilingGroupName, getPolicyResponse.revisionId());
-                logger.log(String.format("Policy for [%s] for accountId [%s] has been successfully removed!", profilingGroupName, awsAccountId));
-            }
+            deadline.check();
+            updateTagFunctions.apply(boundClient).apply(proxy, model, currentTagsFrom(profilingGroup, request, callbackContext), awsAccountId, profilingGroupArn, logger);
+
+            final GetPolicyResponse getPolicyResponse = ConcurrencyHelper.join(policyFuture);
+            final List<Channel> currentChannels = ConcurrencyHelper.join(currentChannelsFuture);
+
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, request.getRegion(), profilingGroupName, principals, getPolicyResponse,
+                requestedChannels, currentChannels);
+            logger.log(plan.toString());
 
-            Optional<List<software.amazon.codeguruprofiler.profilinggroup.Channel>> anomalyDetectionNotificationConfiguration = anomalyDetectionNotificationConfiguration(model);
-            if (anomalyDetectionNotificationConfiguration.isPresent()) {
-                updateNotificationChannels(profilingGroupName, proxy,
-                        anomalyDetectionNotificationConfiguration.get().stream().map(channel -> {
-                            Channel.Builder uri = Channel.builder()
-                                    .uri(channel.getChannelUri())
-                                    .eventPublishers(EventPublisher.ANOMALY_DETECTION);
-                            // since ChannelId is an optional param, check here to avoid NPE
-                            if (channel.getChannelId() != null) {
-                                uri.id(channel.getChannelId());
-                            }
-
-                            return uri.build();
-                        }).collect(Collectors.toList()));
-
-                logger.log(String.format("%s [%s] for accountId [%s] has been successfully updated!", ResourceModel.TYPE_NAME, model.getProfilingGroupName(), awsAccountId));
+            deadline.check();
+            plan.execute(proxy, boundClient);
+
+            if (!plan.isEmpty()) {
+                logger.log(String.format("%s [%s] for accountId [%s] has been successfully updated!", ResourceModel.TYPE_NAME, profilingGroupName, awsAccountId));
             }
 
             return ProgressEvent.defaultSuccessHandler(model);
+        } catch (DeadlineExceededException | ApiCallTimeoutException e) {
+            return handBackAfterTimeout(model, callbackContext, logger, e);
         } catch (ConflictException e) {
             throw new CfnAlreadyExistsException(e);
         } catch (InternalServerException e) {
@@ -126,90 +178,54 @@ public class UpdateHandler extends BaseHandler<CallbackContext> {
         }
     }
 
-    private boolean profilingGroupExists(AmazonWebServicesClientProxy proxy, String profilingGroupName) {
-        try {
-            proxy.injectCredentialsAndInvokeV2(
-                DescribeProfilingGroupRequest.builder().profilingGroupName(profilingGroupName).build(),
-                profilerClient::describeProfilingGroup
-            );
-            return true;
-        } catch (ResourceNotFoundException e) {
-            return false;
+    // Every step of an update is safe to redo, so when the invocation runs out of time CloudFormation simply calls us again.
+    private static ProgressEvent<ResourceModel, CallbackContext> handBackAfterTimeout(ResourceModel model, CallbackContext callbackContext,
+                                                                                     Logger logger, RuntimeException timeout) {
+        final CallbackContext context = callbackContext == null ? new CallbackContext() : callbackContext;
+        context.setTimedOutInvocations(context.getTimedOutInvocations() + 1);
+
+        if (context.getTimedOutInvocations() > MAX_TIMED_OUT_INVOCATIONS) {
+            return ProgressEvent.failed(model, context, HandlerErrorCode.GeneralServiceException,
+                String.format("%s [%s] could not be updated within %d invocations: %s",
+                    ResourceModel.TYPE_NAME, model.getProfilingGroupName(), MAX_TIMED_OUT_INVOCATIONS, timeout.getMessage()));
+        }
+
+        logger.log(String.format("%s [%s] ran out of time during update, handing back to CloudFormation (%d/%d): %s",
+            ResourceModel.TYPE_NAME, model.getProfilingGroupName(), context.getTimedOutInvocations(), MAX_TIMED_OUT_INVOCATIONS, timeout.getMessage()));
+        return ProgressEvent.defaultInProgressHandler(context, TIMED_OUT_CALLBACK_DELAY_SECONDS, model);
+    }
+
+    /**
+     * The model whose tags the tags are diffed against: the profiling group as described, so the tags are never listed
+     * again. Without a description, the previous model, unless a re-invocation may follow a partially applied update.
+     */
+    private static ResourceModel currentTagsFrom(ProfilingGroupDescription profilingGroup, ResourceHandlerRequest<ResourceModel> request,
+                                                 CallbackContext callbackContext) {
+        if (profilingGroup == null) {
+            return callbackContext == null ? request.getPreviousResourceState() : null;
         }
+        return ResourceModel.builder()
+                   .profilingGroupName(profilingGroup.name())
+                   .arn(profilingGroup.arn())
+                   .tags(new ArrayList<>(convertTagMapIntoSet(profilingGroup.tags())))
+                   .build();
     }
 
-    private GetPolicyResponse getExistingPolicy(AmazonWebServicesClientProxy proxy, String profilingGroupName) {
+    private static GetPolicyResponse getExistingPolicy(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient, String profilingGroupName) {
         return proxy.injectCredentialsAndInvokeV2(
             GetPolicyRequest.builder().profilingGroupName(profilingGroupName).build(),
             profilerClient::getPolicy
         );
     }
 
-    private void updateNotificationChannels(String pgName, AmazonWebServicesClientProxy proxy, List<Channel> requestedConfiguration) {
-        List<Channel> currentChannels = getExistingNotificationConfiguration(proxy, pgName).notificationConfiguration().channels();
-        updateNotificationChannels(currentChannels, requestedConfiguration, pgName, proxy);
-    }
-
-    private GetNotificationConfigurationResponse getExistingNotificationConfiguration(AmazonWebServicesClientProxy proxy, String profilingGroupName) {
+    private static GetNotificationConfigurationResponse getExistingNotificationConfiguration(AmazonWebServicesClientProxy proxy, CodeGuruProfilerClient profilerClient,
+                                                                                             String profilingGroupName) {
         return proxy.injectCredentialsAndInvokeV2(GetNotificationConfigurationRequest.builder()
                         .profilingGroupName(profilingGroupName)
                         .build(),
                 profilerClient::getNotificationConfiguration);
     }
 
-    // Generate the change-set and add / delete notification channel based on change-set
-    private void updateNotificationChannels(List<Channel> currentChannels, List<Channel> requestedConfiguration, String pgName, AmazonWebServicesClientProxy proxy) {
-        Map<String, Channel> currentChannelsMap = currentChannels.stream().collect(Collectors.toMap(Channel::uri, Function.identity()));
-        Map<String, Channel> requestedConfigurationMap = requestedConfiguration.stream().collect(Collectors.toMap(Channel::uri, Function.identity()));
-
-        for (Channel currentChannel : currentChannels) {
-            if (!requestedConfigurationMap.containsKey(currentChannel.uri())) {
-                // Can assert that channel.id() exists here, since this is from an existingChannel, which is fetched via the GetNotificationConfiguration, which has the id attached
-                NotificationChannelHelper.deleteNotificationChannel(pgName, currentChannel.id(), proxy, profilerClient);
-            } else {
-                // check if there is an updated id, and if so then re-add the channel with the new id, else use the existing channel
-                Channel requestedChannel = requestedConfigurationMap.get(currentChannel.uri());
-                if (requestedChannel.id() != null && !currentChannel.id().equals(requestedChannel.id())) {
-                    NotificationChannelHelper.updateChannelId(pgName, currentChannel.id(), requestedChannel, proxy, profilerClient);
-                    // Remove to avoid unnecessary iterations below
-                    requestedConfiguration.remove(requestedChannel);
-                }
-            }
-        }
-
-        for (Channel channel : requestedConfiguration) {
-            if (!currentChannelsMap.containsKey(channel.uri())) {
-                NotificationChannelHelper.addChannelNotification(pgName, channel, proxy, profilerClient);
-            }
-        }
-    }
-
-    private void putAgentPermissions(AmazonWebServicesClientProxy proxy,
-                                     String profilingGroupName,
-                                     List<String> principals,
-                                     String revisionId) {
-        PutPermissionRequest putPermissionRequest = PutPermissionRequest.builder()
-                                                        .profilingGroupName(profilingGroupName)
-                                                        .actionGroup(ActionGroup.AGENT_PERMISSIONS)
-                                                        .principals(principals)
-                                                        .revisionId(revisionId)
-                                                        .build();
-
-        proxy.injectCredentialsAndInvokeV2(putPermissionRequest, profilerClient::putPermission);
-    }
-
-    private void removeAgentPermission(AmazonWebServicesClientProxy proxy,
-                                       String profilingGroupName,
-                                       String revisionId) {
-        RemovePermissionRequest removePermissionRequest = RemovePermissionRequest.builder()
-                                                              .profilingGroupName(profilingGroupName)
-                                                              .actionGroup(ActionGroup.AGENT_PERMISSIONS)
-                                                              .revisionId(revisionId)
-                                                              .build();
-
-        proxy.injectCredentialsAndInvokeV2(removePermissionRequest, profilerClient::removePermission);
-    }
-
     private static Optional<List<String>> principalsForAgentPermissionsFrom(final ResourceModel model) {
         if (model.getAgentPermissions() == null) {
             return Optional.empty();
@@ -220,6 +236,7 @@ public class UpdateHandler extends BaseHandler<CallbackContext> {
         return Optional.of(model.getAgentPermissions().getPrincipals());
     }
 
+    // Only for a description without an ARN, the ARN the service describes is the one to tag.
     private static String getResourceArnFrom(final ResourceHandlerRequest<ResourceModel> request) {
         ResourceModel model = request.getDesiredResourceState();
         if (model.getArn() == null) {
@@ -0,0 +1,244 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.awssdk.services.codeguruprofiler.model.ActionGroup;
+import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
+import software.amazon.awssdk.services.codeguruprofiler.model.ConflictException;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionRequest;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+
+/**
+ * The mutations an update needs to bring a profiling group from its current state to the desired one.
+ *
+ * A plan is built from reads only, so it can be inspected, logged or thrown away (a dry run) before anything is
+ * changed. Mutations that would leave the profiling group as it is, like putting the principals it already has,
+ * are never planned.
+ */
+final class UpdatePlan {
+    // Concurrent stack updates of a shared profiling group race on its policy, a few rounds are enough to settle them.
+    static final int MAX_AGENT_PERMISSIONS_ATTEMPTS = 3;
+    private static final long AGENT_PERMISSIONS_BACKOFF_BASE_MILLIS = 50;
+
+    private final String profilingGroupName;
+    private final List<Change> changes;
+
+    private UpdatePlan(final String profilingGroupName, final List<Change> changes) {
+        this.profilingGroupName = profilingGroupName;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * @param awsAccountId account of the profiling group, with the region it scopes the cached policy.
+     * @param region region of the profiling group.
+     * @param desiredPrincipals principals the agent permissions should grant, empty to remove the agent permissions.
+     * @param currentPolicy response of GetPolicy for the profiling group.
+     * @param desiredChannels requested anomaly detection channels, empty to leave the channels alone.
+     * @param currentChannels channels currently configured, only looked at when channels are requested.
+     */
+    static UpdatePlan plan(final String awsAccountId,
+                           final String region,
+                           final String profilingGroupName,
+                           final Optional<List<String>> desiredPrincipals,
+                           final GetPolicyResponse currentPolicy,
+                           final Optional<List<Channel>> desiredChannels,
+                           final List<Channel> currentChannels) {
+        final List<Change> changes = new ArrayList<>();
+        planAgentPermissions(new PolicyScope(awsAccountId, region, profilingGroupName), desiredPrincipals, currentPolicy, changes);
+        desiredChannels.ifPresent(requested -> planNotificationChannels(profilingGroupName, currentChannels, requested, changes));
+        return new UpdatePlan(profilingGroupName, changes);
+    }
+
+    private static void planAgentPermissions(final PolicyScope scope, final Optional<List<String>> desiredPrincipals,
+                                             final GetPolicyResponse currentPolicy, final List<Change> changes) {
+        if (!needsAgentPermissionsChange(scope, desiredPrincipals, currentPolicy)) {
+            return;
+        }
+        changes.add(new Change(desiredPrincipals.map(principals -> "PutPermission " + principals).orElse("RemovePermission"),
+            (proxy, client) -> changeAgentPermissions(scope, desiredPrincipals, currentPolicy, proxy, client)));
+    }
+
+    private static boolean needsAgentPermissionsChange(final PolicyScope scope, final Optional<List<String>> desiredPrincipals,
+                                                       final GetPolicyResponse currentPolicy) {
+        if (desiredPrincipals.isPresent()) {
+            return currentPolicy.policy() == null || !grantsExactly(scope, currentPolicy, desiredPrincipals.get());
+        }
+        return currentPolicy.policy() != null;
+    }
+
+    /**
+     * Compare and swap on the policy revision: when another writer changed the policy since it was read, the call fails
+     * with a ConflictException, and the policy is read again to retry the change against the new revision, if it is
+     * still needed at all. The conflicts show up in the Conflicts metric of PutPermission and RemovePermission.
+     */
+    private static void changeAgentPermissions(final PolicyScope scope, final Optional<List<String>> desiredPrincipals,
+                                               final GetPolicyResponse readPolicy, final AmazonWebServicesClientProxy proxy,
+                                               final CodeGuruProfilerClient client) {
+        final String profilingGroupName = scope.profilingGroupName;
+        GetPolicyResponse currentPolicy = readPolicy;
+        for (int attempt = 1; ; attempt++) {
+            final String revisionId = currentPolicy.revisionId();
+            try {
+                changePolicy(scope, () -> {
+                    if (desiredPrincipals.isPresent()) {
+                        proxy.injectCredentialsAndInvokeV2(
+                            PutPermissionRequest.builder()
+                                .profilingGroupName(profilingGroupName)
+                                .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                                .principals(desiredPrincipals.get())
+                                .revisionId(revisionId)
+                                .build(),
+                            client::putPermission);
+                    } else {
+                        proxy.injectCredentialsAndInvokeV2(
+                            RemovePermissionRequest.builder()
+                                .profilingGroupName(profilingGroupName)
+                                .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                                .revisionId(revisionId)
+                                .build(),
+                            client::removePermission);
+                    }
+                });
+                return;
+            } catch (ConflictException e) {
+                if (attempt >= MAX_AGENT_PERMISSIONS_ATTEMPTS) {
+                    throw e;
+                }
+                backOff(attempt, e);
+                currentPolicy = proxy.injectCredentialsAndInvokeV2(
+                    GetPolicyRequest.builder().profilingGroupName(profilingGroupName).build(), client::getPolicy);
+                if (!needsAgentPermissionsChange(scope, desiredPrincipals, currentPolicy)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Full jitter, so that the writers racing on the same policy do not come back to it at the same time.
+    private static void backOff(final int attempt, final ConflictException cause) {
+        final long ceiling = AGENT_PERMISSIONS_BACKOFF_BASE_MILLIS << attempt;
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    // Invalidated even when the call fails: a timed out call may still have changed the policy.
+    private static void changePolicy(final PolicyScope scope, final Runnable policyMutation) {
+        try {
+            policyMutation.run();
+        } finally {
+            AgentPermissionHelper.invalidateCachedPolicy(scope.awsAccountId, scope.region, scope.profilingGroupName);
+        }
+    }
+
+    // A policy we cannot read is treated as different, putting the permissions again is always safe.
+    private static boolean grantsExactly(final PolicyScope scope, final GetPolicyResponse policy, final List<String> principals) {
+        return AgentPermissionHelper.tryPrincipalsFrom(scope.awsAccountId, scope.region, scope.profilingGroupName, policy)
+                   .map(current -> new HashSet<>(current).equals(new HashSet<>(principals)))
+                   .orElse(false);
+    }
+
+    private static void planNotificationChannels(final String pgName, final List<Channel> currentChannels,
+                                                 final List<Channel> requestedChannels, final List<Change> changes) {
+        final Map<String, Channel> currentChannelsMap = currentChannels.stream().collect(Collectors.toMap(Channel::uri, Function.identity()));
+        final Map<String, Channel> requestedChannelsMap = requestedChannels.stream().collect(Collectors.toMap(Channel::uri, Function.identity()));
+        final List<String> channelIdsToRemove = new ArrayList<>();
+        final List<Channel> channelsToAdd = new ArrayList<>();
+
+        for (Channel currentChannel : currentChannels) {
+            final Channel requestedChannel = requestedChannelsMap.get(currentChannel.uri());
+            if (requestedChannel == null) {
+                // Can assert that channel.id() exists here, since this is from an existingChannel, which is fetched via the GetNotificationConfiguration, which has the id attached
+                channelIdsToRemove.add(currentChannel.id());
+            } else if (requestedChannel.id() != null && !currentChannel.id().equals(requestedChannel.id())) {
+                // Since we don't have a PUT operation, a new id for the same uri is a removal followed by an addition
+                channelIdsToRemove.add(currentChannel.id());
+                channelsToAdd.add(requestedChannel);
+            }
+        }
+
+        for (Channel requestedChannel : requestedChannels) {
+            if (!currentChannelsMap.containsKey(requestedChannel.uri())) {
+                channelsToAdd.add(requestedChannel);
+            }
+        }
+
+        // Removals go first: a channel re-added with a new id must be gone before it can be added again.
+        if (!channelIdsToRemove.isEmpty()) {
+            changes.add(new Change("RemoveNotificationChannel " + channelIdsToRemove,
+                (proxy, client) -> NotificationChannelHelper.deleteNotificationChannels(pgName, channelIdsToRemove, proxy, client)));
+        }
+        if (!channelsToAdd.isEmpty()) {
+            changes.add(new Change("AddNotificationChannels " + channelsToAdd.stream().map(Channel::uri).collect(Collectors.toList()),
+                (proxy, client) -> NotificationChannelHelper.addConvertedChannelNotifications(pgName, channelsToAdd, proxy, client)));
+        }
+    }
+
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return a human readable line per planned mutation, in the order they will be made.
+     */
+    List<String> describe() {
+        return changes.stream().map(Change::getDescription).collect(Collectors.toList());
+    }
+
+    void execute(final AmazonWebServicesClientProxy proxy, final CodeGuruProfilerClient profilerClient) {
+        changes.forEach(change -> change.apply(proxy, profilerClient));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UpdatePlan for [%s]: %s", profilingGroupName, isEmpty() ? "no changes" : describe());
+    }
+
+    // The profiling group whose policy the plan reads and changes, as the policy cache knows it.
+    private static final class PolicyScope {
+        private final String awsAccountId;
+        private final String region;
+        private final String profilingGroupName;
+
+        private PolicyScope(final String awsAccountId, final String region, final String profilingGroupName) {
+            this.awsAccountId = awsAccountId;
+            this.region = region;
+            this.profilingGroupName = profilingGroupName;
+        }
+    }
+
+    private static final class Change {
+        private final String description;
+        private final BiConsumer<AmazonWebServicesClientProxy, CodeGuruProfilerClient> mutation;
+
+        private Change(final String description, final BiConsumer<AmazonWebServicesClientProxy, CodeGuruProfilerClient> mutation) {
+            this.description = description;
+            this.mutation = mutation;
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        void apply(final AmazonWebServicesClientProxy proxy, final CodeGuruProfilerClient profilerClient) {
+            mutation.accept(proxy, profilerClient);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class AdaptiveRateLimiterTest {
+    private static final String OPERATION = "GetPolicy";
+
+    private final AtomicLong nanoClock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    private final AdaptiveRateLimiter subject = new AdaptiveRateLimiter(nanoClock::get, sleeps::add);
+
+    @Nested
+    class DescribeAcquire {
+        @Test
+        public void itDoesNotPaceCallsBeforeTheFirstThrottle() {
+            for (int i = 0; i < 10 * AdaptiveRateLimiter.MAX_RATE; i++) {
+                subject.acquire(OPERATION, NO_LIMIT);
+            }
+
+            assertThat(sleeps).isEmpty();
+        }
+
+        @Test
+        public void itPacesCallsOnceThrottled() {
+            subject.onThrottled(OPERATION);
+
+            subject.acquire(OPERATION, NO_LIMIT);
+            subject.acquire(OPERATION, NO_LIMIT);
+
+            // At 25 calls per second the first call waits 40ms and the second 80ms.
+            assertThat(sleeps).containsExactly(TimeUnit.MILLISECONDS.toNanos(40), TimeUnit.MILLISECONDS.toNanos(80));
+        }
+
+        @Test
+        public void itRefillsTheBucketOverTime() {
+            subject.onThrottled(OPERATION);
+            nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+            for (int i = 0; i < AdaptiveRateLimiter.MAX_RATE / 2; i++) {
+                subject.acquire(OPERATION, NO_LIMIT);
+            }
+
+            assertThat(sleeps).isEmpty();
+        }
+
+        @Test
+        public void itKeepsOneBucketPerOperation() {
+            subject.onThrottled(OPERATION);
+
+            subject.acquire("DescribeProfilingGroup", NO_LIMIT);
+
+            assertThat(sleeps).isEmpty();
+        }
+
+        @Test
+        public void itKeepsOneBucketPerAccount() {
+            subject.onThrottled(AdaptiveRateLimiter.bucketKey("111111111111", OPERATION));
+
+            subject.acquire(AdaptiveRateLimiter.bucketKey("222222222222", OPERATION), NO_LIMIT);
+
+            assertThat(sleeps).isEmpty();
+        }
+
+        @Test
+        public void itFailsFastRatherThanWaitLongerThanTheTimeLeft() {
+            throttleDownToTheMinimumRate();
+
+            // At half a call per second the next call is two seconds away.
+            assertThrows(ThrottlingException.class, () -> subject.acquire(OPERATION, TimeUnit.SECONDS.toNanos(1)));
+            assertThat(sleeps).isEmpty();
+
+            subject.acquire(OPERATION, TimeUnit.SECONDS.toNanos(3));
+            assertThat(sleeps).containsExactly(TimeUnit.SECONDS.toNanos(2));
+        }
+    }
+
+    @Nested
+    class DescribeAdaptation {
+        @Test
+        public void itHalvesTheRateWhenThrottled() {
+            subject.onThrottled(OPERATION);
+
+            assertThat(subject.currentRates()).containsEntry(OPERATION, AdaptiveRateLimiter.MAX_RATE / 2);
+        }
+
+        @Test
+        public void itStopsHandingOutTheBurstWhenThrottled() {
+            subject.onThrottled(OPERATION);
+
+            subject.acquire(OPERATION, NO_LIMIT);
+
+            assertThat(sleeps).hasSize(1);
+        }
+
+        @Test
+        public void itOnlyDecreasesOncePerCoolDown() {
+            subject.onThrottled(OPERATION);
+            subject.onThrottled(OPERATION);
+
+            assertThat(subject.currentRates()).containsEntry(OPERATION, AdaptiveRateLimiter.MAX_RATE / 2);
+
+            nanoClock.addAndGet(AdaptiveRateLimiter.DECREASE_COOL_DOWN_NANOS);
+            subject.onThrottled(OPERATION);
+
+            assertThat(subject.currentRates()).containsEntry(OPERATION, AdaptiveRateLimiter.MAX_RATE / 4);
+        }
+
+        @Test
+        public void itNeverGoesBelowTheMinimumRate() {
+            throttleDownToTheMinimumRate();
+
+            assertThat(subject.currentRates()).containsEntry(OPERATION, AdaptiveRateLimiter.MIN_RATE);
+        }
+
+        @Test
+        public void itIncreasesTheRateAdditivelyOnSuccess() {
+            subject.onThrottled(OPERATION);
+            subject.onSuccess(OPERATION);
+            subject.onSuccess(OPERATION);
+
+            assertThat(subject.currentRates().get(OPERATION))
+                .isCloseTo(AdaptiveRateLimiter.MAX_RATE / 2 + 2 * AdaptiveRateLimiter.ADDITIVE_INCREASE, within(1e-9));
+        }
+
+        @Test
+        public void itNeverGoesAboveTheMaximumRate() {
+            subject.onThrottled(OPERATION);
+            for (int i = 0; i < 1000; i++) {
+                subject.onSuccess(OPERATION);
+            }
+
+            assertThat(subject.currentRates()).containsEntry(OPERATION, AdaptiveRateLimiter.MAX_RATE);
+        }
+
+        @Test
+        public void itStopsPacingOnceBackAtTheMaximumRate() {
+            subject.onThrottled(OPERATION);
+            for (int i = 0; i < 1000; i++) {
+                subject.onSuccess(OPERATION);
+            }
+
+            for (int i = 0; i < 10 * AdaptiveRateLimiter.MAX_RATE; i++) {
+                subject.acquire(OPERATION, NO_LIMIT);
+            }
+
+            assertThat(sleeps).isEmpty();
+        }
+    }
+
+    @Nested
+    class DescribeInterceptor {
+        private final ExecutionAttributes executionAttributes =
+            new ExecutionAttributes().putAttribute(SdkExecutionAttribute.OPERATION_NAME, OPERATION);
+
+        @Test
+        public void itTakesATokenBeforeEachAttemptOnceThrottled() {
+            subject.afterTransmission(afterTransmission(429), executionAttributes);
+
+            subject.beforeTransmission(beforeTransmission(GetPolicyRequest.builder().build()), executionAttributes);
+
+            assertThat(sleeps).hasSize(1);
+        }
+
+        @Test
+        public void itSlowsDownOnThrottlingResponses() {
+            subject.afterTransmission(afterTransmission(429), executionAttributes);
+
+            assertThat(subject.currentRates()).containsEntry(OPERATION, AdaptiveRateLimiter.MAX_RATE / 2);
+        }
+
+        @Test
+        public void itSpeedsUpOnSuccessfulResponses() {
+            subject.afterTransmission(afterTransmission(429), executionAttributes);
+            subject.afterTransmission(afterTransmission(200), executionAttributes);
+
+            assertThat(subject.currentRates().get(OPERATION)).isGreaterThan(AdaptiveRateLimiter.MAX_RATE / 2);
+        }
+
+        @Test
+        public void itKeysTheBucketByTheAccountTheCallIsScopedTo() {
+            executionAttributes.putAttribute(CallScope.AWS_ACCOUNT_ID, "111111111111");
+
+            subject.afterTransmission(afterTransmission(429), executionAttributes);
+
+            assertThat(subject.currentRates()).containsOnlyKeys("111111111111/" + OPERATION);
+        }
+
+        @Test
+        public void itFailsFastWhenTheWaitWouldOutlastTheAttemptTimeout() {
+            throttleDownToTheMinimumRate();
+            final GetPolicyRequest request = GetPolicyRequest.builder()
+                .overrideConfiguration(o -> o.apiCallAttemptTimeout(Duration.ofSeconds(1)))
+                .build();
+
+            assertThrows(ThrottlingException.class, () -> subject.beforeTransmission(beforeTransmission(request), executionAttributes));
+        }
+
+        @Test
+        public void itFailsFastWhenTheWaitWouldOutlastTheCall() {
+            subject.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+            // Twenty seconds into the call, one second left of it.
+            throttleDownToTheMinimumRate();
+            final GetPolicyRequest request = GetPolicyRequest.builder()
+                .overrideConfiguration(o -> o.apiCallAttemptTimeout(Duration.ofSeconds(5)).apiCallTimeout(Duration.ofSeconds(21)))
+                .build();
+
+            assertThrows(ThrottlingException.class, () -> subject.beforeTransmission(beforeTransmission(request), executionAttributes));
+        }
+
+        @Test
+        public void itLeavesTheRateAloneOnOtherErrors() {
+            subject.afterTransmission(afterTransmission(500), executionAttributes);
+
+            assertThat(subject.currentRates()).isEmpty();
+        }
+
+        @Test
+        public void itFallsBackToASharedBucketWithoutOperationName() {
+            subject.afterTransmission(afterTransmission(429), new ExecutionAttributes());
+
+            assertThat(subject.currentRates()).containsOnlyKeys("Unknown");
+        }
+
+        private Context.BeforeTransmission beforeTransmission(SdkRequest request) {
+            Context.BeforeTransmission context = mock(Context.BeforeTransmission.class);
+            doReturn(request).when(context).request();
+            return context;
+        }
+
+        private Context.AfterTransmission afterTransmission(int statusCode) {
+            Context.AfterTransmission context = mock(Context.AfterTransmission.class);
+            doReturn(GetPolicyRequest.builder().build()).when(context).request();
+            doReturn(SdkHttpResponse.builder().statusCode(statusCode).build()).when(context).httpResponse();
+            return context;
+        }
+    }
+
+    @Nested
+    class DescribeCurrentRatesOfAnAccount {
+        @Test
+        public void itOnlyReportsTheOperationsOfTheAccount() {
+            subject.onThrottled(AdaptiveRateLimiter.bucketKey("111111111111", OPERATION));
+            subject.onThrottled(AdaptiveRateLimiter.bucketKey("222222222222", "ListProfilingGroups"));
+            subject.onThrottled(OPERATION);
+
+            assertThat(subject.currentRates("111111111111")).containsOnly(entry(OPERATION, AdaptiveRateLimiter.MAX_RATE / 2));
+        }
+
+        @Test
+        public void itOnlyReportsTheOperationsOfNoAccountWithoutOne() {
+            subject.onThrottled(AdaptiveRateLimiter.bucketKey("111111111111", OPERATION));
+            subject.onThrottled(OPERATION);
+
+            assertThat(subject.currentRates(null)).containsOnlyKeys(OPERATION);
+        }
+    }
+
+    private void throttleDownToTheMinimumRate() {
+        for (int i = 0; i < 20; i++) {
+            nanoClock.addAndGet(AdaptiveRateLimiter.DECREASE_COOL_DOWN_NANOS);
+            subject.onThrottled(OPERATION);
+        }
+    }
+}
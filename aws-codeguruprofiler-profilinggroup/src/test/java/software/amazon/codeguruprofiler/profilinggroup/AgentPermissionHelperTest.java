@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
@@ -23,6 +24,10 @@ public class AgentPermissionHelperTest {
     @Mock
     private final AmazonWebServicesClientProxy proxy = mock(AmazonWebServicesClientProxy.class);
 
+    private final CodeGuruProfilerClient profilerClient = mock(CodeGuruProfilerClient.class);
+
+    private final String awsAccountId = "012345678901";
+    private final String region = "us-east-1";
     private final String pgName = "BlackWidow-2020";
     private final String testPrincipalArn1 = "arn:aws:iam:012345678901:user/User1";
     private final String testPrincipalArn2 = "arn:aws:iam:012345678901:user/User2";
@@ -53,6 +58,39 @@ public class AgentPermissionHelperTest {
             assertThat(principalsFromPolicy).containsExactly(testPrincipalArn1, testPrincipalArn2);
         }
 
+        @Test
+        public void itParsesTheSameRevisionOnlyOnce() {
+            List<String> first = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, profilerClient, awsAccountId, region, pgName);
+            List<String> second = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, profilerClient, awsAccountId, region, pgName);
+
+            assertThat(second).isSameAs(first);
+        }
+
+        @Test
+        public void itParsesThePolicyAgainAfterInvalidation() {
+            List<String> first = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, profilerClient, awsAccountId, region, pgName);
+            AgentPermissionHelper.invalidateCachedPolicy(awsAccountId, region, pgName);
+            List<String> second = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, profilerClient, awsAccountId, region, pgName);
+
+            assertThat(second).isNotSameAs(first).isEqualTo(first);
+        }
+
+        @Test
+        public void itDoesNotShareThePolicyOfAnotherAccount() {
+            List<String> first = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, profilerClient, awsAccountId, region, pgName);
+            List<String> second = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, profilerClient, "210987654321", region, pgName);
+
+            assertThat(second).isNotSameAs(first).isEqualTo(first);
+        }
+
+        @Test
+        public void itParsesThePolicyEveryTimeWithoutAccountAndRegion() {
+            List<String> first = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, pgName);
+            List<String> second = AgentPermissionHelper.getPrincipalsFromPolicy(proxy, pgName);
+
+            assertThat(second).isNotSameAs(first).isEqualTo(first);
+        }
+
         @Nested
         class WhenThereIsOnlyOnePrincipal {
             String testPolicyForOnePrincipalJson = createStandardPolicyJson("\""+ testPrincipalArn1 +"\"");
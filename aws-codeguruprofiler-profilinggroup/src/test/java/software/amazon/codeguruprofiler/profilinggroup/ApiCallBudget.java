@@ -0,0 +1,70 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.mockito.invocation.Invocation;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mockingDetails;
+
+/**
+ * The most service calls of each operation a handler invocation may make, checked against what went through a mocked
+ * proxy, so a change that adds a round trip fails the build instead of slowing every stack operation down.
+ *
+ * Calls through the proxy are named after their request, DescribeProfilingGroupRequest counting as
+ * DescribeProfilingGroup. Helpers that make their calls out of sight of the proxy, like a mocked
+ * GetPrincipalsFunction, are counted with {@link #countingCallsTo}. An operation that is not allowed may not be called
+ * at all.
+ */
+final class ApiCallBudget {
+    private final Map<String, Integer> limits = new TreeMap<>();
+    private final Map<Object, String> helpers = new IdentityHashMap<>();
+
+    private ApiCallBudget() {
+    }
+
+    static ApiCallBudget allowing(final String operation, final int calls) {
+        return new ApiCallBudget().and(operation, calls);
+    }
+
+    ApiCallBudget and(final String operation, final int calls) {
+        limits.put(operation, calls);
+        return this;
+    }
+
+    ApiCallBudget countingCallsTo(final Object mockedHelper, final String operation) {
+        helpers.put(mockedHelper, operation);
+        return this;
+    }
+
+    void assertRespectedBy(final AmazonWebServicesClientProxy proxy) {
+        final Map<String, Integer> calls = callsThrough(proxy);
+        helpers.forEach((helper, operation) -> calls.merge(operation, mockingDetails(helper).getInvocations().size(), Integer::sum));
+
+        calls.forEach((operation, count) -> assertThat(count)
+            .as("%s calls, made %s", operation, calls)
+            .isLessThanOrEqualTo(limits.getOrDefault(operation, 0)));
+    }
+
+    /**
+     * @return the number of calls of each operation made through the mocked proxy so far.
+     */
+    static Map<String, Integer> callsThrough(final AmazonWebServicesClientProxy proxy) {
+        final Map<String, Integer> calls = new TreeMap<>();
+        for (Invocation invocation : mockingDetails(proxy).getInvocations()) {
+            if (invocation.getMethod().getName().startsWith("injectCredentialsAndInvoke")
+                && invocation.getArguments().length > 0 && invocation.getArguments()[0] instanceof SdkRequest) {
+                calls.merge(operationOf((SdkRequest) invocation.getArguments()[0]), 1, Integer::sum);
+            }
+        }
+        return calls;
+    }
+
+    private static String operationOf(final SdkRequest request) {
+        return request.getClass().getSimpleName().replaceFirst("Request$", "");
+    }
+}
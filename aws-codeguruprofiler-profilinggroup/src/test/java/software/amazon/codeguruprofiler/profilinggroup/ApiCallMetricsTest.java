@@ -0,0 +1,229 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class ApiCallMetricsTest {
+    private static final String OPERATION = "GetPolicy";
+
+    private final AtomicLong nanoClock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    private final ApiCallMetrics subject = new ApiCallMetrics(nanoClock::get);
+
+    private final ExecutionAttributes executionAttributes =
+        new ExecutionAttributes().putAttribute(SdkExecutionAttribute.OPERATION_NAME, OPERATION);
+
+    @Nested
+    class DescribeInterceptor {
+        @Test
+        public void itRecordsTheLatencyOfASuccessfulCall() {
+            subject.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+            attempt(200, 5);
+            subject.afterExecution(mock(Context.AfterExecution.class), executionAttributes);
+
+            final ApiCallMetrics.OperationMetrics metrics = subject.drain().get(OPERATION);
+            assertThat(metrics.getCalls()).isEqualTo(1);
+            assertThat(metrics.getLatenciesNanos()).containsExactly(TimeUnit.MILLISECONDS.toNanos(5));
+            assertThat(metrics.getAttempts()).isEqualTo(1);
+            assertThat(metrics.getFailures()).isZero();
+            assertThat(metrics.getThrottles()).isZero();
+            assertThat(metrics.getBackoffNanos()).isZero();
+        }
+
+        @Test
+        public void itCountsThrottledAttemptsAndTheBackoffBetweenThem() {
+            subject.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+            attempt(429, 5);
+            nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            attempt(429, 5);
+            nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+            attempt(200, 5);
+            subject.afterExecution(mock(Context.AfterExecution.class), executionAttributes);
+
+            final ApiCallMetrics.OperationMetrics metrics = subject.drain().get(OPERATION);
+            assertThat(metrics.getAttempts()).isEqualTo(3);
+            assertThat(metrics.getThrottles()).isEqualTo(2);
+            assertThat(metrics.getBackoffNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+            assertThat(metrics.getLatenciesNanos()).containsExactly(TimeUnit.MILLISECONDS.toNanos(315));
+        }
+
+        @Test
+        public void itCountsConflictingAttempts() {
+            subject.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+            attempt(409, 5);
+            subject.onExecutionFailure(mock(Context.FailedExecution.class), executionAttributes);
+
+            final ApiCallMetrics.OperationMetrics metrics = subject.drain().get(OPERATION);
+            assertThat(metrics.getConflicts()).isEqualTo(1);
+            assertThat(metrics.getThrottles()).isZero();
+            assertThat(metrics.getFailures()).isEqualTo(1);
+        }
+
+        @Test
+        public void itCountsFailedCalls() {
+            subject.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+            attempt(500, 5);
+            subject.onExecutionFailure(mock(Context.FailedExecution.class), executionAttributes);
+
+            final ApiCallMetrics.OperationMetrics metrics = subject.drain().get(OPERATION);
+            assertThat(metrics.getCalls()).isEqualTo(1);
+            assertThat(metrics.getFailures()).isEqualTo(1);
+        }
+
+        @Test
+        public void itIgnoresCallsItDidNotSeeStart() {
+            subject.afterExecution(mock(Context.AfterExecution.class), executionAttributes);
+
+            assertThat(subject.drain()).isEmpty();
+        }
+
+        @Test
+        public void itFallsBackToASharedOperationWithoutOperationName() {
+            final ExecutionAttributes withoutOperationName = new ExecutionAttributes();
+            subject.beforeExecution(mock(Context.BeforeExecution.class), withoutOperationName);
+            subject.afterExecution(mock(Context.AfterExecution.class), withoutOperationName);
+
+            assertThat(subject.drain()).containsOnlyKeys("Unknown");
+        }
+
+        @Test
+        public void itStartsAfreshAfterADrain() {
+            subject.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+            subject.afterExecution(mock(Context.AfterExecution.class), executionAttributes);
+
+            assertThat(subject.drain()).containsOnlyKeys(OPERATION);
+            assertThat(subject.drain()).isEmpty();
+        }
+
+        private void attempt(final int statusCode, final long durationMillis) {
+            subject.beforeTransmission(mock(Context.BeforeTransmission.class), executionAttributes);
+            nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(durationMillis));
+            final Context.AfterTransmission context = mock(Context.AfterTransmission.class);
+            doReturn(SdkHttpResponse.builder().statusCode(statusCode).build()).when(context).httpResponse();
+            subject.afterTransmission(context, executionAttributes);
+        }
+    }
+
+    @Nested
+    class DescribeEmbeddedMetricFormat {
+        private static final long TIMESTAMP = 1_600_000_000_000L;
+        private static final String ACCOUNT = "111111111111";
+        private final Map<String, Double> noRates = Collections.emptyMap();
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        @Test
+        public void itWritesOneLineWithEveryMetricPerOperation() throws IOException {
+            final List<String> lines = EmbeddedMetricFormat.format("Read", ACCOUNT, calls(2), noRates, TIMESTAMP);
+
+            assertThat(lines).hasSize(1);
+            final JsonNode line = objectMapper.readTree(lines.get(0));
+            assertThat(line.get("Handler").asText()).isEqualTo("Read");
+            assertThat(line.get("Operation").asText()).isEqualTo(OPERATION);
+            assertThat(line.get("AwsAccountId").asText()).isEqualTo(ACCOUNT);
+            assertThat(line.has("RequestRate")).isFalse();
+            assertThat(line.get("Calls").asLong()).isEqualTo(2);
+            assertThat(line.get("Failures").asLong()).isZero();
+            assertThat(line.get("Attempts").asLong()).isEqualTo(2);
+            assertThat(line.get("Throttles").asLong()).isZero();
+            assertThat(line.get("Conflicts").asLong()).isZero();
+            assertThat(line.get("BackoffTime").asDouble()).isZero();
+            assertThat(line.get("Latency")).hasSize(2);
+            assertThat(line.get("Latency").get(0).asDouble()).isEqualTo(1.0);
+        }
+
+        @Test
+        public void itDeclaresTheMetricsInTheDirective() throws IOException {
+            final JsonNode directive = objectMapper.readTree(EmbeddedMetricFormat.format("Read", ACCOUNT, calls(1), noRates, TIMESTAMP).get(0)).get("_aws");
+
+            assertThat(directive.get("Timestamp").asLong()).isEqualTo(TIMESTAMP);
+            final JsonNode metrics = directive.get("CloudWatchMetrics").get(0);
+            assertThat(metrics.get("Namespace").asText()).isEqualTo(EmbeddedMetricFormat.NAMESPACE);
+            assertThat(metrics.get("Dimensions").get(0).get(0).asText()).isEqualTo("Handler");
+            assertThat(metrics.get("Dimensions").get(0).get(1).asText()).isEqualTo("Operation");
+            assertThat(metrics.get("Metrics")).hasSize(7);
+            assertThat(metrics.get("Metrics").get(0).get("Name").asText()).isEqualTo("Latency");
+            assertThat(metrics.get("Metrics").get(0).get("Unit").asText()).isEqualTo("Milliseconds");
+        }
+
+        @Test
+        public void itAddsTheRequestRateOfTheOperationForTheAccount() throws IOException {
+            final JsonNode line = objectMapper.readTree(EmbeddedMetricFormat.format("Read", ACCOUNT, calls(1),
+                Collections.singletonMap(OPERATION, AdaptiveRateLimiter.MAX_RATE / 2), TIMESTAMP).get(0));
+
+            assertThat(line.get("RequestRate").asDouble()).isEqualTo(AdaptiveRateLimiter.MAX_RATE / 2);
+            final JsonNode metrics = line.get("_aws").get("CloudWatchMetrics").get(0);
+            assertThat(metrics.get("Metrics")).hasSize(8);
+            assertThat(metrics.get("Metrics").get(7).get("Name").asText()).isEqualTo("RequestRate");
+            assertThat(metrics.get("Metrics").get(7).get("Unit").asText()).isEqualTo("Count/Second");
+            assertThat(metrics.get("Dimensions").get(0)).hasSize(2);
+        }
+
+        @Test
+        public void itWritesTheConnectionPoolFiguresOnALineDimensionedByHandlerAlone() throws IOException {
+            final ConnectionPoolStatistics statistics = ConnectionPoolStatistics.builder()
+                .apiCalls(3)
+                .maxConcurrency(50)
+                .availableConcurrency(2)
+                .leasedConcurrency(1)
+                .pendingConcurrencyAcquires(0)
+                .build();
+
+            final JsonNode line = objectMapper.readTree(EmbeddedMetricFormat.formatConnectionPool("Read", statistics, TIMESTAMP));
+
+            assertThat(line.get("Handler").asText()).isEqualTo("Read");
+            assertThat(line.get("MaxConcurrency").asLong()).isEqualTo(50);
+            assertThat(line.get("AvailableConcurrency").asLong()).isEqualTo(2);
+            assertThat(line.get("LeasedConcurrency").asLong()).isEqualTo(1);
+            assertThat(line.get("PendingConcurrencyAcquires").asLong()).isZero();
+            final JsonNode metrics = line.get("_aws").get("CloudWatchMetrics").get(0);
+            assertThat(metrics.get("Dimensions").get(0)).hasSize(1);
+            assertThat(metrics.get("Dimensions").get(0).get(0).asText()).isEqualTo("Handler");
+            assertThat(metrics.get("Metrics")).hasSize(4);
+        }
+
+        @Test
+        public void itSpillsLatenciesOverExtraLinesPastTheLimitPerMetric() throws IOException {
+            final List<String> lines = EmbeddedMetricFormat.format("List", ACCOUNT, calls(EmbeddedMetricFormat.MAX_VALUES_PER_METRIC + 1), noRates, TIMESTAMP);
+
+            assertThat(lines).hasSize(2);
+            assertThat(objectMapper.readTree(lines.get(0)).get("Latency")).hasSize(EmbeddedMetricFormat.MAX_VALUES_PER_METRIC);
+            final JsonNode overflow = objectMapper.readTree(lines.get(1));
+            assertThat(overflow.get("Latency")).hasSize(1);
+            assertThat(overflow.has("Calls")).isFalse();
+            assertThat(overflow.get("_aws").get("CloudWatchMetrics").get(0).get("Metrics")).hasSize(1);
+        }
+
+        @Test
+        public void itWritesNothingWithoutCalls() {
+            assertThat(EmbeddedMetricFormat.format("Read", ACCOUNT, subject.drain(), noRates, TIMESTAMP)).isEmpty();
+        }
+
+        private Map<String, ApiCallMetrics.OperationMetrics> calls(final int count) {
+            for (int i = 0; i < count; i++) {
+                subject.beforeExecution(mock(Context.BeforeExecution.class), executionAttributes);
+                subject.beforeTransmission(mock(Context.BeforeTransmission.class), executionAttributes);
+                nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+                subject.afterExecution(mock(Context.AfterExecution.class), executionAttributes);
+            }
+            return subject.drain();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class CallScopeTest {
+    private static final String ACCOUNT_ID = "123456789012";
+
+    private final CallScope subject = new CallScope();
+
+    private final ExecutionAttributes executionAttributes = new ExecutionAttributes();
+
+    private final GetPolicyRequest request = GetPolicyRequest.builder()
+        .profilingGroupName("Thor-2020")
+        .overrideConfiguration(o -> o.putHeader("x-amz-user-agent", "test").apiCallTimeout(Duration.ofSeconds(10)))
+        .build();
+
+    @Test
+    public void itPutsTheAccountInTheExecutionAttributes() {
+        beforeExecution(CallScope.scope(request, ACCOUNT_ID));
+
+        assertThat(CallScope.accountOf(executionAttributes)).isEqualTo(ACCOUNT_ID);
+        assertThat(CallScope.retryProfileOf(executionAttributes)).isNull();
+    }
+
+    @Test
+    public void itPutsTheRetryProfileOfTheCallSiteInTheExecutionAttributes() {
+        beforeExecution(CallScope.scope(request, ACCOUNT_ID, RetryProfile.COMPENSATION));
+
+        assertThat(CallScope.retryProfileOf(executionAttributes)).isEqualTo(RetryProfile.COMPENSATION);
+    }
+
+    @Test
+    public void itReplacesAnEarlierAccount() {
+        beforeExecution(CallScope.scope(CallScope.scope(request, "111111111111"), ACCOUNT_ID));
+
+        assertThat(CallScope.accountOf(executionAttributes)).isEqualTo(ACCOUNT_ID);
+    }
+
+    @Test
+    public void itKeepsTheRetryProfileWhenRescoped() {
+        beforeExecution(CallScope.scope(CallScope.scope(request, null, RetryProfile.COMPENSATION), ACCOUNT_ID));
+
+        assertThat(CallScope.accountOf(executionAttributes)).isEqualTo(ACCOUNT_ID);
+        assertThat(CallScope.retryProfileOf(executionAttributes)).isEqualTo(RetryProfile.COMPENSATION);
+    }
+
+    @Test
+    public void itLeavesAnUnscopedCallAlone() {
+        beforeExecution(request);
+
+        assertThat(CallScope.accountOf(executionAttributes)).isNull();
+        assertThat(subject.modifyRequest(modifyRequest(request), executionAttributes)).isSameAs(request);
+        assertThat(CallScope.scope(request, null)).isSameAs(request);
+    }
+
+    @Test
+    public void itDoesNotSendTheScope() {
+        final GetPolicyRequest scoped = (GetPolicyRequest) subject.modifyRequest(
+            modifyRequest(CallScope.scope(request, ACCOUNT_ID, RetryProfile.COMPENSATION)), executionAttributes);
+
+        final AwsRequestOverrideConfiguration overrideConfiguration = scoped.overrideConfiguration().get();
+        assertThat(overrideConfiguration.headers()).containsOnlyKeys("x-amz-user-agent");
+        assertThat(overrideConfiguration.apiCallTimeout()).contains(Duration.ofSeconds(10));
+        assertThat(scoped.profilingGroupName()).isEqualTo("Thor-2020");
+    }
+
+    private void beforeExecution(final SdkRequest request) {
+        final Context.BeforeExecution context = mock(Context.BeforeExecution.class);
+        doReturn(request).when(context).request();
+        subject.beforeExecution(context, executionAttributes);
+    }
+
+    private Context.ModifyRequest modifyRequest(final SdkRequest request) {
+        final Context.ModifyRequest context = mock(Context.ModifyRequest.class);
+        doReturn(request).when(context).request();
+        return context;
+    }
+}
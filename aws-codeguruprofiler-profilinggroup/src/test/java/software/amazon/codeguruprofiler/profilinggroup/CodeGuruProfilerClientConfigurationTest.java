@@ -12,6 +12,8 @@ import software.amazon.awssdk.core.retry.RetryPolicyContext;
 import software.amazon.awssdk.core.retry.conditions.RetryCondition;
 import software.amazon.awssdk.services.codeguruprofiler.model.ConflictException;
 
+import java.net.URI;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,6 +42,47 @@ public class CodeGuruProfilerClientConfigurationTest {
         }
     }
 
+    @Nested
+    class DescribeSharedClientConfiguration {
+        private final ConnectionPoolMetricPublisher metricPublisher = new ConnectionPoolMetricPublisher();
+
+        private final AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter();
+
+        private final ApiCallMetrics apiCallMetrics = new ApiCallMetrics();
+
+        @Test
+        public void itPacesCallsThroughTheRateLimiterBeforeRecordingThem() {
+            assertThat(CodeGuruProfilerClientBuilder.getClientConfiguration(metricPublisher, rateLimiter, apiCallMetrics).executionInterceptors())
+                .containsExactly(CodeGuruProfilerClientBuilder.CALL_SCOPE, CodeGuruProfilerClientBuilder.ATTEMPT_TIMEOUTS, rateLimiter, apiCallMetrics);
+        }
+
+        @Test
+        public void itKeepsTheRetryPolicy() {
+            assertThat(CodeGuruProfilerClientBuilder.getClientConfiguration(metricPublisher, rateLimiter, apiCallMetrics).retryPolicy()).isPresent();
+        }
+    }
+
+    @Nested
+    class DescribeEndpointOverride {
+        @Test
+        public void itUsesThePublicEndpointByDefault() {
+            assertThat(CodeGuruProfilerClientBuilder.getEndpointOverride(null, null)).isEmpty();
+            assertThat(CodeGuruProfilerClientBuilder.getEndpointOverride("", "")).isEmpty();
+        }
+
+        @Test
+        public void itReadsTheEnvironmentVariable() {
+            assertThat(CodeGuruProfilerClientBuilder.getEndpointOverride(null, "http://localhost:8080"))
+                .contains(URI.create("http://localhost:8080"));
+        }
+
+        @Test
+        public void itPrefersTheSystemProperty() {
+            assertThat(CodeGuruProfilerClientBuilder.getEndpointOverride("http://localhost:9090", "http://localhost:8080"))
+                .contains(URI.create("http://localhost:9090"));
+        }
+    }
+
     private RetryCondition getRetryCondition() {
         return getClientConfiguration()
                    .retryPolicy().get()
@@ -0,0 +1,84 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollector;
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class CodeGuruProfilerClientRegistryTest {
+
+    @Nested
+    class DescribeGetClient {
+        @Test
+        public void itReturnsTheSameClientEveryTime() {
+            assertThat(CodeGuruProfilerClientRegistry.getClient()).isSameAs(CodeGuruProfilerClientRegistry.getClient());
+        }
+
+        @Test
+        public void itReturnsTheOverridingClient() {
+            CodeGuruProfilerClient original = CodeGuruProfilerClientRegistry.getClient();
+            CodeGuruProfilerClient override = mock(CodeGuruProfilerClient.class);
+            try {
+                CodeGuruProfilerClientRegistry.overrideClient(override);
+
+                assertThat(CodeGuruProfilerClientRegistry.getClient()).isSameAs(override);
+            } finally {
+                CodeGuruProfilerClientRegistry.overrideClient(original);
+            }
+        }
+    }
+
+    @Nested
+    class DescribeGetRequestRates {
+        @Test
+        public void itOnlyReportsRatesWithinBounds() {
+            assertThat(CodeGuruProfilerClientRegistry.getRequestRates().values())
+                .allSatisfy(rate -> assertThat(rate).isBetween(AdaptiveRateLimiter.MIN_RATE, AdaptiveRateLimiter.MAX_RATE));
+        }
+    }
+
+    @Nested
+    class DescribeConnectionPoolMetricPublisher {
+        private final ConnectionPoolMetricPublisher publisher = new ConnectionPoolMetricPublisher();
+
+        @Test
+        public void itStartsEmpty() {
+            assertThat(publisher.statistics()).isEqualTo(ConnectionPoolStatistics.builder().build());
+        }
+
+        @Test
+        public void itRecordsTheLatestHttpClientFiguresOfAnApiCall() {
+            MetricCollector apiCall = MetricCollector.create("ApiCall");
+            MetricCollector httpClient = apiCall.createChild("ApiCallAttempt").createChild("HttpClient");
+            httpClient.reportMetric(HttpMetric.MAX_CONCURRENCY, 50);
+            httpClient.reportMetric(HttpMetric.AVAILABLE_CONCURRENCY, 2);
+            httpClient.reportMetric(HttpMetric.LEASED_CONCURRENCY, 1);
+            httpClient.reportMetric(HttpMetric.PENDING_CONCURRENCY_ACQUIRES, 0);
+
+            publisher.publish(apiCall.collect());
+
+            assertThat(publisher.statistics()).isEqualTo(
+                ConnectionPoolStatistics.builder()
+                    .apiCalls(1)
+                    .maxConcurrency(50)
+                    .availableConcurrency(2)
+                    .leasedConcurrency(1)
+                    .pendingConcurrencyAcquires(0)
+                    .build()
+            );
+        }
+
+        @Test
+        public void itCountsApiCallsWithoutHttpFigures() {
+            publisher.publish(MetricCollector.create("ApiCall").collect());
+            publisher.publish(MetricCollector.create("ApiCall").collect());
+
+            assertThat(publisher.statistics().getApiCalls()).isEqualTo(2);
+            assertThat(publisher.statistics().getMaxConcurrency()).isEqualTo(0);
+        }
+    }
+}
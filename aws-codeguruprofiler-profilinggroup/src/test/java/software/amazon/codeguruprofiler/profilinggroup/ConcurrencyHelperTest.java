@@ -0,0 +1,109 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConcurrencyHelperTest {
+
+    private final List<Integer> items = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+
+    @Nested
+    class DescribeMapInOrder {
+        @Test
+        public void itKeepsTheOrderOfTheItems() {
+            List<String> results = ConcurrencyHelper.mapInOrder(items, 8, i -> "pg-" + i);
+
+            assertThat(results).isEqualTo(items.stream().map(i -> "pg-" + i).collect(Collectors.toList()));
+        }
+
+        @Test
+        public void itReturnsEmptyListForNoItems() {
+            assertThat(ConcurrencyHelper.mapInOrder(Collections.<Integer>emptyList(), 8, i -> i)).isEmpty();
+        }
+
+        @Test
+        public void itNeverRunsMoreThanMaxConcurrencyCallsAtOnce() {
+            AtomicInteger inFlight = new AtomicInteger();
+            AtomicInteger highWaterMark = new AtomicInteger();
+
+            ConcurrencyHelper.mapInOrder(items, 4, i -> {
+                highWaterMark.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                sleep(2);
+                inFlight.decrementAndGet();
+                return i;
+            });
+
+            assertThat(highWaterMark.get()).isBetween(1, 4);
+        }
+
+        @Test
+        public void itRunsCallsConcurrently() throws InterruptedException {
+            CountDownLatch bothStarted = new CountDownLatch(2);
+
+            List<Boolean> results = ConcurrencyHelper.mapInOrder(items.subList(0, 2), 2, i -> {
+                bothStarted.countDown();
+                try {
+                    return bothStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            assertThat(results).containsExactly(true, true);
+        }
+
+        @Test
+        public void itRunsOnTheCallingThreadWhenConcurrencyIsOne() {
+            List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+            ConcurrencyHelper.mapInOrder(items, 1, i -> threads.add(Thread.currentThread()));
+
+            assertThat(threads).containsOnly(Thread.currentThread());
+        }
+
+        @Test
+        public void itRethrowsTheFailureAndStopsStartingNewItems() {
+            AtomicInteger started = new AtomicInteger();
+
+            IllegalStateException exception = assertThrows(IllegalStateException.class, () ->
+                ConcurrencyHelper.mapInOrder(items, 2, i -> {
+                    started.incrementAndGet();
+                    if (i == 3) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return i;
+                }));
+
+            assertThat(exception).hasMessage("boom");
+            assertThat(started.get()).isLessThan(items.size());
+        }
+
+        @Test
+        public void itRethrowsErrors() {
+            assertThrows(AssertionError.class, () ->
+                ConcurrencyHelper.mapInOrder(items, 2, i -> {
+                    throw new AssertionError("boom");
+                }));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsResponse;
 import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
@@ -23,8 +24,10 @@ import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGro
 import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.EventPublisher;
 import software.amazon.awssdk.services.codeguruprofiler.model.InternalServerException;
+import software.amazon.awssdk.services.codeguruprofiler.model.NotificationConfiguration;
 import software.amazon.awssdk.services.codeguruprofiler.model.ProfilingGroupDescription;
 import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ServiceQuotaExceededException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ThrottlingException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ValidationException;
@@ -34,22 +37,27 @@ import software.amazon.cloudformation.exceptions.CfnServiceInternalErrorExceptio
 import software.amazon.cloudformation.exceptions.CfnServiceLimitExceededException;
 import software.amazon.cloudformation.exceptions.CfnThrottlingException;
 import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+import software.amazon.cloudformation.proxy.HandlerErrorCode;
 import software.amazon.cloudformation.proxy.Logger;
 import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -178,6 +186,7 @@ public class CreateHandlerTest {
             final ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
             assertSuccessfulResponse(response);
         }
+
     }
 
     @Nested
@@ -295,6 +304,272 @@ public class CreateHandlerTest {
         }
     }
 
+    @Nested
+    class WhenCreationIsResumed {
+        private final AddNotificationChannelsRequest addNotificationChannelsRequest = AddNotificationChannelsRequest.builder()
+                .profilingGroupName(profilingGroupName)
+                .channels(Channel.builder()
+                        .uri("channelUri")
+                        .eventPublishers(ImmutableSet.of(EventPublisher.ANOMALY_DETECTION))
+                        .build())
+                .build();
+
+        @BeforeEach
+        public void setup() {
+            request = makeRequest(ResourceModel.builder().profilingGroupName(profilingGroupName)
+                    .agentPermissions(AgentPermissions.builder().principals(principals).build())
+                    .anomalyDetectionNotificationConfiguration(Collections.singletonList(software.amazon.codeguruprofiler.profilinggroup.Channel.builder()
+                            .channelUri("channelUri")
+                            .build()))
+                    .build());
+        }
+
+        @Test
+        public void itDoesNotCreateTheProfilingGroupAgain() {
+            CallbackContext context = CallbackContext.builder().profilingGroupCreated(true).build();
+
+            assertSuccessfulResponse(subject.handleRequest(proxy, request, context, logger));
+
+            verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+            verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(addNotificationChannelsRequest), any());
+            verifyNoMoreInteractions(proxy);
+        }
+
+        @Test
+        public void itOnlyRunsTheStepsNotDoneYet() {
+            CallbackContext context = CallbackContext.builder().profilingGroupCreated(true).agentPermissionsPut(true).build();
+
+            assertSuccessfulResponse(subject.handleRequest(proxy, request, context, logger));
+
+            verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(addNotificationChannelsRequest), any());
+            verifyNoMoreInteractions(proxy);
+        }
+
+        @Test
+        public void itRunsBothStepsAfterCreationConcurrently() {
+            CountDownLatch bothStepsStarted = new CountDownLatch(2);
+            doAnswer(invocation -> awaitOther(bothStepsStarted))
+                .when(proxy).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+            doAnswer(invocation -> awaitOther(bothStepsStarted))
+                .when(proxy).injectCredentialsAndInvokeV2(eq(addNotificationChannelsRequest), any());
+
+            assertSuccessfulResponse(subject.handleRequest(proxy, request, null, logger));
+        }
+
+        @Test
+        public void itDeletesTheProfilingGroupOnceWhenBothStepsFail() {
+            Throwable channelsException = InternalServerException.builder().build();
+            doThrow(ConflictException.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+            doThrow(channelsException)
+                .when(proxy).injectCredentialsAndInvokeV2(eq(addNotificationChannelsRequest), any());
+
+            CfnAlreadyExistsException exception = assertThrows(CfnAlreadyExistsException.class,
+                () -> subject.handleRequest(proxy, request, null, logger));
+
+            assertThat(exception).hasCauseExactlyInstanceOf(ConflictException.class);
+            assertThat(exception.getCause()).hasSuppressedException(channelsException);
+            verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+        }
+
+        @Test
+        public void itRollsBackWhenOneStepFailsEvenIfTheOtherIsThrottled() {
+            Throwable throttlingException = ThrottlingException.builder().build();
+            doThrow(throttlingException)
+                .when(proxy).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+            doThrow(ValidationException.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(eq(addNotificationChannelsRequest), any());
+
+            CfnInvalidRequestException exception = assertThrows(CfnInvalidRequestException.class,
+                () -> subject.handleRequest(proxy, request, null, logger));
+
+            assertThat(exception.getCause()).hasSuppressedException(throttlingException);
+            verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+        }
+
+        @Test
+        public void itCheckpointsTheStepThatSucceededWhenTheOtherIsThrottled() {
+            doThrow(ThrottlingException.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(eq(addNotificationChannelsRequest), any());
+
+            ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+            assertThat(response.getCallbackContext()).isEqualTo(
+                CallbackContext.builder().profilingGroupCreated(true).agentPermissionsPut(true).throttledInvocations(1).build());
+        }
+
+        @Nested
+        class WhenAStepAfterCreationIsThrottled {
+            @BeforeEach
+            public void setup() {
+                doThrow(ThrottlingException.builder().build())
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+            }
+
+            @Test
+            public void itHandsBackToCloudFormationWithoutDeletingTheProfilingGroup() {
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+                assertThat(response.getCallbackDelaySeconds()).isGreaterThan(0);
+                assertThat(response.getCallbackContext()).isEqualTo(
+                    CallbackContext.builder().profilingGroupCreated(true).throttledInvocations(1).build());
+
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(createPgRequest), any());
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+                verifyNoMoreInteractions(proxy);
+            }
+
+            @Test
+            public void itRollsBackOnceItWasThrottledTooManyTimes() {
+                CallbackContext context = CallbackContext.builder()
+                    .profilingGroupCreated(true)
+                    .throttledInvocations(CreateHandler.MAX_HANDED_BACK_INVOCATIONS)
+                    .build();
+
+                assertThrows(CfnThrottlingException.class, () -> subject.handleRequest(proxy, request, context, logger));
+
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+                verifyNoMoreInteractions(proxy);
+            }
+        }
+
+        @Nested
+        class WhenTheInvocationRunsOutOfTime {
+            private final CreateHandler outOfTimeSubject = new CreateHandler(Duration.ZERO);
+
+            @Test
+            public void itHandsBackToCloudFormationAfterTheCreation() {
+                ProgressEvent<ResourceModel, CallbackContext> response = outOfTimeSubject.handleRequest(proxy, request, null, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+                assertThat(response.getCallbackContext()).isEqualTo(
+                    CallbackContext.builder().profilingGroupCreated(true).timedOutInvocations(1).build());
+
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(createPgRequest), any());
+                verifyNoMoreInteractions(proxy);
+            }
+
+            @Test
+            public void itHandsBackToDeleteTheProfilingGroupAfterTooManyInvocations() {
+                CallbackContext context = CallbackContext.builder()
+                    .profilingGroupCreated(true)
+                    .timedOutInvocations(CreateHandler.MAX_HANDED_BACK_INVOCATIONS)
+                    .build();
+
+                ProgressEvent<ResourceModel, CallbackContext> response = outOfTimeSubject.handleRequest(proxy, request, context, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+                assertThat(response.getCallbackContext().isCompensationPending()).isTrue();
+                assertThat(response.getCallbackContext().getCompensationInvocations()).isEqualTo(1);
+                verifyNoMoreInteractions(proxy);
+            }
+
+            @Test
+            public void itDeletesTheProfilingGroupAndFailsOnTheNextCallback() {
+                CallbackContext context = compensationPendingContext(1);
+
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, context, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+                assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.GeneralServiceException);
+                assertThat(response.getMessage()).isEqualTo("gave up");
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+                verifyNoMoreInteractions(proxy);
+            }
+
+            @Test
+            public void itStillFailsWhenTheCleanUpFails() {
+                doThrow(InternalServerException.builder().build())
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, compensationPendingContext(1), logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+                assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.GeneralServiceException);
+            }
+
+            @Test
+            public void itFailsWhenAnEarlierDeleteWentThrough() {
+                doThrow(ResourceNotFoundException.builder().build())
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, compensationPendingContext(1), logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+            }
+
+            @Test
+            public void itHandsBackAgainWhenTheDeleteRunsOutOfTime() {
+                doThrow(ApiCallTimeoutException.create(1000))
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, compensationPendingContext(1), logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+                assertThat(response.getCallbackContext().getCompensationInvocations()).isEqualTo(2);
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+                verifyNoMoreInteractions(proxy);
+            }
+
+            @Test
+            public void itFailsOnceTheDeleteRanOutOfTimeTooManyTimes() {
+                doThrow(ApiCallTimeoutException.create(1000))
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request,
+                    compensationPendingContext(CreateHandler.MAX_HANDED_BACK_INVOCATIONS), logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+                assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.GeneralServiceException);
+            }
+
+            @Test
+            public void itHandsBackWhenTheRollBackOfAFailedStepRunsOutOfTime() {
+                doThrow(ValidationException.builder().message("invalid principal").build())
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(putPermissionsRequest), any());
+                doThrow(ApiCallTimeoutException.create(1000))
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(deleteProfilingGroupRequest), any());
+                CallbackContext context = CallbackContext.builder().profilingGroupCreated(true).notificationChannelsAdded(true).build();
+
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, context, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+                assertThat(response.getCallbackContext().isCompensationPending()).isTrue();
+                assertThat(response.getCallbackContext().getCompensationErrorCode()).isEqualTo(HandlerErrorCode.InvalidRequest);
+                assertThat(response.getCallbackContext().getTimedOutInvocations()).isZero();
+            }
+
+            private CallbackContext compensationPendingContext(final int compensationInvocations) {
+                return CallbackContext.builder()
+                    .profilingGroupCreated(true)
+                    .timedOutInvocations(CreateHandler.MAX_HANDED_BACK_INVOCATIONS + 1)
+                    .compensationPending(true)
+                    .compensationInvocations(compensationInvocations)
+                    .compensationErrorCode(HandlerErrorCode.GeneralServiceException)
+                    .compensationMessage("gave up")
+                    .build();
+            }
+
+            @Test
+            public void itHasNothingToCleanUpBeforeTheCreation() {
+                CallbackContext context = CallbackContext.builder()
+                    .timedOutInvocations(CreateHandler.MAX_HANDED_BACK_INVOCATIONS)
+                    .build();
+                doThrow(ApiCallTimeoutException.create(1000))
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(createPgRequest), any());
+
+                ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, context, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(createPgRequest), any());
+                verifyNoMoreInteractions(proxy);
+            }
+        }
+    }
+
     @Nested
     class WhenTagsAreSet {
         private String tagKey = "TestKey";
@@ -433,4 +708,10 @@ public class CreateHandlerTest {
         assertThat(response.getMessage()).isNull();
         assertThat(response.getErrorCode()).isNull();
     }
+
+    private static Object awaitOther(final CountDownLatch bothStepsStarted) throws InterruptedException {
+        bothStepsStarted.countDown();
+        assertThat(bothStepsStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        return null;
+    }
 }
@@ -0,0 +1,214 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.CreateProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListTagsForResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.TagResourceRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.UntagResourceRequest;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class DeadlineTest {
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    private final Deadline deadline = new Deadline(Duration.ofSeconds(10), nanoClock::get);
+
+    private final AwsCredentialsProvider credentialsProvider = AnonymousCredentialsProvider.create();
+
+    private final DescribeProfilingGroupRequest request = DescribeProfilingGroupRequest.builder()
+        .profilingGroupName("Thor-2020")
+        .overrideConfiguration(AwsRequestOverrideConfiguration.builder().credentialsProvider(credentialsProvider).build())
+        .build();
+
+    @Nested
+    class DescribeDefaultInvocationBudget {
+        @Test
+        public void itAssumesTheSixtySecondsCloudFormationGivesAHandlerInvocation() {
+            assertThat(Deadline.INVOCATION_TIMEOUT).isEqualTo(Duration.ofSeconds(60));
+            assertThat(Deadline.DEFAULT_INVOCATION_BUDGET.plus(Deadline.INVOCATION_MARGIN)).isEqualTo(Deadline.INVOCATION_TIMEOUT);
+        }
+
+        @Test
+        public void itLeavesTimeForTheWrapperAndTheProgressEvent() {
+            assertThat(Deadline.INVOCATION_MARGIN).isGreaterThanOrEqualTo(Duration.ofSeconds(5));
+        }
+
+        @Test
+        public void itFitsTheLongestAttemptTimeoutOfAnyRetryProfile() {
+            for (RetryProfile profile : RetryProfile.values()) {
+                assertThat(profile.attemptTimeout()).isLessThan(Deadline.DEFAULT_INVOCATION_BUDGET);
+            }
+        }
+    }
+
+    @Nested
+    class DescribeRemaining {
+        @Test
+        public void itCountsDownWithTheClock() {
+            nanoClock.addAndGet(Duration.ofSeconds(4).toNanos());
+
+            assertThat(deadline.remaining()).isEqualTo(Duration.ofSeconds(6));
+            assertThat(deadline.isExpired()).isFalse();
+        }
+
+        @Test
+        public void itNeverGoesNegative() {
+            nanoClock.addAndGet(Duration.ofSeconds(30).toNanos());
+
+            assertThat(deadline.remaining()).isEqualTo(Duration.ZERO);
+        }
+
+        @Test
+        public void itExpiresWhenLessThanTheMinimumCallBudgetIsLeft() {
+            nanoClock.addAndGet(Duration.ofSeconds(10).minus(Deadline.MINIMUM_CALL_BUDGET).plusMillis(1).toNanos());
+
+            assertThat(deadline.isExpired()).isTrue();
+            assertThrows(DeadlineExceededException.class, deadline::check);
+        }
+    }
+
+    @Nested
+    class DescribeApply {
+        @Test
+        public void itSetsTheRemainingTimeAsApiCallTimeout() {
+            nanoClock.addAndGet(Duration.ofSeconds(3).toNanos());
+
+            DescribeProfilingGroupRequest bounded = deadline.apply(request);
+
+            assertThat(bounded.overrideConfiguration().get().apiCallTimeout()).contains(Duration.ofSeconds(7));
+            assertThat(bounded.profilingGroupName()).isEqualTo("Thor-2020");
+        }
+
+        @Test
+        public void itKeepsTheCredentialsSetByTheProxy() {
+            DescribeProfilingGroupRequest bounded = deadline.apply(request);
+
+            assertThat(bounded.overrideConfiguration().get().credentialsProvider()).contains(credentialsProvider);
+        }
+
+        @Test
+        public void itWorksWithoutOverrideConfiguration() {
+            DescribeProfilingGroupRequest bounded = deadline.apply(DescribeProfilingGroupRequest.builder().build());
+
+            assertThat(bounded.overrideConfiguration().get().apiCallTimeout()).contains(Duration.ofSeconds(10));
+        }
+
+        @Test
+        public void itRefusesToStartACallOnceExpired() {
+            nanoClock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+            assertThrows(DeadlineExceededException.class, () -> deadline.apply(request));
+        }
+    }
+
+    @Nested
+    class DescribeDeadlineBoundClient {
+        private final CodeGuruProfilerClient delegate = mock(CodeGuruProfilerClient.class);
+
+        private final DeadlineBoundClient subject = new DeadlineBoundClient(delegate, deadline);
+
+        @Test
+        public void itBoundsEveryOperationTheProviderUses() {
+            subject.createProfilingGroup(CreateProfilingGroupRequest.builder().build());
+            subject.describeProfilingGroup(DescribeProfilingGroupRequest.builder().build());
+            subject.deleteProfilingGroup(DeleteProfilingGroupRequest.builder().build());
+            subject.listProfilingGroups(ListProfilingGroupsRequest.builder().build());
+            subject.getPolicy(GetPolicyRequest.builder().build());
+            subject.putPermission(PutPermissionRequest.builder().build());
+            subject.removePermission(RemovePermissionRequest.builder().build());
+            subject.getNotificationConfiguration(GetNotificationConfigurationRequest.builder().build());
+            subject.addNotificationChannels(AddNotificationChannelsRequest.builder().build());
+            subject.removeNotificationChannel(RemoveNotificationChannelRequest.builder().build());
+            subject.listTagsForResource(ListTagsForResourceRequest.builder().build());
+            subject.tagResource(TagResourceRequest.builder().build());
+            subject.untagResource(UntagResourceRequest.builder().build());
+
+            verify(delegate).createProfilingGroup(argThat((CreateProfilingGroupRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).describeProfilingGroup(argThat((DescribeProfilingGroupRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).deleteProfilingGroup(argThat((DeleteProfilingGroupRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).listProfilingGroups(argThat((ListProfilingGroupsRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).getPolicy(argThat((GetPolicyRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).putPermission(argThat((PutPermissionRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).removePermission(argThat((RemovePermissionRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).getNotificationConfiguration(argThat((GetNotificationConfigurationRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).addNotificationChannels(argThat((AddNotificationChannelsRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).removeNotificationChannel(argThat((RemoveNotificationChannelRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).listTagsForResource(argThat((ListTagsForResourceRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).tagResource(argThat((TagResourceRequest r) -> hasTimeout(r.overrideConfiguration())));
+            verify(delegate).untagResource(argThat((UntagResourceRequest r) -> hasTimeout(r.overrideConfiguration())));
+        }
+
+        @Test
+        public void itDoesNotCallTheServiceOnceExpired() {
+            nanoClock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+            assertThrows(DeadlineExceededException.class, () -> subject.getPolicy(GetPolicyRequest.builder().build()));
+            verifyZeroInteractions(delegate);
+        }
+
+        @Test
+        public void itScopesTheCallsToTheAccount() {
+            new DeadlineBoundClient(delegate, deadline, "123456789012").describeProfilingGroup(request);
+
+            verify(delegate).describeProfilingGroup(argThat((DescribeProfilingGroupRequest r) ->
+                "123456789012".equals(accountOf(r)) && hasTimeout(r.overrideConfiguration())));
+        }
+
+        @Test
+        public void itLeavesTheCallsUnscopedWithoutAnAccount() {
+            subject.describeProfilingGroup(request);
+
+            verify(delegate).describeProfilingGroup(argThat((DescribeProfilingGroupRequest r) -> accountOf(r) == null));
+        }
+
+        @Test
+        public void itDoesNotCloseTheSharedClient() {
+            subject.close();
+
+            verifyZeroInteractions(delegate);
+        }
+
+        @Test
+        public void itKeepsTheServiceName() {
+            subject.serviceName();
+
+            verify(delegate).serviceName();
+        }
+
+        private boolean hasTimeout(Optional<AwsRequestOverrideConfiguration> overrideConfiguration) {
+            return overrideConfiguration.flatMap(AwsRequestOverrideConfiguration::apiCallTimeout).isPresent();
+        }
+
+        // The account the call of the request gets scoped to once the client runs its interceptors.
+        private String accountOf(SdkRequest request) {
+            final ExecutionAttributes executionAttributes = new ExecutionAttributes();
+            CallScope.copyTo(request, executionAttributes);
+            return CallScope.accountOf(executionAttributes);
+        }
+    }
+}
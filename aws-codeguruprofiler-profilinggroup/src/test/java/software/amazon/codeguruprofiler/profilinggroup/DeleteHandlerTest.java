@@ -6,6 +6,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsResponse;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupResponse;
 import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
@@ -24,9 +27,13 @@ import software.amazon.cloudformation.proxy.OperationStatus;
 import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 
+import java.time.Duration;
+import java.util.function.Function;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -111,4 +118,27 @@ public class DeleteHandlerTest {
         assertThrows(CfnInvalidRequestException.class, () ->
                 new DeleteHandler().handleRequest(proxy, makeInvalidRequest(), null, logger));
     }
+
+    @Test
+    public void testDeadlineExceeded() {
+        proxyMakesTheCalls();
+
+        assertThrows(CfnServiceInternalErrorException.class, () ->
+                new DeleteHandler(Duration.ZERO).handleRequest(proxy, request, null, logger));
+    }
+
+    @Test
+    public void testApiCallTimeout() {
+        doThrow(ApiCallTimeoutException.create(1000))
+                .when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+        assertThrows(CfnServiceInternalErrorException.class, () ->
+                new DeleteHandler().handleRequest(proxy, request, null, logger));
+    }
+
+    // The proxy makes the call through the handler's client, which checks the deadline before anything is sent.
+    private void proxyMakesTheCalls() {
+        doAnswer(invocation -> invocation.<Function<AwsRequest, AwsResponse>>getArgument(1).apply(invocation.getArgument(0)))
+            .when(proxy).injectCredentialsAndInvokeV2(any(), any());
+    }
 }
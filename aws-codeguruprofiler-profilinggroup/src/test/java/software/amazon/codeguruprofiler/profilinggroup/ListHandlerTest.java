@@ -6,6 +6,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsResponse;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationResponse;
@@ -25,18 +28,24 @@ import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.codeguruprofiler.profilinggroup.AgentPermissionHelper.GetPrincipalsFunction;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static software.amazon.codeguruprofiler.profilinggroup.RequestBuilder.makeValidRequest;
 
 @ExtendWith(MockitoExtension.class)
@@ -178,6 +187,80 @@ public class ListHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    public void testHydrationKeepsPageOrder() {
+        final List<ProfilingGroupDescription> profilingGroups = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            profilingGroups.add(pgDescription1.toBuilder().name("test-pg-" + i).build());
+        }
+        doReturn(ListProfilingGroupsResponse.builder().profilingGroups(profilingGroups).build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(ListProfilingGroupsRequest.class), any());
+        doReturn(
+            GetNotificationConfigurationResponse.builder()
+                .notificationConfiguration(NotificationConfiguration.builder().channels(testChannel).build())
+                .build()
+        ).when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+
+        final ProgressEvent<ResourceModel, CallbackContext> response =
+            new ListHandler(getPrincipalsFunction, 4).handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getResourceModels()).extracting(ResourceModel::getProfilingGroupName)
+            .containsExactlyElementsOf(profilingGroups.stream().map(ProfilingGroupDescription::name).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testStaysWithinItsApiCallBudget() {
+        final int pageSize = 25;
+        final List<ProfilingGroupDescription> profilingGroups = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            profilingGroups.add(pgDescription1.toBuilder().name("test-pg-" + i).build());
+        }
+        doReturn(ListProfilingGroupsResponse.builder().profilingGroups(profilingGroups).nextToken("page2").build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(ListProfilingGroupsRequest.class), any());
+        doReturn(
+            GetNotificationConfigurationResponse.builder()
+                .notificationConfiguration(NotificationConfiguration.builder().channels(testChannel).build())
+                .build()
+        ).when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+
+        subject.handleRequest(proxy, request, null, logger);
+
+        // One page, then two calls to hydrate each of its profiling groups.
+        ApiCallBudget.allowing("ListProfilingGroups", 1)
+            .and("GetNotificationConfiguration", pageSize)
+            .and("GetPolicy", pageSize)
+            .countingCallsTo(getPrincipalsFunction, "GetPolicy")
+            .assertRespectedBy(proxy);
+    }
+
+    @Test
+    public void testHydrationBacksOffWhenThrottled() {
+        doReturn(ListProfilingGroupsResponse.builder().profilingGroups(pgDescription1).build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(ListProfilingGroupsRequest.class), any());
+        doThrow(ThrottlingException.builder().build())
+            .doReturn(
+                GetNotificationConfigurationResponse.builder()
+                    .notificationConfiguration(NotificationConfiguration.builder().channels(testChannel).build())
+                    .build()
+            ).when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+
+        final ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getResourceModels()).containsExactly(resourceModelPg1);
+        verify(proxy, times(2)).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+    }
+
+    @Test
+    public void testHydrationGivesUpWhenThrottlingPersists() {
+        doReturn(ListProfilingGroupsResponse.builder().profilingGroups(pgDescription1).build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(ListProfilingGroupsRequest.class), any());
+        doThrow(ThrottlingException.builder().build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+
+        assertThrows(CfnThrottlingException.class, () -> subject.handleRequest(proxy, request, null, logger));
+        verify(proxy, times(3)).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+    }
+
     @Test
     public void testInternalServerException() {
         doThrow(InternalServerException.builder().build())
@@ -186,6 +269,22 @@ public class ListHandlerTest {
         assertThrows(CfnServiceInternalErrorException.class, () -> subject.handleRequest(proxy, request, null, logger));
     }
 
+    @Test
+    public void testDeadlineExceeded() {
+        proxyMakesTheCalls();
+
+        assertThrows(CfnServiceInternalErrorException.class, () ->
+            new ListHandler(getPrincipalsFunction, Duration.ZERO).handleRequest(proxy, request, null, logger));
+    }
+
+    @Test
+    public void testApiCallTimeout() {
+        doThrow(ApiCallTimeoutException.create(1000))
+            .when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+        assertThrows(CfnServiceInternalErrorException.class, () -> subject.handleRequest(proxy, request, null, logger));
+    }
+
     @Test
     public void testThrottlingException() {
         doThrow(ThrottlingException.builder().build())
@@ -193,4 +292,10 @@ public class ListHandlerTest {
 
         assertThrows(CfnThrottlingException.class, () -> subject.handleRequest(proxy, request, null, logger));
     }
+
+    // The proxy makes the call through the handler's client, which checks the deadline before anything is sent.
+    private void proxyMakesTheCalls() {
+        doAnswer(invocation -> invocation.<Function<AwsRequest, AwsResponse>>getArgument(1).apply(invocation.getArgument(0)))
+            .when(proxy).injectCredentialsAndInvokeV2(any(), any());
+    }
 }
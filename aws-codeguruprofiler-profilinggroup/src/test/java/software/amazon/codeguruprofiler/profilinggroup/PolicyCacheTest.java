@@ -0,0 +1,122 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PolicyCacheTest {
+    private final String awsAccountId = "123456789012";
+    private final String region = "us-east-1";
+    private final String pgName = "Thor-2020";
+    private final String revisionId = "TestRevisionId-123";
+    private final String policy = "{\"Statement\":[]}";
+    private final List<String> principals = Collections.singletonList("arn:aws:iam::123456789012:role/One");
+
+    private long nanoTime = 0;
+    private final PolicyCache cache = new PolicyCache(2, Duration.ofSeconds(60), () -> nanoTime);
+
+    private final AtomicInteger parses = new AtomicInteger();
+    private final Function<String, List<String>> parser = policyInJson -> {
+        parses.incrementAndGet();
+        return principals;
+    };
+
+    @Test
+    public void itParsesThePolicyOnce() {
+        assertThat(cache.principals(awsAccountId, region, pgName, revisionId, policy, parser)).isSameAs(principals);
+        assertThat(cache.principals(awsAccountId, region, pgName, revisionId, policy, parser)).isSameAs(principals);
+
+        assertThat(parses).hasValue(1);
+    }
+
+    @Test
+    public void itParsesANewRevision() {
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+        cache.principals(awsAccountId, region, pgName, "TestRevisionId-456", policy, parser);
+
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    public void itParsesADifferentPolicyWithTheSameRevision() {
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+        cache.principals(awsAccountId, region, pgName, revisionId, "{\"Statement\":{}}", parser);
+
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    public void itNeverCachesAPolicyWithoutRevision() {
+        cache.principals(awsAccountId, region, pgName, null, policy, parser);
+        cache.principals(awsAccountId, region, pgName, null, policy, parser);
+
+        assertThat(parses).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void itParsesAgainOnceTheEntryExpired() {
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+        nanoTime += TimeUnit.SECONDS.toNanos(59);
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+        nanoTime += TimeUnit.SECONDS.toNanos(1);
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    public void itParsesAgainAfterInvalidation() {
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+        cache.invalidate(awsAccountId, region, pgName);
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+
+        assertThat(parses).hasValue(2);
+    }
+
+    @Test
+    public void itKeepsTheGroupsOfOtherAccountsAndRegionsApart() {
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+        cache.principals("210987654321", region, pgName, revisionId, policy, parser);
+        cache.principals(awsAccountId, "eu-west-1", pgName, revisionId, policy, parser);
+
+        assertThat(parses).hasValue(3);
+    }
+
+    @Test
+    public void itOnlyInvalidatesTheGroupOfTheAccountAndRegion() {
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+        cache.invalidate("210987654321", region, pgName);
+        cache.invalidate(awsAccountId, "eu-west-1", pgName);
+        cache.principals(awsAccountId, region, pgName, revisionId, policy, parser);
+
+        assertThat(parses).hasValue(1);
+    }
+
+    @Nested
+    class WhenTheCacheIsFull {
+        @Test
+        public void itEvictsTheLeastRecentlyUsedGroup() {
+            cache.principals(awsAccountId, region, "First", revisionId, policy, parser);
+            cache.principals(awsAccountId, region, "Second", revisionId, policy, parser);
+            cache.principals(awsAccountId, region, "First", revisionId, policy, parser);
+            cache.principals(awsAccountId, region, "Third", revisionId, policy, parser);
+            assertThat(parses).hasValue(3);
+
+            cache.principals(awsAccountId, region, "First", revisionId, policy, parser);
+            assertThat(parses).hasValue(3);
+
+            cache.principals(awsAccountId, region, "Second", revisionId, policy, parser);
+            assertThat(parses).hasValue(4);
+            assertThat(cache.size()).isEqualTo(2);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PolicyPrincipalsParserTest {
+    private final String testPrincipalArn1 = "arn:aws:iam::012345678901:role/Role1";
+    private final String testPrincipalArn2 = "arn:aws:iam::012345678901:role/Role2";
+    private final String testPrincipalArn3 = "arn:aws:iam::012345678901:role/Role3";
+
+    @Test
+    public void itReturnsEmptyForNoPolicy() throws IOException {
+        assertThat(PolicyPrincipalsParser.parse(null)).isEmpty();
+        assertThat(PolicyPrincipalsParser.parse("")).isEmpty();
+    }
+
+    @Test
+    public void itReadsAnArrayOfPrincipals() throws IOException {
+        String policy = policyWith(statementWith("[\"" + testPrincipalArn1 + "\", \"" + testPrincipalArn2 + "\"]"));
+
+        assertThat(PolicyPrincipalsParser.parse(policy)).containsExactly(testPrincipalArn1, testPrincipalArn2);
+    }
+
+    @Test
+    public void itReadsASinglePrincipal() throws IOException {
+        String policy = policyWith(statementWith("\"" + testPrincipalArn1 + "\""));
+
+        assertThat(PolicyPrincipalsParser.parse(policy)).containsExactly(testPrincipalArn1);
+    }
+
+    @Test
+    public void itReadsPrincipalsOfEveryStatement() throws IOException {
+        String policy = policyWith(
+            statementWith("[\"" + testPrincipalArn1 + "\", \"" + testPrincipalArn2 + "\"]") + "," +
+            statementWith("\"" + testPrincipalArn3 + "\""));
+
+        assertThat(PolicyPrincipalsParser.parse(policy)).containsExactly(testPrincipalArn1, testPrincipalArn2, testPrincipalArn3);
+    }
+
+    @Test
+    public void itReadsAStatementThatIsNotInAnArray() throws IOException {
+        String policy = "{\"Version\": \"2012-10-17\", \"Statement\": " + statementWith("\"" + testPrincipalArn1 + "\"") + "}";
+
+        assertThat(PolicyPrincipalsParser.parse(policy)).containsExactly(testPrincipalArn1);
+    }
+
+    @Test
+    public void itKeepsTheFirstOccurrenceOfRepeatedPrincipals() throws IOException {
+        String policy = policyWith(
+            statementWith("[\"" + testPrincipalArn2 + "\", \"" + testPrincipalArn1 + "\"]") + "," +
+            statementWith("[\"" + testPrincipalArn1 + "\", \"" + testPrincipalArn2 + "\"]"));
+
+        assertThat(PolicyPrincipalsParser.parse(policy)).containsExactly(testPrincipalArn2, testPrincipalArn1);
+    }
+
+    @Test
+    public void itIgnoresPrincipalsThatAreNotAws() throws IOException {
+        String policy = policyWith(
+            "{\"Effect\": \"Allow\", \"Principal\": \"*\", \"Action\": \"codeguru-profiler:ConfigureAgent\"}," +
+            "{\"Effect\": \"Allow\", \"Principal\": {\"Service\": [\"lambda.amazonaws.com\"], \"AWS\": \"" + testPrincipalArn1 + "\"}}");
+
+        assertThat(PolicyPrincipalsParser.parse(policy)).containsExactly(testPrincipalArn1);
+    }
+
+    @Test
+    public void itInternsPrincipals() throws IOException {
+        String policy = policyWith(statementWith("\"" + testPrincipalArn1 + "\""));
+
+        List<String> first = PolicyPrincipalsParser.parse(policy);
+        List<String> second = PolicyPrincipalsParser.parse(policy);
+
+        assertThat(first.get(0)).isSameAs(second.get(0));
+    }
+
+    @Test
+    public void itReturnsAnImmutableList() throws IOException {
+        List<String> principals = PolicyPrincipalsParser.parse(policyWith(statementWith("\"" + testPrincipalArn1 + "\"")));
+
+        assertThatThrownBy(() -> principals.add(testPrincipalArn2)).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Nested
+    class WhenThePolicyIsMalformed {
+        @Test
+        public void itThrowsForInvalidJson() {
+            assertThatThrownBy(() -> PolicyPrincipalsParser.parse("{\"Statement\": [")).isInstanceOf(IOException.class);
+        }
+
+        @Test
+        public void itThrowsWhenThePolicyIsNotAnObject() {
+            assertThatThrownBy(() -> PolicyPrincipalsParser.parse("[]")).isInstanceOf(JsonParseException.class);
+        }
+
+        @Test
+        public void itThrowsWhenAPrincipalIsNotAString() {
+            String policy = policyWith(statementWith("[42]"));
+
+            assertThatThrownBy(() -> PolicyPrincipalsParser.parse(policy)).isInstanceOf(JsonParseException.class);
+        }
+    }
+
+    private String policyWith(String statements) {
+        return "{" +
+               "  \"Version\": \"2012-10-17\"," +
+               "  \"Statement\": [" + statements + "]" +
+               "}";
+    }
+
+    private String statementWith(String principals) {
+        return "{" +
+               "    \"Sid\": \"agentPermissions-statement\"," +
+               "    \"Effect\": \"Allow\"," +
+               "    \"Principal\": { \"AWS\": " + principals + " }," +
+               "    \"Action\": [\"codeguru-profiler:ConfigureAgent\", \"codeguru-profiler:PostAgentProfile\"]," +
+               "    \"Resource\": \"arn:aws:codeguru-profiler:us-east-1:012345678901:profilingGroup/TestGroup\"" +
+               "}";
+    }
+}
@@ -0,0 +1,92 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetNotificationConfigurationRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ListProfilingGroupsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.ResourceNotFoundException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class PrimingTest {
+
+    @Nested
+    class DescribeIsEnabled {
+        @Test
+        public void itIsEnabledInLambda() {
+            assertThat(Priming.isEnabled("TypeFunction", null)).isTrue();
+        }
+
+        @Test
+        public void itIsDisabledOutsideOfLambda() {
+            assertThat(Priming.isEnabled(null, null)).isFalse();
+            assertThat(Priming.isEnabled("", "true")).isFalse();
+        }
+
+        @Test
+        public void itCanBeTurnedOff() {
+            assertThat(Priming.isEnabled("TypeFunction", "false")).isFalse();
+            assertThat(Priming.isEnabled("TypeFunction", "FALSE")).isFalse();
+        }
+    }
+
+    @Nested
+    class DescribePrime {
+        private final CodeGuruProfilerClient client = mock(CodeGuruProfilerClient.class);
+
+        @Test
+        public void itMakesTheCallsOfTheHandlers() {
+            Priming.prime(client);
+
+            ArgumentCaptor<DescribeProfilingGroupRequest> describeRequest = ArgumentCaptor.forClass(DescribeProfilingGroupRequest.class);
+            verify(client).describeProfilingGroup(describeRequest.capture());
+            assertThat(describeRequest.getValue().profilingGroupName()).isEqualTo(Priming.PRIMING_PROFILING_GROUP_NAME);
+
+            verify(client).getNotificationConfiguration(any(GetNotificationConfigurationRequest.class));
+            verify(client).getPolicy(any(GetPolicyRequest.class));
+            verify(client).listProfilingGroups(any(ListProfilingGroupsRequest.class));
+        }
+
+        @Test
+        public void itSwallowsTheErrorsOfTheCalls() {
+            doThrow(ResourceNotFoundException.builder().statusCode(404).build())
+                .when(client).describeProfilingGroup(any(DescribeProfilingGroupRequest.class));
+            doThrow(SdkClientException.create("Unable to execute HTTP request"))
+                .when(client).listProfilingGroups(any(ListProfilingGroupsRequest.class));
+
+            assertThatCode(() -> Priming.prime(client)).doesNotThrowAnyException();
+
+            verify(client).getNotificationConfiguration(any(GetNotificationConfigurationRequest.class));
+        }
+    }
+
+    @Nested
+    class DescribeLocalClient {
+        @Test
+        public void itAnswersInProcessThatTheProfilingGroupDoesNotExist() {
+            try (CodeGuruProfilerClient localClient = Priming.localClient()) {
+                assertThrows(ResourceNotFoundException.class, () -> localClient.describeProfilingGroup(DescribeProfilingGroupRequest.builder()
+                    .profilingGroupName(Priming.PRIMING_PROFILING_GROUP_NAME)
+                    .build()));
+            }
+        }
+
+        @Test
+        public void itPrimesWithoutErrors() {
+            try (CodeGuruProfilerClient localClient = Priming.localClient()) {
+                assertThatCode(() -> Priming.prime(localClient)).doesNotThrowAnyException();
+            }
+        }
+    }
+}
@@ -5,6 +5,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import software.amazon.awssdk.awscore.AwsRequest;
+import software.amazon.awssdk.awscore.AwsResponse;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
 import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupResponse;
@@ -27,14 +32,19 @@ import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.codeguruprofiler.profilinggroup.AgentPermissionHelper.GetPrincipalsFunction;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -113,6 +123,60 @@ public class ReadHandlerTest {
         assertThat(response.getErrorCode()).isNull();
     }
 
+    @Test
+    public void testReadsAreIssuedConcurrently() {
+        // Each read only answers once all three have started, which can only happen if they run concurrently.
+        final CountDownLatch allReadsStarted = new CountDownLatch(3);
+
+        doAnswer(invocation -> awaitOthers(allReadsStarted, DescribeProfilingGroupResponse.builder()
+                .profilingGroup(ProfilingGroupDescription.builder().name("IronMan-Suit-34").build())
+                .build()))
+            .when(proxy).injectCredentialsAndInvokeV2(any(DescribeProfilingGroupRequest.class), any());
+        doAnswer(invocation -> awaitOthers(allReadsStarted, GetNotificationConfigurationResponse.builder()
+                .notificationConfiguration(NotificationConfiguration.builder().build())
+                .build()))
+            .when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+        doAnswer(invocation -> awaitOthers(allReadsStarted, singletonList(testPrincipalArn)))
+            .when(getPrincipalsFunction).apply(eq(proxy), any());
+
+        final ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
+
+        assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+        assertThat(response.getResourceModel().getAgentPermissions().getPrincipals()).containsExactly(testPrincipalArn);
+    }
+
+    @Test
+    public void testStaysWithinItsApiCallBudget() {
+        doReturn(DescribeProfilingGroupResponse.builder()
+                .profilingGroup(ProfilingGroupDescription.builder().name("IronMan-Suit-34").build())
+                .build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(DescribeProfilingGroupRequest.class), any());
+        doReturn(GetNotificationConfigurationResponse.builder()
+                .notificationConfiguration(NotificationConfiguration.builder().build())
+                .build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+
+        subject.handleRequest(proxy, request, null, logger);
+
+        ApiCallBudget.allowing("DescribeProfilingGroup", 1)
+            .and("GetNotificationConfiguration", 1)
+            .and("GetPolicy", 1)
+            .countingCallsTo(getPrincipalsFunction, "GetPolicy")
+            .assertRespectedBy(proxy);
+    }
+
+    @Test
+    public void testNotificationConfigurationFailureIsMappedAfterDescribe() {
+        doReturn(DescribeProfilingGroupResponse.builder()
+                .profilingGroup(ProfilingGroupDescription.builder().name("IronMan-Suit-34").build())
+                .build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(DescribeProfilingGroupRequest.class), any());
+        doThrow(ThrottlingException.builder().build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+
+        assertThrows(CfnThrottlingException.class, () -> subject.handleRequest(proxy, request, null, logger));
+    }
+
     @Test
     public void testNotFoundException() {
         doThrow(ResourceNotFoundException.builder().build())
@@ -137,6 +201,37 @@ public class ReadHandlerTest {
         assertThrows(CfnThrottlingException.class, () -> subject.handleRequest(proxy, request, null, logger));
     }
 
+    @Test
+    public void testDeadlineExceeded() {
+        proxyMakesTheCalls();
+
+        assertThrows(CfnServiceInternalErrorException.class, () ->
+            new ReadHandler(getPrincipalsFunction, Duration.ZERO).handleRequest(proxy, request, null, logger));
+    }
+
+    @Test
+    public void testApiCallTimeout() {
+        doThrow(ApiCallTimeoutException.create(1000))
+                .when(proxy).injectCredentialsAndInvokeV2(any(), any());
+
+        assertThrows(CfnServiceInternalErrorException.class, () -> subject.handleRequest(proxy, request, null, logger));
+    }
+
+    @Test
+    public void testPolicyFailureIsMapped() {
+        doReturn(DescribeProfilingGroupResponse.builder()
+                .profilingGroup(ProfilingGroupDescription.builder().name("IronMan-Suit-34").build())
+                .build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(DescribeProfilingGroupRequest.class), any());
+        doReturn(GetNotificationConfigurationResponse.builder()
+                .notificationConfiguration(NotificationConfiguration.builder().build())
+                .build())
+            .when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+        doThrow(InternalServerException.builder().build()).when(getPrincipalsFunction).apply(eq(proxy), any());
+
+        assertThrows(CfnServiceInternalErrorException.class, () -> subject.handleRequest(proxy, request, null, logger));
+    }
+
     @Test
     public void testValidationException() {
         doThrow(ValidationException.builder().build())
@@ -144,4 +239,16 @@ public class ReadHandlerTest {
 
         assertThrows(CfnInvalidRequestException.class, () -> subject.handleRequest(proxy, makeInvalidRequest(), null, logger));
     }
+
+    private static <T> T awaitOthers(final CountDownLatch allReadsStarted, final T result) throws InterruptedException {
+        allReadsStarted.countDown();
+        assertThat(allReadsStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        return result;
+    }
+
+    // The proxy makes the call through the handler's client, which checks the deadline before anything is sent.
+    private void proxyMakesTheCalls() {
+        doAnswer(invocation -> invocation.<Function<AwsRequest, AwsResponse>>getArgument(1).apply(invocation.getArgument(0)))
+            .when(proxy).injectCredentialsAndInvokeV2(any(), any());
+    }
 }
@@ -0,0 +1,62 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RetryBudgetTest {
+    // Room for two retries.
+    private final RetryBudget subject = new RetryBudget(2 * RetryBudget.RETRY_COST);
+
+    @Test
+    public void itStopsRetryingOnceTheBudgetIsSpent() {
+        assertThat(subject.shouldRetry(retryContext("GetPolicy"))).isTrue();
+        assertThat(subject.shouldRetry(retryContext("PutPermission"))).isTrue();
+
+        assertThat(subject.shouldRetry(retryContext("GetPolicy"))).isFalse();
+    }
+
+    @Test
+    public void itRefillsTheBudgetWithSuccessfulCalls() {
+        subject.shouldRetry(retryContext("GetPolicy"));
+        subject.shouldRetry(retryContext("GetPolicy"));
+
+        for (int i = 0; i < RetryBudget.RETRY_COST; i++) {
+            subject.requestSucceeded(retryContext("GetPolicy"));
+        }
+
+        assertThat(subject.shouldRetry(retryContext("GetPolicy"))).isTrue();
+    }
+
+    @Test
+    public void itStillRetriesTheCleanUpOfAFailedCreation() {
+        subject.shouldRetry(retryContext("GetPolicy"));
+        subject.shouldRetry(retryContext("GetPolicy"));
+
+        final RetryPolicyContext compensation = retryContext("DeleteProfilingGroup").toBuilder()
+            .executionAttributes(new ExecutionAttributes()
+                .putAttribute(SdkExecutionAttribute.OPERATION_NAME, "DeleteProfilingGroup")
+                .putAttribute(CallScope.RETRY_PROFILE, RetryProfile.COMPENSATION))
+            .build();
+        assertThat(subject.shouldRetry(compensation)).isTrue();
+    }
+
+    @Test
+    public void itDoesNotExemptOtherDeletes() {
+        subject.shouldRetry(retryContext("GetPolicy"));
+        subject.shouldRetry(retryContext("GetPolicy"));
+
+        assertThat(subject.shouldRetry(retryContext("DeleteProfilingGroup"))).isFalse();
+    }
+
+    private RetryPolicyContext retryContext(final String operationName) {
+        return RetryPolicyContext.builder()
+                   .exception(SdkClientException.create("test"))
+                   .executionAttributes(new ExecutionAttributes().putAttribute(SdkExecutionAttribute.OPERATION_NAME, operationName))
+                   .build();
+    }
+}
@@ -0,0 +1,150 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.services.codeguruprofiler.model.DeleteProfilingGroupRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.DescribeProfilingGroupRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class RetryProfileTest {
+    @Nested
+    class DescribeOperations {
+        @Test
+        public void itFailsReadsFast() {
+            assertThat(RetryProfile.forOperation("DescribeProfilingGroup")).isEqualTo(RetryProfile.READ);
+            assertThat(RetryProfile.READ.maxRetries()).isLessThan(RetryProfile.IDEMPOTENT_WRITE.maxRetries());
+            assertThat(RetryProfile.READ.attemptTimeout()).isLessThan(RetryProfile.IDEMPOTENT_WRITE.attemptTimeout());
+        }
+
+        @Test
+        public void itRetriesDeletesAsIdempotentWrites() {
+            assertThat(RetryProfile.forOperation("DeleteProfilingGroup")).isEqualTo(RetryProfile.IDEMPOTENT_WRITE);
+        }
+
+        @Test
+        public void itGivesTheProfileTheCallSiteChose() {
+            assertThat(RetryProfile.of(compensationOf("DeleteProfilingGroup"))).isEqualTo(RetryProfile.COMPENSATION);
+            assertThat(RetryProfile.COMPENSATION.maxRetries()).isEqualTo(RetryProfile.MAX_RETRIES);
+        }
+
+        @Test
+        public void itTreatsCreationsAsNonIdempotent() {
+            assertThat(RetryProfile.forOperation("CreateProfilingGroup")).isEqualTo(RetryProfile.NON_IDEMPOTENT_WRITE);
+            assertThat(RetryProfile.forOperation("AddNotificationChannels")).isEqualTo(RetryProfile.NON_IDEMPOTENT_WRITE);
+        }
+
+        @Test
+        public void itRetriesUnknownOperationsAsIdempotentWrites() {
+            assertThat(RetryProfile.forOperation("SubmitFeedback")).isEqualTo(RetryProfile.IDEMPOTENT_WRITE);
+            assertThat(RetryProfile.of((ExecutionAttributes) null)).isEqualTo(RetryProfile.IDEMPOTENT_WRITE);
+        }
+    }
+
+    @Nested
+    class DescribeRetryLimit {
+        @Test
+        public void itStopsAtTheRetriesOfTheProfile() {
+            assertThat(RetryProfile.retryLimit().shouldRetry(retryContext("GetPolicy", RetryProfile.READ.maxRetries() - 1))).isTrue();
+            assertThat(RetryProfile.retryLimit().shouldRetry(retryContext("GetPolicy", RetryProfile.READ.maxRetries()))).isFalse();
+            assertThat(RetryProfile.retryLimit().shouldRetry(retryContext("DeleteProfilingGroup", RetryProfile.READ.maxRetries()))).isTrue();
+        }
+
+        @Test
+        public void itStopsAtTheRetriesOfTheProfileTheCallSiteChose() {
+            final RetryPolicyContext compensation = retryContext("DeleteProfilingGroup", RetryProfile.IDEMPOTENT_WRITE.maxRetries()).toBuilder()
+                .executionAttributes(compensationOf("DeleteProfilingGroup"))
+                .build();
+
+            assertThat(RetryProfile.retryLimit().shouldRetry(retryContext("DeleteProfilingGroup", RetryProfile.IDEMPOTENT_WRITE.maxRetries()))).isFalse();
+            assertThat(RetryProfile.retryLimit().shouldRetry(compensation)).isTrue();
+        }
+
+        @Test
+        public void itBacksOffReadsWithinTheirCeiling() {
+            assertThat(RetryProfile.backoffStrategy().computeDelayBeforeNextRetry(retryContext("GetPolicy", 10)))
+                .isLessThanOrEqualTo(Duration.ofSeconds(1));
+        }
+
+        private RetryPolicyContext retryContext(final String operationName, final int retriesAttempted) {
+            return RetryPolicyContext.builder()
+                       .exception(SdkClientException.create("test"))
+                       .executionAttributes(attributesOf(operationName))
+                       .retriesAttempted(retriesAttempted)
+                       .build();
+        }
+    }
+
+    @Nested
+    class DescribeAttemptTimeouts {
+        private final RetryProfile.AttemptTimeouts subject = new RetryProfile.AttemptTimeouts();
+
+        @Test
+        public void itGivesTheRequestTheAttemptTimeoutOfItsProfile() {
+            final SdkRequest request = subject.modifyRequest(modifyRequest(DescribeProfilingGroupRequest.builder().build()),
+                attributesOf("DescribeProfilingGroup"));
+
+            assertThat(((DescribeProfilingGroupRequest) request).overrideConfiguration()
+                           .flatMap(AwsRequestOverrideConfiguration::apiCallAttemptTimeout))
+                .contains(RetryProfile.READ.attemptTimeout());
+        }
+
+        @Test
+        public void itGivesTheRequestTheAttemptTimeoutOfTheProfileTheCallSiteChose() {
+            final SdkRequest request = subject.modifyRequest(modifyRequest(DeleteProfilingGroupRequest.builder().build()),
+                compensationOf("DeleteProfilingGroup"));
+
+            assertThat(((DeleteProfilingGroupRequest) request).overrideConfiguration()
+                           .flatMap(AwsRequestOverrideConfiguration::apiCallAttemptTimeout))
+                .contains(RetryProfile.COMPENSATION.attemptTimeout());
+        }
+
+        @Test
+        public void itKeepsTheOverridesAlreadySet() {
+            final DescribeProfilingGroupRequest original = DescribeProfilingGroupRequest.builder()
+                .overrideConfiguration(AwsRequestOverrideConfiguration.builder().apiCallTimeout(Duration.ofSeconds(42)).build())
+                .build();
+
+            final SdkRequest request = subject.modifyRequest(modifyRequest(original), attributesOf("DescribeProfilingGroup"));
+
+            assertThat(((DescribeProfilingGroupRequest) request).overrideConfiguration()
+                           .flatMap(AwsRequestOverrideConfiguration::apiCallTimeout))
+                .contains(Duration.ofSeconds(42));
+        }
+
+        @Test
+        public void itLeavesAnAttemptTimeoutAlreadySetAlone() {
+            final DescribeProfilingGroupRequest original = DescribeProfilingGroupRequest.builder()
+                .overrideConfiguration(AwsRequestOverrideConfiguration.builder().apiCallAttemptTimeout(Duration.ofSeconds(1)).build())
+                .build();
+
+            assertThat(subject.modifyRequest(modifyRequest(original), attributesOf("DescribeProfilingGroup"))).isSameAs(original);
+        }
+
+        private Context.ModifyRequest modifyRequest(final SdkRequest request) {
+            final Context.ModifyRequest context = mock(Context.ModifyRequest.class);
+            doReturn(request).when(context).request();
+            return context;
+        }
+    }
+
+    private static ExecutionAttributes attributesOf(final String operationName) {
+        return new ExecutionAttributes().putAttribute(SdkExecutionAttribute.OPERATION_NAME, operationName);
+    }
+
+    // The attributes of a call the call site scoped as a compensation.
+    private static ExecutionAttributes compensationOf(final String operationName) {
+        return attributesOf(operationName).putAttribute(CallScope.RETRY_PROFILE, RetryProfile.COMPENSATION);
+    }
+}
@@ -130,6 +130,74 @@ public class TagHelperTest {
             }
         }
 
+        @Nested
+        class WhenThePreviousModelIsKnown {
+            private final ResourceModel previousModel = ResourceModel.builder()
+                                                            .profilingGroupName(profilingGroupName)
+                                                            .arn(groupArn)
+                                                            .tags(new ArrayList<>(TagHelper.convertTagMapIntoSet(oldTagsMap)))
+                                                            .build();
+
+            @Test
+            public void itDoesNotListTagsWhenNothingChanged() {
+                TagHelper.updateTags(proxy, previousModel, previousModel, awsAccountId, groupArn, logger);
+
+                verifyNoMoreInteractions(proxy);
+            }
+
+            @Test
+            public void itDiffsAgainstThePreviousModelInsteadOfListingTags() {
+                ResourceModel desiredModel = ResourceModel.builder()
+                                                 .profilingGroupName(profilingGroupName)
+                                                 .arn(groupArn)
+                                                 .tags(new ArrayList<>(TagHelper.convertTagMapIntoSet(newTagsMap)))
+                                                 .build();
+
+                TagHelper.updateTags(proxy, desiredModel, previousModel, awsAccountId, groupArn, logger);
+
+                verify(proxy, times(1))
+                    .injectCredentialsAndInvokeV2(eq(
+                        UntagResourceRequest.builder()
+                            .resourceArn(groupArn)
+                            .tagKeys(new HashSet<String>() {{ add(oldKeyToBeRemoved); }})
+                            .build()
+                    ), any());
+                verify(proxy, times(1))
+                    .injectCredentialsAndInvokeV2(eq(
+                        TagResourceRequest.builder()
+                            .resourceArn(groupArn)
+                            .tags(new HashMap<String, String>() {{
+                                put(oldKeyToBeUpdated, newTagValue);
+                                put(newKeyToBeAdded, newTagValue);
+                            }})
+                            .build()
+                    ), any());
+                verifyNoMoreInteractions(proxy);
+            }
+
+            @Test
+            public void itOnlyTagsWhenAValueChanged() {
+                Map<String, String> changedValueTagsMap = new HashMap<>(oldTagsMap);
+                changedValueTagsMap.put(oldKeyToBeUpdated, newTagValue);
+                ResourceModel desiredModel = ResourceModel.builder()
+                                                 .profilingGroupName(profilingGroupName)
+                                                 .arn(groupArn)
+                                                 .tags(new ArrayList<>(TagHelper.convertTagMapIntoSet(changedValueTagsMap)))
+                                                 .build();
+
+                TagHelper.updateTags(proxy, desiredModel, previousModel, awsAccountId, groupArn, logger);
+
+                verify(proxy, times(1))
+                    .injectCredentialsAndInvokeV2(eq(
+                        TagResourceRequest.builder()
+                            .resourceArn(groupArn)
+                            .tags(new HashMap<String, String>() {{ put(oldKeyToBeUpdated, newTagValue); }})
+                            .build()
+                    ), any());
+                verifyNoMoreInteractions(proxy);
+            }
+        }
+
         @Nested
         class WhenTagUpdateExpected {
             private final ResourceModel desiredModel = ResourceModel.builder()
@@ -145,7 +213,7 @@ public class TagHelperTest {
             }
 
             @Test
-            public void itCallsListTagsTagAndUntagResource() {
+            public void itCallsListTagsTagAndUntagResourceWithKeyLevelChanges() {
                 TagHelper.updateTags(proxy, desiredModel, awsAccountId, groupArn, logger);
 
                 verify(proxy, times(1))
@@ -156,7 +224,6 @@ public class TagHelperTest {
                             .resourceArn(groupArn)
                             .tagKeys(new HashSet<String>() {{
                                 add(oldKeyToBeRemoved);
-                                add(oldKeyToBeUpdated);
                             }})
                             .build()
                     ), any());
@@ -249,7 +316,6 @@ public class TagHelperTest {
                                 .resourceArn(groupArn)
                                 .tagKeys(new HashSet<String>() {{
                                     add(oldKeyToBeRemoved);
-                                    add(oldKeyToBeUpdated);
                                 }})
                                 .build()
                         ), any());
@@ -269,7 +335,6 @@ public class TagHelperTest {
                                 .resourceArn(groupArn)
                                 .tags(new HashMap<String, String>() {{
                                     put(oldKeyToBeRemoved, oldTagValue);
-                                    put(oldKeyToBeUpdated, oldTagValue);
                                 }})
                                 .build()
                         ), any());
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
 import software.amazon.awssdk.services.codeguruprofiler.model.ActionGroup;
 import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
@@ -19,6 +20,7 @@ import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
 import software.amazon.awssdk.services.codeguruprofiler.model.InternalServerException;
 import software.amazon.awssdk.services.codeguruprofiler.model.NotificationConfiguration;
+import software.amazon.awssdk.services.codeguruprofiler.model.ProfilingGroupDescription;
 import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
 import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionResponse;
 import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelRequest;
@@ -40,14 +42,18 @@ import software.amazon.cloudformation.proxy.ProgressEvent;
 import software.amazon.cloudformation.proxy.ResourceHandlerRequest;
 import software.amazon.codeguruprofiler.profilinggroup.UpdateHandler.UpdateTagsFunction;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -405,6 +411,81 @@ public class UpdateHandlerTest {
                 verifyNoMoreInteractions(proxy);
             }
         }
+
+        @Nested
+        class WhenTheSamePrincipalsAreAlreadyGranted {
+            @BeforeEach
+            public void setup() {
+                doReturn(GetPolicyResponse.builder()
+                             .policy("{\"Version\":\"2012-10-17\",\"Statement\":[{\"Sid\":\"agentPermissions-statement\"," +
+                                 "\"Effect\":\"Allow\",\"Principal\":{\"AWS\":\"" + principals.get(0) + "\"}," +
+                                 "\"Action\":[\"codeguru-profiler:ConfigureAgent\",\"codeguru-profiler:PostAgentProfile\"]}]}")
+                             .revisionId(revisionId)
+                             .build()
+                ).when(proxy).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+            }
+
+            @Test
+            public void itDoesNotPutThePermissionsAgain() {
+                final ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(describePgRequest), any()); // to check if pg exists
+                verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+                verifyNoMoreInteractions(proxy);
+            }
+        }
+
+    }
+
+    @Nested
+    class WhenEveryPropertyChanges {
+        @BeforeEach
+        public void setup() {
+            request = makeRequest(
+                ResourceModel.builder()
+                    .profilingGroupName(profilingGroupName)
+                    .agentPermissions(AgentPermissions.builder().principals(principals).build())
+                    .anomalyDetectionNotificationConfiguration(Collections.singletonList(
+                        software.amazon.codeguruprofiler.profilinggroup.Channel.builder().channelUri("channelUri2").build()))
+                    .tags(Collections.singletonList(Tag.builder().key("TestKey").value("TestValue").build()))
+                    .build()
+            );
+            doReturn(GetPolicyResponse.builder()
+                         .policy("{\"Version\":\"2012-10-17\",\"Statement\":[{\"Sid\":\"agentPermissions-statement\"," +
+                             "\"Effect\":\"Allow\",\"Principal\":{\"AWS\":\"arn:aws:iam::123456789012:role/OldRole\"}," +
+                             "\"Action\":[\"codeguru-profiler:ConfigureAgent\",\"codeguru-profiler:PostAgentProfile\"]}]}")
+                         .revisionId(revisionId)
+                         .build()
+            ).when(proxy).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+            doReturn(GetNotificationConfigurationResponse.builder()
+                         .notificationConfiguration(NotificationConfiguration.builder()
+                             .channels(Channel.builder().id("channelId").uri("channelUri").build())
+                             .build())
+                         .build()
+            ).when(proxy).injectCredentialsAndInvokeV2(any(GetNotificationConfigurationRequest.class), any());
+            doReturn(PutPermissionResponse.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(any(PutPermissionRequest.class), any());
+            doReturn(RemoveNotificationChannelResponse.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(any(RemoveNotificationChannelRequest.class), any());
+        }
+
+        @Test
+        public void itStaysWithinItsApiCallBudget() {
+            final ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+            // Three reads, then one write per changed channel and one for the permissions. Tags are diffed by the tag helper.
+            ApiCallBudget.allowing("DescribeProfilingGroup", 1)
+                .and("GetPolicy", 1)
+                .and("GetNotificationConfiguration", 1)
+                .and("PutPermission", 1)
+                .and("AddNotificationChannels", 1)
+                .and("RemoveNotificationChannel", 1)
+                .and("UpdateTags", 1)
+                .countingCallsTo(updateTagFunction, "UpdateTags")
+                .assertRespectedBy(proxy);
+        }
     }
 
     @Nested
@@ -430,7 +511,84 @@ public class UpdateHandlerTest {
             subject.handleRequest(proxy, request, null, logger);
 
             verify(updateTagFunction, times(1))
-                .apply(proxy, desiredModel, request.getAwsAccountId(), groupArn, logger );
+                .apply(proxy, desiredModel, null, request.getAwsAccountId(), groupArn, logger );
+        }
+
+        @Test
+        public void itPassesThePreviousModelToDiffTagsAgainst() {
+            ResourceModel previousModel = ResourceModel.builder().profilingGroupName(profilingGroupName).arn(groupArn).build();
+            request.setPreviousResourceState(previousModel);
+
+            subject.handleRequest(proxy, request, null, logger);
+
+            verify(updateTagFunction, times(1))
+                .apply(proxy, desiredModel, previousModel, request.getAwsAccountId(), groupArn, logger);
+        }
+
+        @Test
+        public void itDoesNotTrustThePreviousModelWhenResumingAnUpdate() {
+            request.setPreviousResourceState(ResourceModel.builder().profilingGroupName(profilingGroupName).arn(groupArn).build());
+
+            subject.handleRequest(proxy, request, CallbackContext.builder().timedOutInvocations(1).build(), logger);
+
+            verify(updateTagFunction, times(1))
+                .apply(proxy, desiredModel, null, request.getAwsAccountId(), groupArn, logger);
+        }
+
+        @Nested
+        class WhenTheProfilingGroupIsDescribed {
+            private final String describedArn = "arn:aws:codeguru-profiler:us-east-1:123456789012:profilingGroup/Described-" + profilingGroupName;
+            private final ResourceModel describedModel = ResourceModel.builder()
+                                                             .profilingGroupName(profilingGroupName)
+                                                             .arn(describedArn)
+                                                             .tags(Collections.singletonList(Tag.builder().key("OldKey").value("OldValue").build()))
+                                                             .build();
+
+            @BeforeEach
+            public void setup() {
+                doReturn(DescribeProfilingGroupResponse.builder()
+                             .profilingGroup(ProfilingGroupDescription.builder()
+                                 .name(profilingGroupName)
+                                 .arn(describedArn)
+                                 .tags(Collections.singletonMap("OldKey", "OldValue"))
+                                 .build())
+                             .build())
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(describePgRequest), any());
+            }
+
+            @Test
+            public void itDiffsTheTagsAgainstTheDescribedOnes() {
+                request.setPreviousResourceState(ResourceModel.builder().profilingGroupName(profilingGroupName).arn(groupArn).build());
+
+                subject.handleRequest(proxy, request, null, logger);
+
+                verify(updateTagFunction, times(1))
+                    .apply(proxy, desiredModel, describedModel, request.getAwsAccountId(), describedArn, logger);
+            }
+
+            @Test
+            public void itTrustsTheDescribedTagsWhenResumingAnUpdate() {
+                subject.handleRequest(proxy, request, CallbackContext.builder().timedOutInvocations(1).build(), logger);
+
+                verify(updateTagFunction, times(1))
+                    .apply(proxy, desiredModel, describedModel, request.getAwsAccountId(), describedArn, logger);
+            }
+
+            @Test
+            public void itReadsThePolicyWhileDescribing() {
+                // Each read only answers once both have started, which can only happen if they run concurrently.
+                final CountDownLatch bothReadsStarted = new CountDownLatch(2);
+                doAnswer(invocation -> awaitOthers(bothReadsStarted, DescribeProfilingGroupResponse.builder()
+                        .profilingGroup(ProfilingGroupDescription.builder().name(profilingGroupName).arn(describedArn).build())
+                        .build()))
+                    .when(proxy).injectCredentialsAndInvokeV2(eq(describePgRequest), any());
+                doAnswer(invocation -> awaitOthers(bothReadsStarted, GetPolicyResponse.builder().build()))
+                    .when(proxy).injectCredentialsAndInvokeV2(any(GetPolicyRequest.class), any());
+
+                final ProgressEvent<ResourceModel, CallbackContext> response = subject.handleRequest(proxy, request, null, logger);
+
+                assertThat(response.getStatus()).isEqualTo(OperationStatus.SUCCESS);
+            }
         }
 
         @Nested
@@ -452,6 +610,7 @@ public class UpdateHandlerTest {
                 verify(updateTagFunction, times(1))
                     .apply(proxy,
                         desiredModel,
+                        null,
                         request.getAwsAccountId(),
                         String.join(":",
                             "arn",
@@ -465,6 +624,51 @@ public class UpdateHandlerTest {
         }
     }
 
+    @Nested
+    class WhenTheInvocationRunsOutOfTime {
+        @BeforeEach
+        public void setup() {
+            request = makeValidRequest();
+        }
+
+        @Test
+        public void itHandsBackToCloudFormationBeforeMakingCallsItCannotFinish() {
+            final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(updateTagFunction, Duration.ZERO).handleRequest(proxy, request, null, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+            assertThat(response.getCallbackContext().getTimedOutInvocations()).isEqualTo(1);
+            assertThat(response.getCallbackDelaySeconds()).isGreaterThan(0);
+            assertThat(response.getResourceModel()).isEqualTo(request.getDesiredResourceState());
+            verifyNoMoreInteractions(proxy);
+        }
+
+        @Test
+        public void itHandsBackToCloudFormationWhenACallTimesOut() {
+            doThrow(ApiCallTimeoutException.create(1000))
+                .when(proxy).injectCredentialsAndInvokeV2(any(GetPolicyRequest.class), any());
+
+            final ProgressEvent<ResourceModel, CallbackContext> response =
+                subject.handleRequest(proxy, request, CallbackContext.builder().timedOutInvocations(2).build(), logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.IN_PROGRESS);
+            assertThat(response.getCallbackContext().getTimedOutInvocations()).isEqualTo(3);
+        }
+
+        @Test
+        public void itFailsAfterTooManyInvocationsRanOutOfTime() {
+            final CallbackContext callbackContext = CallbackContext.builder()
+                .timedOutInvocations(UpdateHandler.MAX_TIMED_OUT_INVOCATIONS)
+                .build();
+
+            final ProgressEvent<ResourceModel, CallbackContext> response =
+                new UpdateHandler(updateTagFunction, Duration.ZERO).handleRequest(proxy, request, callbackContext, logger);
+
+            assertThat(response.getStatus()).isEqualTo(OperationStatus.FAILED);
+            assertThat(response.getErrorCode()).isEqualTo(HandlerErrorCode.GeneralServiceException);
+        }
+    }
+
     @Nested
     class WhenThereIsAnException {
         @BeforeEach
@@ -515,4 +719,10 @@ public class UpdateHandlerTest {
             assertThrows(CfnInvalidRequestException.class, () -> subject.handleRequest(proxy, request, null, logger));
         }
     }
+
+    private static <T> T awaitOthers(final CountDownLatch allReadsStarted, final T result) throws InterruptedException {
+        allReadsStarted.countDown();
+        assertThat(allReadsStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        return result;
+    }
 }
@@ -0,0 +1,298 @@
+package software.amazon.codeguruprofiler.profilinggroup;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import software.amazon.awssdk.services.codeguruprofiler.CodeGuruProfilerClient;
+import software.amazon.awssdk.services.codeguruprofiler.model.ActionGroup;
+import software.amazon.awssdk.services.codeguruprofiler.model.AddNotificationChannelsRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.Channel;
+import software.amazon.awssdk.services.codeguruprofiler.model.ConflictException;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.GetPolicyResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.PutPermissionResponse;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemoveNotificationChannelRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionRequest;
+import software.amazon.awssdk.services.codeguruprofiler.model.RemovePermissionResponse;
+import software.amazon.cloudformation.proxy.AmazonWebServicesClientProxy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class UpdatePlanTest {
+    private final AmazonWebServicesClientProxy proxy = mock(AmazonWebServicesClientProxy.class);
+
+    private final CodeGuruProfilerClient profilerClient = mock(CodeGuruProfilerClient.class);
+
+    private final String awsAccountId = "123456789012";
+
+    private final String region = "us-east-1";
+
+    private final String profilingGroupName = "Hulk-2020";
+
+    private final String revisionId = "TestRevisionId-456";
+
+    private final List<String> principals = Arrays.asList("arn:aws:iam::123456789012:role/One", "arn:aws:iam::123456789012:role/Two");
+
+    private final GetPolicyResponse noPolicy = GetPolicyResponse.builder().build();
+
+    @Nested
+    class DescribeAgentPermissions {
+        @Test
+        public void itPutsPrincipalsWhenThereIsNoPolicy() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals), noPolicy, Optional.empty(), Collections.emptyList());
+
+            plan.execute(proxy, profilerClient);
+
+            verify(proxy).injectCredentialsAndInvokeV2(eq(PutPermissionRequest.builder()
+                .profilingGroupName(profilingGroupName)
+                .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                .principals(principals)
+                .build()), any());
+            verifyNoMoreInteractions(proxy);
+        }
+
+        @Test
+        public void itSkipsPrincipalsThatAreAlreadyGrantedInAnyOrder() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals),
+                policyGranting("[\"" + principals.get(1) + "\", \"" + principals.get(0) + "\"]"),
+                Optional.empty(), Collections.emptyList());
+
+            assertThat(plan.isEmpty()).isTrue();
+            assertThat(plan.toString()).contains("no changes");
+        }
+
+        @Test
+        public void itPutsPrincipalsThatChanged() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals),
+                policyGranting("\"" + principals.get(0) + "\""), Optional.empty(), Collections.emptyList());
+
+            plan.execute(proxy, profilerClient);
+
+            assertThat(plan.describe()).containsExactly("PutPermission " + principals);
+            verify(proxy).injectCredentialsAndInvokeV2(eq(PutPermissionRequest.builder()
+                .profilingGroupName(profilingGroupName)
+                .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                .principals(principals)
+                .revisionId(revisionId)
+                .build()), any());
+        }
+
+        @Test
+        public void itPutsPrincipalsWhenThePolicyCannotBeRead() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals),
+                GetPolicyResponse.builder().policy("RandomString").revisionId(revisionId).build(),
+                Optional.empty(), Collections.emptyList());
+
+            assertThat(plan.describe()).containsExactly("PutPermission " + principals);
+        }
+
+        @Test
+        public void itRemovesThePolicyWhenNoPrincipalsAreDesired() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(),
+                policyGranting("\"" + principals.get(0) + "\""), Optional.empty(), Collections.emptyList());
+
+            plan.execute(proxy, profilerClient);
+
+            verify(proxy).injectCredentialsAndInvokeV2(eq(RemovePermissionRequest.builder()
+                .profilingGroupName(profilingGroupName)
+                .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                .revisionId(revisionId)
+                .build()), any());
+        }
+
+        @Test
+        public void itInvalidatesTheCachedPrincipalsWhenChangingThePolicy() {
+            GetPolicyResponse policy = policyGranting("\"" + principals.get(0) + "\"");
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals), policy, Optional.empty(), Collections.emptyList());
+
+            plan.execute(proxy, profilerClient);
+
+            List<String> reparsed = Collections.singletonList("reparsed");
+            assertThat(AgentPermissionHelper.policyCache.principals(awsAccountId, region, profilingGroupName, revisionId, policy.policy(), p -> reparsed))
+                .isSameAs(reparsed);
+        }
+
+        @Test
+        public void itDoesNothingWhenThereIsNoPolicyToRemove() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(), noPolicy, Optional.empty(), Collections.emptyList());
+
+            plan.execute(proxy, profilerClient);
+
+            assertThat(plan.isEmpty()).isTrue();
+            verifyZeroInteractions(proxy);
+        }
+    }
+
+    @Nested
+    class DescribeAgentPermissionsContention {
+        private final GetPolicyRequest getPolicyRequest = GetPolicyRequest.builder().profilingGroupName(profilingGroupName).build();
+
+        @Test
+        public void itRetriesAgainstTheRevisionOfTheOtherWriter() {
+            doThrow(ConflictException.builder().build()).doReturn(PutPermissionResponse.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(any(PutPermissionRequest.class), any());
+            doReturn(policyGranting("\"arn:aws:iam::123456789012:role/Other\"").toBuilder().revisionId("OtherRevisionId").build())
+                .when(proxy).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+
+            UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals), noPolicy, Optional.empty(), Collections.emptyList())
+                .execute(proxy, profilerClient);
+
+            InOrder inOrder = inOrder(proxy);
+            inOrder.verify(proxy).injectCredentialsAndInvokeV2(eq(putPermissionRequest(null)), any());
+            inOrder.verify(proxy).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+            inOrder.verify(proxy).injectCredentialsAndInvokeV2(eq(putPermissionRequest("OtherRevisionId")), any());
+            verifyNoMoreInteractions(proxy);
+        }
+
+        @Test
+        public void itStopsWhenTheOtherWriterAlreadyGrantedThePrincipals() {
+            doThrow(ConflictException.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(any(PutPermissionRequest.class), any());
+            doReturn(policyGranting("[\"" + principals.get(0) + "\", \"" + principals.get(1) + "\"]"))
+                .when(proxy).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+
+            UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals), noPolicy, Optional.empty(), Collections.emptyList())
+                .execute(proxy, profilerClient);
+
+            verify(proxy, times(1)).injectCredentialsAndInvokeV2(any(PutPermissionRequest.class), any());
+            verify(proxy, times(1)).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+            verifyNoMoreInteractions(proxy);
+        }
+
+        @Test
+        public void itRemovesThePolicyOfTheOtherWriter() {
+            doThrow(ConflictException.builder().build()).doReturn(RemovePermissionResponse.builder().build())
+                .when(proxy).injectCredentialsAndInvokeV2(any(RemovePermissionRequest.class), any());
+            doReturn(policyGranting("\"arn:aws:iam::123456789012:role/Other\"").toBuilder().revisionId("OtherRevisionId").build())
+                .when(proxy).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+
+            UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(), policyGranting("\"" + principals.get(0) + "\""), Optional.empty(), Collections.emptyList())
+                .execute(proxy, profilerClient);
+
+            verify(proxy).injectCredentialsAndInvokeV2(eq(RemovePermissionRequest.builder()
+                .profilingGroupName(profilingGroupName)
+                .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                .revisionId("OtherRevisionId")
+                .build()), any());
+        }
+
+        @Test
+        public void itGivesUpAfterTooManyConflicts() {
+            final ConflictException conflict = ConflictException.builder().build();
+            doThrow(conflict).when(proxy).injectCredentialsAndInvokeV2(any(PutPermissionRequest.class), any());
+            doReturn(noPolicy).when(proxy).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.of(principals), noPolicy, Optional.empty(), Collections.emptyList());
+
+            assertThatThrownBy(() -> plan.execute(proxy, profilerClient)).isSameAs(conflict);
+            verify(proxy, times(UpdatePlan.MAX_AGENT_PERMISSIONS_ATTEMPTS)).injectCredentialsAndInvokeV2(any(PutPermissionRequest.class), any());
+            verify(proxy, times(UpdatePlan.MAX_AGENT_PERMISSIONS_ATTEMPTS - 1)).injectCredentialsAndInvokeV2(eq(getPolicyRequest), any());
+        }
+
+        private PutPermissionRequest putPermissionRequest(final String revisionId) {
+            return PutPermissionRequest.builder()
+                       .profilingGroupName(profilingGroupName)
+                       .actionGroup(ActionGroup.AGENT_PERMISSIONS)
+                       .principals(principals)
+                       .revisionId(revisionId)
+                       .build();
+        }
+    }
+
+    @Nested
+    class DescribeNotificationChannels {
+        private final Channel current = Channel.builder().id("channelId").uri("channelUri").build();
+
+        @Test
+        public void itLeavesChannelsAloneWhenNoneAreRequested() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(), noPolicy, Optional.empty(),
+                Collections.singletonList(current));
+
+            assertThat(plan.isEmpty()).isTrue();
+        }
+
+        @Test
+        public void itSkipsChannelsThatAlreadyExist() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(), noPolicy,
+                Optional.of(Collections.singletonList(Channel.builder().uri("channelUri").build())),
+                Collections.singletonList(current));
+
+            assertThat(plan.isEmpty()).isTrue();
+        }
+
+        @Test
+        public void itRemovesThenAddsAChannelWhoseIdChanged() {
+            Channel requested = Channel.builder().id("channelIdNew").uri("channelUri").build();
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(), noPolicy,
+                Optional.of(Collections.singletonList(requested)), Collections.singletonList(current));
+
+            plan.execute(proxy, profilerClient);
+
+            assertThat(plan.describe()).containsExactly("RemoveNotificationChannel [channelId]", "AddNotificationChannels [channelUri]");
+            InOrder inOrder = inOrder(proxy);
+            inOrder.verify(proxy).injectCredentialsAndInvokeV2(eq(RemoveNotificationChannelRequest.builder()
+                .profilingGroupName(profilingGroupName).channelId("channelId").build()), any());
+            inOrder.verify(proxy).injectCredentialsAndInvokeV2(eq(AddNotificationChannelsRequest.builder()
+                .profilingGroupName(profilingGroupName).channels(requested).build()), any());
+            verifyNoMoreInteractions(proxy);
+        }
+
+        @Test
+        public void itAddsNewAndRemovesUnrequestedChannels() {
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(), noPolicy,
+                Optional.of(Collections.singletonList(Channel.builder().uri("channelUri2").build())),
+                Collections.singletonList(current));
+
+            assertThat(plan.describe()).containsExactly("RemoveNotificationChannel [channelId]", "AddNotificationChannels [channelUri2]");
+        }
+
+        @Test
+        public void itAddsEveryNewChannelInOneCallAfterAllRemovals() {
+            Channel renamed = Channel.builder().id("channelIdNew").uri("channelUri").build();
+            Channel added1 = Channel.builder().uri("channelUri3").build();
+            Channel added2 = Channel.builder().uri("channelUri4").build();
+            UpdatePlan plan = UpdatePlan.plan(awsAccountId, region, profilingGroupName, Optional.empty(), noPolicy,
+                Optional.of(Arrays.asList(renamed, added1, added2)),
+                Arrays.asList(current, Channel.builder().id("channelId2").uri("channelUri2").build()));
+
+            plan.execute(proxy, profilerClient);
+
+            assertThat(plan.describe()).containsExactly(
+                "RemoveNotificationChannel [channelId, channelId2]",
+                "AddNotificationChannels [channelUri, channelUri3, channelUri4]");
+            verify(proxy).injectCredentialsAndInvokeV2(eq(RemoveNotificationChannelRequest.builder()
+                .profilingGroupName(profilingGroupName).channelId("channelId").build()), any());
+            verify(proxy).injectCredentialsAndInvokeV2(eq(RemoveNotificationChannelRequest.builder()
+                .profilingGroupName(profilingGroupName).channelId("channelId2").build()), any());
+            verify(proxy).injectCredentialsAndInvokeV2(eq(AddNotificationChannelsRequest.builder()
+                .profilingGroupName(profilingGroupName).channels(renamed, added1, added2).build()), any());
+            verifyNoMoreInteractions(proxy);
+        }
+    }
+
+    private GetPolicyResponse policyGranting(String principalsJson) {
+        return GetPolicyResponse.builder()
+                   .policy("{\"Version\":\"2012-10-17\",\"Statement\":[{\"Sid\":\"agentPermissions-statement\",\"Effect\":\"Allow\"," +
+                       "\"Principal\":{\"AWS\":" + principalsJson + "}," +
+                       "\"Action\":[\"codeguru-profiler:ConfigureAgent\",\"codeguru-profiler:PostAgentProfile\"]}]}")
+                   .revisionId(revisionId)
+                   .build();
+    }
+}